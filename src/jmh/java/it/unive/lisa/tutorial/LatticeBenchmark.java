@@ -0,0 +1,266 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.nonrelational.value.NonRelationalValueDomain;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
+import it.unive.lisa.analysis.value.ValueDomain;
+import it.unive.lisa.symbolic.value.Identifier;
+import it.unive.lisa.symbolic.value.ValueExpression;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of the lattice operations and of the transfer functions of the domains of this package, on
+ * two states produced by a {@link StateGenerator}. Each benchmark is run for every combination of domain, number of
+ * variables, density of relations and magnitude of the bounds; parameters that do not apply to a domain (e.g., the
+ * density for non-relational ones) do not change its states.<br>
+ * <br>
+ * Run with {@code ./gradlew jmh}, that also enables the {@code gc} profiler to report the allocation rate of each
+ * operation. A subset of the benchmarks can be selected with {@code -Pjmh.includes=<regex>}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LatticeBenchmark {
+
+	/**
+	 * The domains under benchmark.
+	 */
+	public enum Domain {
+		INTERVAL {
+			@Override
+			Operands<?> generate(
+					StateGenerator generator) {
+				return nonRelational(generator.intervals(), generator.intervals(), generator);
+			}
+		},
+		SIGNS {
+			@Override
+			Operands<?> generate(
+					StateGenerator generator)
+					throws SemanticException {
+				return nonRelational(generator.signs(), generator.signs(), generator);
+			}
+		},
+		TAINT {
+			@Override
+			Operands<?> generate(
+					StateGenerator generator)
+					throws SemanticException {
+				return nonRelational(generator.taint(), generator.taint(), generator);
+			}
+		},
+		CONGRUENCE {
+			@Override
+			Operands<?> generate(
+					StateGenerator generator) {
+				return nonRelational(generator.congruences(), generator.congruences(), generator);
+			}
+		},
+		EQUALITY {
+			@Override
+			Operands<?> generate(
+					StateGenerator generator)
+					throws SemanticException {
+				return relational(generator.equalities(), generator.equalities(), generator);
+			}
+		},
+		STRICT_UPPER_BOUNDS {
+			@Override
+			Operands<?> generate(
+					StateGenerator generator) {
+				return relational(generator.upperBounds(), generator.upperBounds(), generator);
+			}
+		},
+		PENTAGONS {
+			@Override
+			Operands<?> generate(
+					StateGenerator generator) {
+				// the join of pentagons computes its upper bounds lazily: forcing them makes the lub benchmark
+				// measure the whole join
+				return relational(generator.pentagons(), generator.pentagons(), generator, Pentagons::bounds);
+			}
+		};
+
+		abstract Operands<?> generate(
+				StateGenerator generator)
+				throws SemanticException;
+	}
+
+	private static final long SEED = 42;
+
+	@Param
+	public Domain domain;
+
+	@Param({ "8", "64", "512" })
+	public int variables;
+
+	@Param({ "0.05", "0.5" })
+	public double density;
+
+	@Param({ "10", "1000000" })
+	public long magnitude;
+
+	private Operands<?> operands;
+
+	@Setup
+	public void setup() throws SemanticException {
+		operands = domain.generate(new StateGenerator(variables, density, magnitude, SEED));
+	}
+
+	@Benchmark
+	public Object lub() throws SemanticException {
+		return operands.lub();
+	}
+
+	@Benchmark
+	public Object glb() throws SemanticException {
+		return operands.glb();
+	}
+
+	@Benchmark
+	public Object widening() throws SemanticException {
+		return operands.widening();
+	}
+
+	@Benchmark
+	public boolean lessOrEqual() throws SemanticException {
+		return operands.lessOrEqual();
+	}
+
+	@Benchmark
+	public Object assign() throws SemanticException {
+		return operands.assign();
+	}
+
+	@Benchmark
+	public Object eval() throws SemanticException {
+		return operands.eval();
+	}
+
+	/**
+	 * The evaluation of an expression in a state.
+	 *
+	 * @param <D> the type of the state
+	 */
+	@FunctionalInterface
+	interface Evaluation<D> {
+
+		Object eval(
+				D state,
+				ValueExpression expression)
+				throws SemanticException;
+	}
+
+	/**
+	 * The completion of the result of a join, for domains that defer part of its computation.
+	 *
+	 * @param <D> the type of the state
+	 */
+	@FunctionalInterface
+	interface Completion<D> {
+
+		Object complete(
+				D state);
+	}
+
+	/**
+	 * Two states of the same domain, together with the expression and the variable used by the transfer functions.
+	 *
+	 * @param <D> the type of the states
+	 */
+	static final class Operands<D extends ValueDomain<D>> {
+
+		private final D left;
+
+		private final D right;
+
+		private final Identifier target;
+
+		private final ValueExpression expression;
+
+		private final Evaluation<D> evaluation;
+
+		private final Completion<D> completion;
+
+		Operands(
+				D left,
+				D right,
+				StateGenerator generator,
+				Evaluation<D> evaluation,
+				Completion<D> completion) {
+			this.left = left;
+			this.right = right;
+			this.target = generator.target();
+			this.expression = generator.expression();
+			this.evaluation = evaluation;
+			this.completion = completion;
+		}
+
+		Object lub() throws SemanticException {
+			return completion.complete(left.lub(right));
+		}
+
+		D glb() throws SemanticException {
+			return left.glb(right);
+		}
+
+		D widening() throws SemanticException {
+			return left.widening(right);
+		}
+
+		boolean lessOrEqual() throws SemanticException {
+			return left.lessOrEqual(right);
+		}
+
+		D assign() throws SemanticException {
+			return left.assign(target, expression, StateGenerator.POINT, StateGenerator.ORACLE);
+		}
+
+		Object eval() throws SemanticException {
+			return evaluation.eval(left, expression);
+		}
+	}
+
+	// non-relational domains evaluate expressions to a single abstract value
+	private static <T extends NonRelationalValueDomain<T>> Operands<ValueEnvironment<T>> nonRelational(
+			ValueEnvironment<T> left,
+			ValueEnvironment<T> right,
+			StateGenerator generator) {
+		return new Operands<>(left, right, generator,
+				(state, expression) -> state.lattice.eval(expression, state, StateGenerator.POINT, StateGenerator.ORACLE),
+				state -> state);
+	}
+
+	// relational domains have no abstract value for an expression, so their evaluation is the small step semantics
+	private static <D extends ValueDomain<D>> Operands<D> relational(
+			D left,
+			D right,
+			StateGenerator generator) {
+		return relational(left, right, generator, state -> state);
+	}
+
+	private static <D extends ValueDomain<D>> Operands<D> relational(
+			D left,
+			D right,
+			StateGenerator generator,
+			Completion<D> completion) {
+		return new Operands<>(left, right, generator,
+				(state, expression) -> state.smallStepSemantics(expression, StateGenerator.POINT, StateGenerator.ORACLE),
+				completion);
+	}
+}
@@ -0,0 +1,258 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.DefaultConfiguration;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.SemanticOracle;
+import it.unive.lisa.analysis.nonrelational.value.NonRelationalValueDomain;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
+import it.unive.lisa.program.SyntheticLocation;
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.CodeLocation;
+import it.unive.lisa.program.cfg.ProgramPoint;
+import it.unive.lisa.program.type.Int32Type;
+import it.unive.lisa.symbolic.value.BinaryExpression;
+import it.unive.lisa.symbolic.value.Constant;
+import it.unive.lisa.symbolic.value.Identifier;
+import it.unive.lisa.symbolic.value.Variable;
+import it.unive.lisa.symbolic.value.operator.binary.NumericNonOverflowingAdd;
+import it.unive.lisa.util.numeric.MathNumber;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Generates random abstract states over a fixed set of integer variables, to be used as operands of the benchmarks.
+ * The shape of the states is controlled by three parameters:
+ * <ul>
+ * <li>the number of variables, that are called {@code x0}, {@code x1}, ...;</li>
+ * <li>the density of the relations, that is, the probability that two variables are related in relational domains
+ * (for {@link StrictUpperBounds}, {@code xi < xj} for {@code i < j}; for {@link EqualityDomain}, {@code xj} is put in
+ * the class of {@code xi});</li>
+ * <li>the magnitude of the bounds, that is, the maximum absolute value of the bounds of intervals and of the moduli of
+ * congruences.</li>
+ * </ul>
+ * The generator is seeded, so that the same parameters always produce the same states.
+ */
+public class StateGenerator {
+
+	/**
+	 * The program point used for the evaluation of expressions, that none of the domains inspects.
+	 */
+	public static final ProgramPoint POINT = new ProgramPoint() {
+
+		@Override
+		public CFG getCFG() {
+			return null;
+		}
+
+		@Override
+		public CodeLocation getLocation() {
+			return SyntheticLocation.INSTANCE;
+		}
+	};
+
+	/**
+	 * The oracle used for the evaluation of expressions, that is the top state of a standard analysis with intervals,
+	 * as the domains never receive a {@code null} oracle during an analysis.
+	 */
+	public static final SemanticOracle ORACLE = DefaultConfiguration.simpleState(
+			DefaultConfiguration.defaultHeapDomain(),
+			new ValueEnvironment<>(new Interval()),
+			DefaultConfiguration.defaultTypeDomain());
+
+	private final Random random;
+
+	private final double density;
+
+	private final long magnitude;
+
+	private final List<Identifier> variables;
+
+	/**
+	 * Builds the generator.
+	 *
+	 * @param variables the number of variables of the states
+	 * @param density   the probability that two variables are related, between 0 and 1
+	 * @param magnitude the maximum absolute value of the bounds
+	 * @param seed      the seed of the random generator
+	 */
+	public StateGenerator(
+			int variables,
+			double density,
+			long magnitude,
+			long seed) {
+		this.random = new Random(seed);
+		this.density = density;
+		this.magnitude = Math.max(1, magnitude);
+		this.variables = new ArrayList<>(variables);
+		for (int i = 0; i < variables; i++)
+			this.variables.add(new Variable(Int32Type.INSTANCE, "x" + i, SyntheticLocation.INSTANCE));
+	}
+
+	/**
+	 * Yields the variables of the generated states.
+	 *
+	 * @return the variables
+	 */
+	public List<Identifier> getVariables() {
+		return variables;
+	}
+
+	/**
+	 * Yields the expression {@code x0 + x1}, or {@code x0 + x0} if there is a single variable, used to benchmark
+	 * assignments and evaluations.
+	 *
+	 * @return the expression
+	 */
+	public BinaryExpression expression() {
+		Identifier left = variables.get(0);
+		Identifier right = variables.get(Math.min(1, variables.size() - 1));
+		return new BinaryExpression(Int32Type.INSTANCE, left, right, NumericNonOverflowingAdd.INSTANCE,
+				SyntheticLocation.INSTANCE);
+	}
+
+	/**
+	 * Yields the variable that is assigned in the benchmarks of assignments, that is the last one.
+	 *
+	 * @return the variable
+	 */
+	public Identifier target() {
+		return variables.get(variables.size() - 1);
+	}
+
+	/**
+	 * Yields an interval for each variable, whose bounds lie between {@code -magnitude} and {@code magnitude}.
+	 *
+	 * @return the environment
+	 */
+	public ValueEnvironment<Interval> intervals() {
+		return environment(new Interval(), () -> {
+			long low = bound();
+			long high = bound();
+			return new Interval(new MathNumber(Math.min(low, high)), new MathNumber(Math.max(low, high)));
+		});
+	}
+
+	/**
+	 * Yields a random sign for each variable. The signs are the canonical elements of the domain, obtained by
+	 * evaluating constants, since the domain compares them by identity.
+	 *
+	 * @return the environment
+	 *
+	 * @throws SemanticException if the evaluation of the constants fails
+	 */
+	public ValueEnvironment<Signs> signs() throws SemanticException {
+		Signs top = new Signs().top();
+		Signs[] signs = {
+				top.evalNonNullConstant(constant(-1), POINT, ORACLE),
+				top.evalNonNullConstant(constant(0), POINT, ORACLE),
+				top.evalNonNullConstant(constant(1), POINT, ORACLE),
+				top };
+		return environment(top, () -> signs[random.nextInt(signs.length)]);
+	}
+
+	/**
+	 * Yields a random taintedness for each variable. As for {@link #signs()}, the values are the canonical elements
+	 * of the domain: constants are clean, and top is tainted.
+	 *
+	 * @return the environment
+	 *
+	 * @throws SemanticException if the evaluation of the constant fails
+	 */
+	public ValueEnvironment<Taint> taint() throws SemanticException {
+		Taint tainted = new Taint().top();
+		Taint clean = tainted.evalNonNullConstant(constant(0), POINT, ORACLE);
+		return environment(tainted, () -> random.nextBoolean() ? tainted : clean);
+	}
+
+	/**
+	 * Yields a congruence for each variable, whose modulus lies between 1 and {@code magnitude}.
+	 *
+	 * @return the environment
+	 */
+	public ValueEnvironment<CongruenceDomain> congruences() {
+		int max = (int) Math.min(magnitude, Integer.MAX_VALUE);
+		return environment(new CongruenceDomain(), () -> {
+			int coeff = 1 + random.nextInt(max);
+			return new CongruenceDomain(coeff, random.nextInt(coeff));
+		});
+	}
+
+	/**
+	 * Yields a partition of the variables into equality classes, where each variable joins the class of each of the
+	 * previous ones with probability {@code density}.
+	 *
+	 * @return the state
+	 *
+	 * @throws SemanticException if the assignments building the state fail
+	 */
+	public EqualityDomain equalities() throws SemanticException {
+		EqualityDomain state = new EqualityDomain();
+		for (int j = 1; j < variables.size(); j++)
+			for (int i = 0; i < j; i++)
+				if (random.nextDouble() < density) {
+					// x_j = x_i puts x_j in the class of x_i
+					state = state.assign(variables.get(j), variables.get(i), POINT, ORACLE);
+					break;
+				}
+		return state;
+	}
+
+	/**
+	 * Yields strict upper bounds where each {@code xi < xj}, with {@code i < j}, is drawn with probability
+	 * {@code density}, together with the bounds it implies by transitivity, as the analysis only produces closed
+	 * states. Bounds only go from lower to higher indexes, so the state is never contradictory.
+	 *
+	 * @return the state
+	 */
+	public StrictUpperBounds upperBounds() {
+		StrictUpperBounds.Builder builder = new StrictUpperBounds().top().builder();
+		for (int i = 0; i < variables.size(); i++)
+			for (int j = i + 1; j < variables.size(); j++)
+				if (random.nextDouble() < density)
+					builder.addClosedBound(variables.get(i), variables.get(j));
+		return builder.build();
+	}
+
+	/**
+	 * Yields a pentagon made of {@link #upperBounds()} and of intervals that do not contradict them: the interval of
+	 * {@code xi} contains a value {@code wi}, with {@code wi < wj} whenever {@code i < j}, so that all the bounds hold
+	 * when each variable takes its value. The values are spread over {@code [-magnitude, magnitude]}, or over a wider
+	 * range if there are more variables than integers in it.
+	 *
+	 * @return the state
+	 */
+	public Pentagons pentagons() {
+		StrictUpperBounds bounds = upperBounds();
+		long span = Math.max(2 * magnitude, variables.size());
+		ValueEnvironment<Interval> env = new ValueEnvironment<>(new Interval());
+		for (int k = 0; k < variables.size(); k++) {
+			long value = -span / 2 + k * span / variables.size();
+			long low = value - (long) (random.nextDouble() * magnitude);
+			long high = value + (long) (random.nextDouble() * magnitude);
+			env = env.putState(variables.get(k), new Interval(new MathNumber(low), new MathNumber(high)));
+		}
+		return new Pentagons(bounds, env);
+	}
+
+	private <T extends NonRelationalValueDomain<T>> ValueEnvironment<T> environment(
+			T lattice,
+			Supplier<T> values) {
+		ValueEnvironment<T> env = new ValueEnvironment<>(lattice);
+		for (Identifier variable : variables)
+			env = env.putState(variable, values.get());
+		return env;
+	}
+
+	private static Constant constant(
+			int value) {
+		return new Constant(Int32Type.INSTANCE, value, SyntheticLocation.INSTANCE);
+	}
+
+	private long bound() {
+		// uniform in [-magnitude, magnitude]
+		return (long) ((random.nextDouble() * 2 - 1) * magnitude);
+	}
+}
@@ -0,0 +1,275 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.LiSA;
+import it.unive.lisa.LiSAReport;
+import it.unive.lisa.checks.warnings.Warning;
+import it.unive.lisa.conf.LiSAConfiguration;
+import it.unive.lisa.conf.LiSAConfiguration.GraphType;
+import it.unive.lisa.imp.IMPFrontend;
+import it.unive.lisa.program.Program;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * A long-lived process that analyzes programs on request, so that the startup of the JVM, the loading of LiSA's
+ * classes and the warm-up of the JIT are paid once instead of once per program. Requests are read one per line, and
+ * each one is answered with a single line of json once its analysis completes; since jobs run concurrently, responses
+ * can come in any order and carry the identifier of their request.<br>
+ * <br>
+ * A request has the form {@code <id> <preset> <graphs> <program>}, where {@code id} is chosen by the client,
+ * {@code preset} is one of the {@link Preset}s, {@code graphs} one of the {@link GraphType}s and {@code program} is the
+ * path of the {@code .imp} file to analyze (the rest of the line, so it can contain spaces). The files of each job
+ * are generated in a sub-directory of the daemon's working directory named after the job and numbered in order of
+ * arrival, so that jobs with the same identifier do not share it. A line containing
+ * {@code quit}, or the end of the input, stops the daemon after the running jobs complete.<br>
+ * <br>
+ * The response has the form
+ * {@code {"id": ..., "status": ..., "millis": ..., "workdir": ..., "files": [...], "warnings": [...]}}, where the
+ * status is one of the {@link BatchAnalysis.Status}es, or {@code INVALID_REQUEST} for malformed lines, in which case
+ * an {@code error} is reported instead of the files and warnings.
+ */
+public class AnalysisDaemon {
+
+	// the logging configuration of the daemon, in the resources, that writes to the standard error
+	private static final String LOGGING = "log4j2-daemon.xml";
+
+	private final Path workdir;
+
+	private final ExecutorService executor;
+
+	// responses are written by the jobs themselves, so writes must not interleave
+	private final Object lock = new Object();
+
+	// the number of jobs received, that makes the directory of each job unique
+	private final AtomicLong jobs = new AtomicLong();
+
+	/**
+	 * Builds the daemon.
+	 *
+	 * @param workdir     the directory where the files of the jobs will be generated
+	 * @param parallelism the maximum number of jobs executed at the same time
+	 */
+	public AnalysisDaemon(
+			Path workdir,
+			int parallelism) {
+		this.workdir = workdir;
+		this.executor = Executors.newFixedThreadPool(parallelism);
+	}
+
+	/**
+	 * Runs every preset on a small program, so that the classes involved are loaded and the code of the domains is
+	 * compiled before the first real job arrives. Files generated during the warm-up are deleted.
+	 *
+	 * @throws IOException if the temporary directory cannot be created or deleted
+	 */
+	public void warmUp() throws IOException {
+		String code = "class warmup { main(a) { def x = 0; while (x < a) x = x + 1; return x; } }";
+		Path tmp = Files.createTempDirectory("lisa-warmup");
+		try {
+			for (Preset preset : Preset.values())
+				try {
+					new LiSA(preset.configuration(tmp.resolve(preset.name()).toString()))
+							.run(IMPFrontend.processText(code));
+				} catch (Throwable e) {
+					// a failed warm-up only means that the first job will be slower
+					System.err.println("Cannot warm up " + preset);
+					e.printStackTrace(System.err);
+				}
+		} finally {
+			try (Stream<Path> files = Files.walk(tmp)) {
+				for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+					Files.delete(file);
+			}
+		}
+	}
+
+	/**
+	 * Serves the requests read from {@code in}, writing the responses to {@code out}, until {@code quit} is read or
+	 * the input ends. Running jobs are completed before returning, after which the daemon cannot serve again.
+	 *
+	 * @param in  the source of the requests
+	 * @param out the destination of the responses
+	 *
+	 * @throws IOException if the requests cannot be read
+	 */
+	public void serve(
+			BufferedReader in,
+			Writer out)
+			throws IOException {
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty())
+					continue;
+				if (line.equals("quit"))
+					break;
+
+				String[] request = line.split("\\s+", 4);
+				if (request.length < 4) {
+					respond(out, "{\"id\": \"" + BatchAnalysis.escape(request[0])
+							+ "\", \"status\": \"INVALID_REQUEST\", \"error\": \"Expected <id> <preset> <graphs> <program>\"}");
+					continue;
+				}
+
+				Preset preset;
+				GraphType graphs;
+				try {
+					preset = Preset.valueOf(request[1].toUpperCase());
+					graphs = GraphType.valueOf(request[2].toUpperCase());
+				} catch (IllegalArgumentException e) {
+					respond(out, "{\"id\": \"" + BatchAnalysis.escape(request[0])
+							+ "\", \"status\": \"INVALID_REQUEST\", \"error\": \"Unknown preset or graph type\"}");
+					continue;
+				}
+
+				Path directory = directory(request[0]);
+				if (directory == null) {
+					respond(out, "{\"id\": \"" + BatchAnalysis.escape(request[0])
+							+ "\", \"status\": \"INVALID_REQUEST\", \"error\": \"Invalid id\"}");
+					continue;
+				}
+
+				executor.execute(() -> respond(out, analyze(request[0], directory, preset, graphs, request[3])));
+			}
+		} finally {
+			executor.shutdown();
+			try {
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	// yields the directory of a new job with the given id, or null if it would not be inside the working directory
+	private Path directory(
+			String id) {
+		String name = id.replaceAll("[^A-Za-z0-9_.-]", "_");
+		if (name.matches("\\.*"))
+			// ids made only of dots would name the working directory or one of its ancestors
+			name = "job";
+		Path directory = workdir.resolve(name + "-" + jobs.incrementAndGet()).normalize();
+		return directory.startsWith(workdir.normalize()) ? directory : null;
+	}
+
+	private String analyze(
+			String id,
+			Path directory,
+			Preset preset,
+			GraphType graphs,
+			String file) {
+		long start = System.nanoTime();
+		String prefix = "{\"id\": \"" + BatchAnalysis.escape(id) + "\", \"status\": \"";
+
+		Program program;
+		try {
+			program = IMPFrontend.processFile(file);
+		} catch (Throwable e) {
+			// every job is answered, even after an error such as a stack overflow
+			return prefix + BatchAnalysis.Status.PARSING_FAILED + "\", \"millis\": " + millis(start)
+					+ ", \"error\": \"" + BatchAnalysis.escape(BatchAnalysis.message(e)) + "\"}";
+		}
+
+		LiSAReport report;
+		try {
+			LiSAConfiguration conf = preset.configuration(directory.toString());
+			conf.analysisGraphs = graphs;
+			report = new LiSA(conf).run(program);
+		} catch (Throwable e) {
+			return prefix + BatchAnalysis.Status.ANALYSIS_FAILED + "\", \"millis\": " + millis(start)
+					+ ", \"error\": \"" + BatchAnalysis.escape(BatchAnalysis.message(e)) + "\"}";
+		}
+
+		List<String> warnings = new ArrayList<>();
+		for (Warning warning : new TreeSet<>(report.getWarnings()))
+			warnings.add(warning.toString());
+		List<String> files = new ArrayList<>();
+		for (String created : new TreeSet<>(report.getCreatedFiles()))
+			files.add(directory.resolve(created).toString());
+
+		return prefix + BatchAnalysis.Status.ANALYZED + "\", \"millis\": " + millis(start)
+				+ ", \"workdir\": \"" + BatchAnalysis.escape(directory.toString())
+				+ "\", \"files\": " + array(files)
+				+ ", \"warnings\": " + array(warnings) + "}";
+	}
+
+	private void respond(
+			Writer out,
+			String response) {
+		synchronized (lock) {
+			try {
+				out.write(response);
+				out.write("\n");
+				out.flush();
+			} catch (IOException e) {
+				System.err.println("Cannot send the response " + response);
+				e.printStackTrace(System.err);
+			}
+		}
+	}
+
+	private static String array(
+			Collection<String> elements) {
+		StringBuilder builder = new StringBuilder("[");
+		for (String element : elements)
+			builder.append(builder.length() == 1 ? "\"" : ", \"").append(BatchAnalysis.escape(element)).append("\"");
+		return builder.append("]").toString();
+	}
+
+	private static long millis(
+			long start) {
+		return (System.nanoTime() - start) / 1_000_000;
+	}
+
+	/**
+	 * Starts a daemon that reads requests from the standard input and writes responses to the standard output. Once
+	 * the warm-up is over, the line {@code {"status": "READY"}} is written. The standard output is reserved to the
+	 * responses: anything else printed there, by LiSA or by the analyses, is redirected to the standard error, and so
+	 * are the logs, configured by {@code log4j2-daemon.xml} instead of the default {@code log4j2.xml}.<br>
+	 * <br>
+	 * Usage: {@code AnalysisDaemon [workdir] [parallelism]}, where the working directory defaults to
+	 * {@code outputs/daemon} and the parallelism to the number of available processors.
+	 *
+	 * @param args the command line arguments
+	 *
+	 * @throws IOException if the requests cannot be read
+	 */
+	public static void main(
+			String[] args)
+			throws IOException {
+		// the redirection happens before any analysis runs, so that no log line can reach the responses
+		System.setProperty("log4j.configurationFile", LOGGING);
+		PrintStream responses = System.out;
+		System.setOut(System.err);
+
+		Path workdir = Paths.get(args.length > 0 ? args[0] : "outputs/daemon");
+		int parallelism = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+		AnalysisDaemon daemon = new AnalysisDaemon(workdir, parallelism);
+		daemon.warmUp();
+
+		Writer out = new OutputStreamWriter(responses, StandardCharsets.UTF_8);
+		daemon.respond(out, "{\"status\": \"READY\"}");
+		daemon.serve(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)), out);
+	}
+}
@@ -0,0 +1,178 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.statement.Statement;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The Java Flight Recorder events emitted by the analyses of this package, shown under the {@code LiSA} category in
+ * JDK Mission Control:
+ * <ul>
+ * <li>{@link CfgAnalysis} and {@link FixpointIteration}, emitted by a {@link TracingWorkingSet};</li>
+ * <li>{@link Widening} and {@link SlowOperation}, emitted by a {@link TracingValueDomain};</li>
+ * <li>{@link TaintWarning}, emitted by the {@link TaintCheck}.</li>
+ * </ul>
+ * Events follow the usual pattern of JFR: they are allocated, timed and then committed only if
+ * {@link Event#shouldCommit()} holds, and their fields are only computed in that case. When recording is disabled, or
+ * an event is disabled in the recording settings, the JIT removes the allocation and the cost of an event is a
+ * branch.<br>
+ * <br>
+ * Events are recorded by starting the JVM with {@code -XX:StartFlightRecording}, or through {@code jcmd JFR.start} on
+ * a running analysis (e.g., the {@link AnalysisDaemon}).
+ */
+public final class AnalysisEvents {
+
+	// the node whose post-state is being computed by the fixpoint running on each thread
+	private static final ThreadLocal<Statement> CURRENT = new ThreadLocal<>();
+
+	private AnalysisEvents() {
+		// this class only holds the events
+	}
+
+	/**
+	 * Records the node whose post-state is being computed by the current thread, so that the events emitted by the
+	 * domains can refer to it. The node is only recorded when {@link Widening} or {@link SlowOperation} events are
+	 * enabled.
+	 *
+	 * @param node the node
+	 */
+	static void enter(
+			Statement node) {
+		if (new Widening().isEnabled() || new SlowOperation().isEnabled())
+			CURRENT.set(node);
+	}
+
+	/**
+	 * Forgets the node recorded by {@link #enter(Statement)}, at the end of a fixpoint, so that the thread does not
+	 * keep it reachable and the events emitted outside of a fixpoint do not refer to it.
+	 */
+	static void clear() {
+		CURRENT.remove();
+	}
+
+	/**
+	 * Yields the node whose post-state is being computed by the current thread, if known.
+	 *
+	 * @return the node, or {@code null}
+	 */
+	static Statement current() {
+		return CURRENT.get();
+	}
+
+	// the name of the given cfg, as shown in the events
+	static String name(
+			CFG cfg) {
+		return cfg == null ? null : cfg.getDescriptor().getFullSignature();
+	}
+
+	/**
+	 * The fixpoint computation over a single CFG, from the first node pushed in the working set to the moment it
+	 * became empty.
+	 */
+	@Name("it.unive.lisa.tutorial.CfgAnalysis")
+	@Label("CFG Analysis")
+	@Category("LiSA")
+	@Description("The fixpoint computation over a CFG")
+	@StackTrace(false)
+	public static final class CfgAnalysis extends Event {
+
+		@Label("CFG")
+		String cfg;
+
+		@Label("Iterations")
+		@Description("The number of nodes popped from the working set")
+		long iterations;
+	}
+
+	/**
+	 * A single iteration of a fixpoint, that is, the computation of the post-state of a node.
+	 */
+	@Name("it.unive.lisa.tutorial.FixpointIteration")
+	@Label("Fixpoint Iteration")
+	@Category("LiSA")
+	@Description("The computation of the post-state of a node during a fixpoint")
+	@StackTrace(false)
+	public static final class FixpointIteration extends Event {
+
+		@Label("CFG")
+		String cfg;
+
+		@Label("Node")
+		String node;
+
+		@Label("Location")
+		String location;
+	}
+
+	/**
+	 * An application of the widening operator, at a loop head when widening points are enabled.
+	 */
+	@Name("it.unive.lisa.tutorial.Widening")
+	@Label("Widening")
+	@Category("LiSA")
+	@Description("An application of the widening operator of a value domain")
+	@StackTrace(false)
+	public static final class Widening extends Event {
+
+		@Label("CFG")
+		String cfg;
+
+		@Label("Loop Head")
+		String location;
+
+		@Label("Domain")
+		String domain;
+	}
+
+	/**
+	 * An operation of a value domain that took longer than the threshold of the event, 1 ms by default.
+	 */
+	@Name("it.unive.lisa.tutorial.SlowOperation")
+	@Label("Slow Domain Operation")
+	@Category("LiSA")
+	@Description("An operation of a value domain above the threshold")
+	@Threshold("1 ms")
+	public static final class SlowOperation extends Event {
+
+		@Label("CFG")
+		String cfg;
+
+		@Label("Location")
+		String location;
+
+		@Label("Domain")
+		String domain;
+
+		@Label("Operation")
+		String operation;
+	}
+
+	/**
+	 * A warning raised by the {@link TaintCheck}.
+	 */
+	@Name("it.unive.lisa.tutorial.TaintWarning")
+	@Label("Taint Warning")
+	@Category("LiSA")
+	@Description("A tainted value that might reach a sink")
+	@StackTrace(false)
+	public static final class TaintWarning extends Event {
+
+		@Label("CFG")
+		String cfg;
+
+		@Label("Location")
+		String location;
+
+		@Label("Parameter")
+		int parameter;
+
+		@Label("Target")
+		String target;
+	}
+}
@@ -0,0 +1,302 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.analysis.AnalysisState;
+import it.unive.lisa.analysis.AnalyzedCFG;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.SimpleAbstractState;
+import it.unive.lisa.analysis.heap.pointbased.PointBasedHeap;
+import it.unive.lisa.analysis.lattices.Satisfiability;
+import it.unive.lisa.analysis.nonrelational.value.TypeEnvironment;
+import it.unive.lisa.analysis.types.InferredTypes;
+import it.unive.lisa.checks.semantic.CheckToolWithAnalysisResults;
+import it.unive.lisa.checks.semantic.SemanticCheck;
+import it.unive.lisa.imp.expressions.IMPArrayAccess;
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.statement.Assignment;
+import it.unive.lisa.program.cfg.statement.Expression;
+import it.unive.lisa.program.cfg.statement.NaryExpression;
+import it.unive.lisa.program.cfg.statement.Statement;
+import it.unive.lisa.program.cfg.statement.VariableRef;
+import it.unive.lisa.symbolic.SymbolicExpression;
+import it.unive.lisa.symbolic.value.BinaryExpression;
+import it.unive.lisa.symbolic.value.Constant;
+import it.unive.lisa.symbolic.value.ValueExpression;
+import it.unive.lisa.symbolic.value.operator.binary.BinaryOperator;
+import it.unive.lisa.symbolic.value.operator.binary.ComparisonGe;
+import it.unive.lisa.symbolic.value.operator.binary.ComparisonLt;
+import it.unive.lisa.type.Untyped;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A semantic check that uses the results of {@link Pentagons} to classify each array access {@code arr[i]} as
+ * proven-safe ({@code 0 <= i < arraylen(arr)} always holds), proven-unsafe (the access always fails) or unknown.
+ * Proven-unsafe accesses are reported as warnings, while the proven-safe ones are listed in {@link #REPORT_FILE},
+ * a json file that can be used to drop the corresponding runtime checks.
+ */
+public class ArrayBoundsCheck
+		implements
+		// a semantic check is an iterator of CFGs that has access
+		// to the states computed by the analysis
+		SemanticCheck<
+				// the type parameter for the semantic checks is
+				// the abstract state used for the analysis
+				SimpleAbstractState<
+						PointBasedHeap,
+						Pentagons,
+						TypeEnvironment<InferredTypes>>> {
+
+	/**
+	 * The name of the file, inside the working directory, listing the accesses proven to be safe.
+	 */
+	public static final String REPORT_FILE = "safe-array-accesses.json";
+
+	/**
+	 * The possible outcomes of the check on a single access.
+	 */
+	public enum Verdict {
+		/**
+		 * The index is always within the bounds of the array.
+		 */
+		SAFE,
+
+		/**
+		 * The index is never within the bounds of the array.
+		 */
+		UNSAFE,
+
+		/**
+		 * The analysis cannot tell.
+		 */
+		UNKNOWN
+	}
+
+	// the information collected while visiting the CFGs, per CFG
+	private final Map<CFG, List<IMPArrayAccess>> accesses = new LinkedHashMap<>();
+	private final Map<CFG, Map<String, List<NaryExpression>>> lengths = new HashMap<>();
+	private final Map<CFG, Map<String, List<Assignment>>> assignments = new HashMap<>();
+
+	private final Map<IMPArrayAccess, Verdict> verdicts = new LinkedHashMap<>();
+
+	/**
+	 * Yields the verdict computed for each array access, available after the check has been executed.
+	 *
+	 * @return the verdicts
+	 */
+	public Map<IMPArrayAccess, Verdict> getVerdicts() {
+		return verdicts;
+	}
+
+	// This method is called for each statement and expression of each analyzed CFG
+	@Override
+	public boolean visit(
+			CheckToolWithAnalysisResults<SimpleAbstractState<PointBasedHeap, Pentagons, TypeEnvironment<InferredTypes>>> tool,
+			CFG graph,
+			Statement node) {
+		// sub-expressions are visited in no particular order, so here we only
+		// collect what we need: the actual check happens in afterExecution
+		if (node instanceof IMPArrayAccess)
+			accesses.computeIfAbsent(graph, g -> new ArrayList<>()).add((IMPArrayAccess) node);
+		else if (node instanceof Assignment)
+			assignments.computeIfAbsent(graph, g -> new HashMap<>())
+					.computeIfAbsent(((Assignment) node).getLeft().toString(), r -> new ArrayList<>())
+					.add((Assignment) node);
+		else if (node instanceof NaryExpression
+				&& "arraylen".equals(((NaryExpression) node).getConstructName())) {
+			NaryExpression length = (NaryExpression) node;
+			lengths.computeIfAbsent(graph, g -> new HashMap<>())
+					.computeIfAbsent(length.getSubExpressions()[0].toString(), r -> new ArrayList<>())
+					.add(length);
+		}
+
+		return true;
+	}
+
+	@Override
+	public void afterExecution(
+			CheckToolWithAnalysisResults<SimpleAbstractState<PointBasedHeap, Pentagons, TypeEnvironment<InferredTypes>>> tool) {
+		List<IMPArrayAccess> safe = new ArrayList<>();
+		for (Map.Entry<CFG, List<IMPArrayAccess>> entry : accesses.entrySet())
+			for (IMPArrayAccess access : entry.getValue()) {
+				Verdict verdict;
+				try {
+					verdict = classify(tool, entry.getKey(), access);
+				} catch (SemanticException e) {
+					System.err.println("Cannot check " + access);
+					e.printStackTrace(System.err);
+					verdict = Verdict.UNKNOWN;
+				}
+
+				verdicts.put(access, verdict);
+				if (verdict == Verdict.SAFE)
+					safe.add(access);
+				else if (verdict == Verdict.UNSAFE)
+					tool.warnOn(access, "The index of this array access is always out of bounds");
+			}
+
+		safe.sort(Comparator.comparing((IMPArrayAccess access) -> access.getLocation().toString()));
+		try {
+			tool.getFileManager().mkOutputFile(REPORT_FILE, writer -> {
+				writer.write("[\n");
+				for (int i = 0; i < safe.size(); i++) {
+					IMPArrayAccess access = safe.get(i);
+					writer.write("  {\"cfg\": \"" + escape(access.getCFG().getDescriptor().getFullSignature())
+							+ "\", \"location\": \"" + escape(access.getLocation().toString())
+							+ "\", \"access\": \"" + escape(access.toString())
+							+ "\"}" + (i == safe.size() - 1 ? "\n" : ",\n"));
+				}
+				writer.write("]\n");
+			});
+		} catch (IOException e) {
+			System.err.println("Cannot dump the safe array accesses");
+			e.printStackTrace(System.err);
+		}
+	}
+
+	private Verdict classify(
+			CheckToolWithAnalysisResults<SimpleAbstractState<PointBasedHeap, Pentagons, TypeEnvironment<InferredTypes>>> tool,
+			CFG graph,
+			IMPArrayAccess access)
+			throws SemanticException {
+		// an access is safe (or unsafe) only if it is so in every context where the cfg has been analyzed
+		Verdict verdict = null;
+		for (AnalyzedCFG<SimpleAbstractState<PointBasedHeap, Pentagons, TypeEnvironment<InferredTypes>>> result : tool
+				.getResultOf(graph)) {
+			Verdict current = classify(result, graph, access);
+			verdict = verdict == null || verdict == current ? current : Verdict.UNKNOWN;
+		}
+		return verdict == null ? Verdict.UNKNOWN : verdict;
+	}
+
+	private Verdict classify(
+			AnalyzedCFG<SimpleAbstractState<PointBasedHeap, Pentagons, TypeEnvironment<InferredTypes>>> result,
+			CFG graph,
+			IMPArrayAccess access)
+			throws SemanticException {
+		// we retrieve the state after the index has been evaluated
+		AnalysisState<SimpleAbstractState<PointBasedHeap, Pentagons, TypeEnvironment<InferredTypes>>> state = result
+				.getAnalysisStateAfter(access.getRight());
+		SimpleAbstractState<PointBasedHeap, Pentagons, TypeEnvironment<InferredTypes>> abstractState = state.getState();
+		Pentagons pentagons = abstractState.getValueState();
+		if (abstractState.isBottom() || pentagons.isBottom())
+			// the access is never executed: its check can be safely dropped
+			return Verdict.SAFE;
+
+		Set<ValueExpression> arrayLengths = lengthsOf(result, graph, access);
+
+		// the lower and upper side of the check are evaluated separately:
+		// each is decided only if it is decided for all the values of the index
+		Satisfiability lower = null;
+		Satisfiability upper = null;
+		for (SymbolicExpression e : abstractState.rewrite(state.getComputedExpressions(), access, abstractState)) {
+			ValueExpression index = (ValueExpression) e;
+			Constant zero = new Constant(index.getStaticType(), 0, access.getLocation());
+			Satisfiability low = pentagons.satisfies(compare(index, zero, ComparisonGe.INSTANCE), access, abstractState);
+			lower = lower == null ? low : lower.lub(low);
+
+			// all the lengths describe the same array, so one decision is enough
+			Satisfiability high = Satisfiability.UNKNOWN;
+			for (ValueExpression length : arrayLengths) {
+				high = pentagons.satisfies(compare(index, length, ComparisonLt.INSTANCE), access, abstractState);
+				if (high != Satisfiability.UNKNOWN)
+					break;
+			}
+			upper = upper == null ? high : upper.lub(high);
+		}
+
+		if (lower == null)
+			// no index to check: this does not prove that the access is unreachable
+			return Verdict.UNKNOWN;
+		if (lower == Satisfiability.NOT_SATISFIED || upper == Satisfiability.NOT_SATISFIED)
+			return Verdict.UNSAFE;
+		if (lower == Satisfiability.SATISFIED && upper == Satisfiability.SATISFIED)
+			return Verdict.SAFE;
+		return Verdict.UNKNOWN;
+	}
+
+	// yields the value expressions computed by the arraylen(...) expressions of the given cfg that
+	// are applied to the same array of the access
+	private Set<ValueExpression> lengthsOf(
+			AnalyzedCFG<SimpleAbstractState<PointBasedHeap, Pentagons, TypeEnvironment<InferredTypes>>> result,
+			CFG graph,
+			IMPArrayAccess access)
+			throws SemanticException {
+		Set<ValueExpression> values = new HashSet<>();
+		// fields can be modified by other cfgs, so only local variables are known to hold the same array
+		if (!(access.getLeft() instanceof VariableRef))
+			return values;
+		String receiver = access.getLeft().toString();
+		List<Assignment> definitions = assignments.getOrDefault(graph, Map.of()).getOrDefault(receiver, List.of());
+
+		for (NaryExpression length : lengths.getOrDefault(graph, Map.of()).getOrDefault(receiver, List.of())) {
+			// the length describes the array of the access only if the variable is not
+			// reassigned between the two
+			if (reassignedBetween(graph, definitions, length, access))
+				continue;
+			AnalysisState<SimpleAbstractState<PointBasedHeap, Pentagons, TypeEnvironment<InferredTypes>>> state = result
+					.getAnalysisStateAfter(length);
+			for (SymbolicExpression e : state.getState().rewrite(state.getComputedExpressions(), length,
+					state.getState()))
+				values.add((ValueExpression) e);
+		}
+		return values;
+	}
+
+	// yields whether one of the given assignments can be executed after the first expression and before the second
+	private static boolean reassignedBetween(
+			CFG graph,
+			List<Assignment> definitions,
+			Expression from,
+			Expression to) {
+		if (definitions.isEmpty())
+			return false;
+		// an assignment in the same statement of the arraylen is executed after it
+		Set<Statement> afterFrom = reachable(graph, from.getRootStatement(), true);
+		Statement target = to.getRootStatement();
+		for (Assignment definition : definitions)
+			// while an assignment in the same statement of the access is executed after it
+			if (afterFrom.contains(definition.getRootStatement())
+					&& reachable(graph, definition.getRootStatement(), false).contains(target))
+				return true;
+		return false;
+	}
+
+	// yields the nodes reachable from the given one, including it only if requested or if it is in a loop
+	private static Set<Statement> reachable(
+			CFG graph,
+			Statement start,
+			boolean reflexive) {
+		Set<Statement> result = new HashSet<>();
+		if (reflexive)
+			result.add(start);
+		Deque<Statement> pending = new ArrayDeque<>(graph.followersOf(start));
+		while (!pending.isEmpty()) {
+			Statement node = pending.pop();
+			if (result.add(node))
+				pending.addAll(graph.followersOf(node));
+		}
+		return result;
+	}
+
+	private static BinaryExpression compare(
+			ValueExpression left,
+			ValueExpression right,
+			BinaryOperator operator) {
+		return new BinaryExpression(Untyped.INSTANCE, left, right, operator, left.getCodeLocation());
+	}
+
+	private static String escape(
+			String text) {
+		return text.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+}
@@ -0,0 +1,455 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.LiSA;
+import it.unive.lisa.LiSAReport;
+import it.unive.lisa.checks.warnings.Warning;
+import it.unive.lisa.conf.LiSAConfiguration;
+import it.unive.lisa.imp.IMPFrontend;
+import it.unive.lisa.program.Program;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs the same analysis on all the {@code .imp} files of a directory, producing a single aggregated report in
+ * {@link #REPORT_FILE}. Each file is handled by its own task, that parses its program and then waits for one of
+ * {@code parallelism} analysis permits: parsing, which is mostly I/O, thus overlaps with the analyses of other
+ * programs. Since parsed programs wait in memory for their analysis, a task also needs one of
+ * {@value #PROGRAMS_PER_ANALYSIS} times {@code parallelism} program permits before parsing, released once its program
+ * has been analyzed: the number of programs held in memory is bounded, however many files are in the directory.<br>
+ * <br>
+ * Tasks run on virtual threads when the runtime offers them (Java 21 or later), otherwise on a pool with a platform
+ * thread for each program permit. Note that the files generated by LiSA itself (graphs, json reports) are written
+ * during the analysis, and thus while holding an analysis permit.
+ */
+public class BatchAnalysis {
+
+	/**
+	 * The name of the file, inside the working directory, containing the aggregated report.
+	 */
+	public static final String REPORT_FILE = "batch-report.json";
+
+	/**
+	 * The number of programs that can be held in memory for each analysis that runs at the same time.
+	 */
+	public static final int PROGRAMS_PER_ANALYSIS = 2;
+
+	// builds a fresh configuration for the given working directory
+	private final Function<String, LiSAConfiguration> configurations;
+
+	private final int parallelism;
+
+	/**
+	 * Builds the runner.
+	 *
+	 * @param configurations a function building a fresh configuration that generates files in the given directory,
+	 *                           invoked once for each program (e.g., {@code Preset.INTERVAL::configuration})
+	 * @param parallelism    the maximum number of programs analyzed at the same time
+	 */
+	public BatchAnalysis(
+			Function<String, LiSAConfiguration> configurations,
+			int parallelism) {
+		this.configurations = configurations;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Analyzes all the {@code .imp} files in the given directory and in its sub-directories. The files generated for
+	 * each program are placed in a sub-directory of {@code workdir} named after the program, while the aggregated
+	 * report is placed directly in {@code workdir}. Programs that cannot be parsed or analyzed are listed in the report
+	 * as failed, and do not stop the analysis of the others.
+	 *
+	 * @param directory the directory containing the programs
+	 * @param workdir   the directory where files will be generated
+	 *
+	 * @return the aggregated report
+	 *
+	 * @throws IOException if the directory cannot be read or the report cannot be written
+	 */
+	public Report run(
+			Path directory,
+			Path workdir)
+			throws IOException {
+		List<Path> files;
+		try (Stream<Path> paths = Files.walk(directory)) {
+			files = paths.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(".imp"))
+					.sorted()
+					.collect(Collectors.toList());
+		}
+
+		long start = System.nanoTime();
+		Semaphore programs = new Semaphore(PROGRAMS_PER_ANALYSIS * parallelism, true);
+		Semaphore analyses = new Semaphore(parallelism, true);
+		ExecutorService executor = executor();
+		List<Outcome> outcomes = new ArrayList<>(files.size());
+		try {
+			List<Future<Outcome>> tasks = new ArrayList<>(files.size());
+			for (Path file : files)
+				tasks.add(executor.submit(
+						() -> process(file, directory.relativize(file).toString(), workdir, programs, analyses)));
+
+			// outcomes are collected in the order of the files, not in the one of completion
+			for (Future<Outcome> task : tasks)
+				outcomes.add(join(task));
+		} finally {
+			executor.shutdownNow();
+		}
+
+		Report report = new Report(outcomes, parallelism, (System.nanoTime() - start) / 1_000_000);
+		Files.createDirectories(workdir);
+		try (Writer writer = Files.newBufferedWriter(workdir.resolve(REPORT_FILE))) {
+			report.dump(writer);
+		}
+		return report;
+	}
+
+	private ExecutorService executor() {
+		try {
+			// looked up reflectively, so that the runner can still be compiled and executed with older versions
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			// platform threads are expensive: we only keep as many of them as there are program permits
+			return Executors.newFixedThreadPool(PROGRAMS_PER_ANALYSIS * parallelism);
+		}
+	}
+
+	private Outcome process(
+			Path file,
+			String name,
+			Path workdir,
+			Semaphore programs,
+			Semaphore analyses) {
+		// the program permit is taken before parsing, so that waiting tasks do not hold their programs in memory
+		try {
+			programs.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return new Outcome(name, Status.ANALYSIS_FAILED, List.of(), "Interrupted", 0, 0);
+		}
+
+		try {
+			return analyze(file, name, workdir, analyses);
+		} finally {
+			programs.release();
+		}
+	}
+
+	private Outcome analyze(
+			Path file,
+			String name,
+			Path workdir,
+			Semaphore analyses) {
+		long start = System.nanoTime();
+		Program program;
+		try {
+			program = IMPFrontend.processFile(file.toString());
+		} catch (Throwable e) {
+			return new Outcome(name, Status.PARSING_FAILED, List.of(), message(e), millis(start), 0);
+		}
+		long parsing = millis(start);
+
+		try {
+			analyses.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return new Outcome(name, Status.ANALYSIS_FAILED, List.of(), "Interrupted", parsing, 0);
+		}
+
+		// the time waiting for the permit is not part of the analysis
+		start = System.nanoTime();
+		try {
+			LiSAConfiguration conf = configurations.apply(workdir.resolve(directory(name)).toString());
+			LiSAReport report = new LiSA(conf).run(program);
+			long analysis = millis(start);
+
+			List<String> warnings = new ArrayList<>();
+			for (Warning warning : new TreeSet<>(report.getWarnings()))
+				warnings.add(warning.toString());
+			return new Outcome(name, Status.ANALYZED, warnings, null, parsing, analysis);
+		} catch (Throwable e) {
+			// a single program must not stop the whole batch, not even with an error such as a stack overflow
+			return new Outcome(name, Status.ANALYSIS_FAILED, List.of(), message(e), parsing, millis(start));
+		} finally {
+			analyses.release();
+		}
+	}
+
+	private static Outcome join(
+			Future<Outcome> task)
+			throws IOException {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the analysis", e);
+		} catch (ExecutionException e) {
+			// process catches everything, so this is not expected to happen
+			throw new IOException("The processing of a program failed", e.getCause());
+		}
+	}
+
+	private static long millis(
+			long start) {
+		return (System.nanoTime() - start) / 1_000_000;
+	}
+
+	static String message(
+			Throwable e) {
+		return e.getMessage() == null ? e.getClass().getName() : e.getClass().getName() + ": " + e.getMessage();
+	}
+
+	private static String directory(
+			String name) {
+		return name.replaceAll("\\.imp$", "").replaceAll("[^A-Za-z0-9_.-]", "_");
+	}
+
+	static String escape(
+			String text) {
+		return text.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	/**
+	 * Analyzes all the {@code .imp} files of a directory with one of the {@link Preset}s.<br>
+	 * <br>
+	 * Usage: {@code BatchAnalysis <directory> <preset> [workdir] [parallelism]}, where the working directory defaults
+	 * to {@code outputs/batch} and the parallelism to the number of available processors.
+	 *
+	 * @param args the command line arguments
+	 *
+	 * @throws IOException if the directory cannot be read or the report cannot be written
+	 */
+	public static void main(
+			String[] args)
+			throws IOException {
+		if (args.length < 2 || args.length > 4) {
+			System.err.println("Usage: BatchAnalysis <directory> <preset> [workdir] [parallelism]");
+			System.exit(1);
+		}
+
+		Preset preset = Preset.valueOf(args[1].toUpperCase());
+		Path workdir = Paths.get(args.length > 2 ? args[2] : "outputs/batch");
+		int parallelism = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+		Report report = new BatchAnalysis(preset::configuration, parallelism).run(Paths.get(args[0]), workdir);
+		System.out.println(report);
+	}
+
+	/**
+	 * The possible outcomes of the processing of a single program.
+	 */
+	public enum Status {
+		/**
+		 * The program has been analyzed.
+		 */
+		ANALYZED,
+
+		/**
+		 * The program could not be parsed.
+		 */
+		PARSING_FAILED,
+
+		/**
+		 * The analysis of the program failed.
+		 */
+		ANALYSIS_FAILED
+	}
+
+	/**
+	 * The outcome of the processing of a single program.
+	 */
+	public static final class Outcome {
+
+		private final String file;
+
+		private final Status status;
+
+		private final List<String> warnings;
+
+		private final String error;
+
+		private final long parsingMillis;
+
+		private final long analysisMillis;
+
+		private Outcome(
+				String file,
+				Status status,
+				List<String> warnings,
+				String error,
+				long parsingMillis,
+				long analysisMillis) {
+			this.file = file;
+			this.status = status;
+			this.warnings = Collections.unmodifiableList(warnings);
+			this.error = error;
+			this.parsingMillis = parsingMillis;
+			this.analysisMillis = analysisMillis;
+		}
+
+		/**
+		 * Yields the path of the program, relative to the analyzed directory.
+		 *
+		 * @return the path
+		 */
+		public String getFile() {
+			return file;
+		}
+
+		/**
+		 * Yields the status of the program.
+		 *
+		 * @return the status
+		 */
+		public Status getStatus() {
+			return status;
+		}
+
+		/**
+		 * Yields the warnings generated by the analysis of the program, in their natural order.
+		 *
+		 * @return the warnings
+		 */
+		public List<String> getWarnings() {
+			return warnings;
+		}
+
+		/**
+		 * Yields the reason of the failure, if the program could not be parsed or analyzed.
+		 *
+		 * @return the reason, or {@code null}
+		 */
+		public String getError() {
+			return error;
+		}
+
+		/**
+		 * Yields the time spent parsing the program.
+		 *
+		 * @return the time, in milliseconds
+		 */
+		public long getParsingMillis() {
+			return parsingMillis;
+		}
+
+		/**
+		 * Yields the time spent analyzing the program.
+		 *
+		 * @return the time, in milliseconds
+		 */
+		public long getAnalysisMillis() {
+			return analysisMillis;
+		}
+	}
+
+	/**
+	 * The aggregated report of a {@link BatchAnalysis}.
+	 */
+	public static final class Report {
+
+		private final List<Outcome> outcomes;
+
+		private final int parallelism;
+
+		private final long elapsedMillis;
+
+		private Report(
+				List<Outcome> outcomes,
+				int parallelism,
+				long elapsedMillis) {
+			this.outcomes = Collections.unmodifiableList(outcomes);
+			this.parallelism = parallelism;
+			this.elapsedMillis = elapsedMillis;
+		}
+
+		/**
+		 * Yields the outcome of each program, ordered by the path of the program.
+		 *
+		 * @return the outcomes
+		 */
+		public List<Outcome> getOutcomes() {
+			return outcomes;
+		}
+
+		/**
+		 * Yields the number of programs with the given status.
+		 *
+		 * @param status the status
+		 *
+		 * @return the number of programs
+		 */
+		public long count(
+				Status status) {
+			return outcomes.stream().filter(o -> o.getStatus() == status).count();
+		}
+
+		/**
+		 * Yields the wall-clock time of the whole batch, including parsing.
+		 *
+		 * @return the time, in milliseconds
+		 */
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		/**
+		 * Yields the throughput of the batch.
+		 *
+		 * @return the number of programs processed per minute
+		 */
+		public double getProgramsPerMinute() {
+			return outcomes.size() * 60_000.0 / Math.max(1, elapsedMillis);
+		}
+
+		private void dump(
+				Writer writer)
+				throws IOException {
+			writer.write("{\n");
+			writer.write("  \"programs\": " + outcomes.size() + ",\n");
+			for (Status status : Status.values())
+				writer.write("  \"" + status.name().toLowerCase() + "\": " + count(status) + ",\n");
+			writer.write("  \"parallelism\": " + parallelism + ",\n");
+			writer.write("  \"elapsedMillis\": " + elapsedMillis + ",\n");
+			writer.write("  \"programsPerMinute\": " + String.format(Locale.ROOT, "%.1f", getProgramsPerMinute()) + ",\n");
+			writer.write("  \"results\": [\n");
+			for (int i = 0; i < outcomes.size(); i++) {
+				Outcome outcome = outcomes.get(i);
+				writer.write("    {\"file\": \"" + escape(outcome.getFile())
+						+ "\", \"status\": \"" + outcome.getStatus()
+						+ "\", \"parsingMillis\": " + outcome.getParsingMillis()
+						+ ", \"analysisMillis\": " + outcome.getAnalysisMillis());
+				if (outcome.getError() != null)
+					writer.write(", \"error\": \"" + escape(outcome.getError()) + "\"");
+				writer.write(", \"warnings\": [");
+				for (int j = 0; j < outcome.getWarnings().size(); j++)
+					writer.write((j == 0 ? "\"" : ", \"") + escape(outcome.getWarnings().get(j)) + "\"");
+				writer.write("]}" + (i == outcomes.size() - 1 ? "\n" : ",\n"));
+			}
+			writer.write("  ]\n");
+			writer.write("}\n");
+		}
+
+		@Override
+		public String toString() {
+			return outcomes.size() + " programs (" + count(Status.ANALYZED) + " analyzed, "
+					+ count(Status.PARSING_FAILED) + " not parsed, " + count(Status.ANALYSIS_FAILED)
+					+ " failed) in " + elapsedMillis + " ms with " + parallelism + " parallel analyses: "
+					+ String.format(Locale.ROOT, "%.1f", getProgramsPerMinute()) + " programs per minute";
+		}
+	}
+}
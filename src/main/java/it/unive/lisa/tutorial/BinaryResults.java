@@ -0,0 +1,543 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.program.cfg.statement.Statement;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A memory-mapped reader for the files written by {@link BinaryResultsDump}, that can query the state at a single
+ * program point and render the results of single CFGs as html pages.<br>
+ * <br>
+ * A file starts with a header (the magic number {@code LISB}, the version of the format and the {@link Compression}
+ * used), followed by two blocks for each CFG, the string table and the index. Every string (statements, locations,
+ * identifiers, values...) is stored once in the string table and referred to by its position everywhere else; the
+ * table starts with the number of strings and their offsets, so that each string can be decoded on its own. The first
+ * block of a CFG, its section, holds the post-states of its statements, for each context in which it has been
+ * analyzed, encoded as trees of strings, arrays and objects. The second block lists, for each context, the statements
+ * with their location and the offset of their state in the section, as fixed-size entries sorted by the bytes of the
+ * location. Sections and the string
+ * table are compressed independently, so that a single CFG can be read without decompressing the others. The index
+ * maps each CFG to the offsets and lengths of its blocks, and the file ends with a fixed-size footer holding the
+ * offsets and lengths of the string table and of the index. Numbers in states and in the index are varints.
+ */
+public final class BinaryResults
+		implements
+		Closeable {
+
+	static final int MAGIC = 0x4C495342;
+
+	static final byte VERSION = 2;
+
+	static final int HEADER_SIZE = 6;
+
+	static final int FOOTER_SIZE = 32;
+
+	static final int POINT_SIZE = 12;
+
+	// the tags of the nodes of the encoded states
+	static final int STRING = 0;
+	static final int ARRAY = 1;
+	static final int OBJECT = 2;
+
+	/**
+	 * The compression applied to the sections of a file.
+	 */
+	public enum Compression {
+		/**
+		 * No compression.
+		 */
+		NONE {
+			@Override
+			OutputStream wrap(
+					OutputStream out) {
+				return out;
+			}
+
+			@Override
+			InputStream wrap(
+					InputStream in) {
+				return in;
+			}
+		},
+
+		/**
+		 * Each section is a separate gzip stream.
+		 */
+		GZIP {
+			@Override
+			OutputStream wrap(
+					OutputStream out)
+					throws IOException {
+				return new GZIPOutputStream(out);
+			}
+
+			@Override
+			InputStream wrap(
+					InputStream in)
+					throws IOException {
+				return new GZIPInputStream(in);
+			}
+		};
+
+		abstract OutputStream wrap(
+				OutputStream out)
+				throws IOException;
+
+		abstract InputStream wrap(
+				InputStream in)
+				throws IOException;
+
+		byte[] compress(
+				byte[] data)
+				throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (OutputStream out = wrap(bytes)) {
+				out.write(data);
+			}
+			return bytes.toByteArray();
+		}
+
+		byte[] decompress(
+				byte[] data)
+				throws IOException {
+			try (InputStream in = wrap(new ByteArrayInputStream(data))) {
+				return in.readAllBytes();
+			}
+		}
+	}
+
+	private final FileChannel channel;
+
+	// the whole file, if it is small enough to be mapped at once
+	private final ByteBuffer mapped;
+
+	private final Compression compression;
+
+	// the (decompressed) string table: the number of strings, their offsets and their bytes
+	private final ByteBuffer table;
+
+	private final int strings;
+
+	// the position of the section and of the points of each cfg
+	private final Map<String, long[]> index = new LinkedHashMap<>();
+
+	private BinaryResults(
+			FileChannel channel)
+			throws IOException {
+		this.channel = channel;
+		long size = channel.size();
+		mapped = size <= Integer.MAX_VALUE ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+
+		ByteBuffer header = region(0, HEADER_SIZE);
+		if (size < HEADER_SIZE + FOOTER_SIZE || header.getInt() != MAGIC || header.get() != VERSION)
+			throw new IOException("Not a binary results file, or unsupported version");
+		compression = Compression.values()[header.get()];
+
+		ByteBuffer footer = region(size - FOOTER_SIZE, FOOTER_SIZE);
+		ByteBuffer stored = region(footer.getLong(), (int) footer.getLong());
+		table = compression == Compression.NONE ? stored : ByteBuffer.wrap(compression.decompress(bytes(stored)));
+		strings = table.getInt(0);
+
+		ByteBuffer entries = region(footer.getLong(), (int) footer.getLong());
+		for (long i = readVarint(entries); i > 0; i--)
+			index.put(string((int) readVarint(entries)), new long[] {
+					readVarint(entries), readVarint(entries), readVarint(entries), readVarint(entries) });
+	}
+
+	/**
+	 * Opens a file written by {@link BinaryResultsDump}, mapping it in memory. Only the index is read: strings, points
+	 * and states are read on demand.
+	 *
+	 * @param file the file
+	 *
+	 * @return the reader, that must be closed
+	 *
+	 * @throws IOException if the file cannot be read, or it is not a binary results file
+	 */
+	public static BinaryResults open(
+			Path file)
+			throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			return new BinaryResults(channel);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Yields the signatures of the CFGs in the file.
+	 *
+	 * @return the signatures
+	 */
+	public Set<String> getCFGs() {
+		return Collections.unmodifiableSet(index.keySet());
+	}
+
+	/**
+	 * Reads the results of a CFG. States are decoded as strings, lists (for arrays) and maps (for objects).
+	 *
+	 * @param cfg the signature of the CFG
+	 *
+	 * @return the post-states of the statements of the CFG, one list for each context in which it has been analyzed
+	 *
+	 * @throws IOException if the section of the CFG cannot be read
+	 */
+	public List<List<Point>> read(
+			String cfg)
+			throws IOException {
+		long[] position = position(cfg);
+		ByteBuffer section = section(position);
+		ByteBuffer points = region(position[2], (int) position[3]);
+
+		List<List<Point>> contexts = new ArrayList<>();
+		for (int c = points.getInt(); c > 0; c--) {
+			// states are stored in the order of the statements, while points are sorted by location
+			Map<Integer, Point> current = new TreeMap<>();
+			for (int p = points.getInt(); p > 0; p--) {
+				String statement = string(points.getInt());
+				String location = string(points.getInt());
+				int offset = points.getInt();
+				current.put(offset, new Point(statement, location, decode(section.position(offset))));
+			}
+			contexts.add(new ArrayList<>(current.values()));
+		}
+		return contexts;
+	}
+
+	/**
+	 * Yields the post-state of the statement at the given location, without reading the rest of the CFG: the location
+	 * is searched with a binary search among the ones of the statements of the CFG, and only the matching state is
+	 * decoded. With {@link Compression#NONE} nothing else is read, otherwise the whole section of the CFG has to be
+	 * decompressed first.
+	 *
+	 * @param cfg      the signature of the CFG
+	 * @param location the location of the statement, as given by its {@code toString()}
+	 *
+	 * @return the post-states of the statement, one for each context in which the CFG has been analyzed (empty if no
+	 *             statement of the CFG is at the given location)
+	 *
+	 * @throws IOException if the section of the CFG cannot be read
+	 */
+	public List<Object> lookup(
+			String cfg,
+			String location)
+			throws IOException {
+		long[] position = position(cfg);
+		ByteBuffer points = region(position[2], (int) position[3]);
+		ByteBuffer section = null;
+		byte[] expected = location.getBytes(StandardCharsets.UTF_8);
+
+		List<Object> states = new ArrayList<>();
+		for (int c = points.getInt(); c > 0; c--) {
+			int count = points.getInt();
+			int start = points.position();
+			// each point is made of three ints (statement, location and offset of the state),
+			// and points are sorted by location: we look for the first one at the given location
+			int low = 0, high = count;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (compare(points.getInt(start + middle * POINT_SIZE + 4), expected) < 0)
+					low = middle + 1;
+				else
+					high = middle;
+			}
+
+			int point = start + low * POINT_SIZE;
+			if (low < count && compare(points.getInt(point + 4), expected) == 0) {
+				if (section == null)
+					section = section(position);
+				states.add(decode(section.position(points.getInt(point + 8))));
+			}
+			points.position(start + count * POINT_SIZE);
+		}
+		return states;
+	}
+
+	/**
+	 * Yields the post-state of the given statement, without reading the rest of its CFG.
+	 *
+	 * @param statement the statement
+	 *
+	 * @return the post-states of the statement, one for each context in which its CFG has been analyzed
+	 *
+	 * @throws IOException if the section of the CFG cannot be read
+	 *
+	 * @see #lookup(String, String)
+	 */
+	public List<Object> lookup(
+			Statement statement)
+			throws IOException {
+		return lookup(statement.getCFG().getDescriptor().getFullSignature(), statement.getLocation().toString());
+	}
+
+	/**
+	 * Renders the results of a CFG as a standalone html page.
+	 *
+	 * @param cfg    the signature of the CFG
+	 * @param writer where the page is written
+	 *
+	 * @throws IOException if the section of the CFG cannot be read, or the page cannot be written
+	 */
+	public void toHtml(
+			String cfg,
+			Writer writer)
+			throws IOException {
+		List<List<Point>> contexts = read(cfg);
+		writer.write("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"utf-8\">\n<title>" + html(cfg)
+				+ "</title>\n<style>td { vertical-align: top; border-bottom: 1px solid #ccc; padding: 4px; }"
+				+ " ul { margin: 0; padding-left: 16px; }</style>\n</head>\n<body>\n<h1>" + html(cfg) + "</h1>\n");
+		for (int i = 0; i < contexts.size(); i++) {
+			writer.write("<h2>Context " + i + "</h2>\n<table>\n");
+			for (Point point : contexts.get(i)) {
+				writer.write("<tr><td><code>" + html(point.getStatement()) + "</code><br><small>"
+						+ html(point.getLocation()) + "</small></td><td>");
+				toHtml(point.getState(), writer);
+				writer.write("</td></tr>\n");
+			}
+			writer.write("</table>\n");
+		}
+		writer.write("</body>\n</html>\n");
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private static void toHtml(
+			Object state,
+			Writer writer)
+			throws IOException {
+		if (state instanceof Map) {
+			writer.write("<ul>");
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) state).entrySet()) {
+				writer.write("<li><b>" + html(entry.getKey().toString()) + "</b>: ");
+				toHtml(entry.getValue(), writer);
+				writer.write("</li>");
+			}
+			writer.write("</ul>");
+		} else if (state instanceof List) {
+			writer.write("<ul>");
+			for (Object element : (List<?>) state) {
+				writer.write("<li>");
+				toHtml(element, writer);
+				writer.write("</li>");
+			}
+			writer.write("</ul>");
+		} else
+			writer.write(html(state.toString()));
+	}
+
+	private Object decode(
+			ByteBuffer buffer) {
+		int tag = buffer.get();
+		long size = readVarint(buffer);
+		if (tag == STRING)
+			return string((int) size);
+
+		if (tag == ARRAY) {
+			List<Object> elements = new ArrayList<>();
+			for (; size > 0; size--)
+				elements.add(decode(buffer));
+			return elements;
+		}
+
+		Map<String, Object> fields = new LinkedHashMap<>();
+		for (; size > 0; size--)
+			fields.put(string((int) readVarint(buffer)), decode(buffer));
+		return fields;
+	}
+
+	private long[] position(
+			String cfg) {
+		long[] position = index.get(cfg);
+		if (position == null)
+			throw new IllegalArgumentException("No results for " + cfg);
+		return position;
+	}
+
+	private ByteBuffer section(
+			long[] position)
+			throws IOException {
+		ByteBuffer stored = region(position[0], (int) position[1]);
+		return compression == Compression.NONE ? stored : ByteBuffer.wrap(compression.decompress(bytes(stored)));
+	}
+
+	private String string(
+			int id) {
+		int start = table.getInt(4 + 4 * id);
+		byte[] bytes = new byte[table.getInt(8 + 4 * id) - start];
+		ByteBuffer view = table.duplicate();
+		view.position(4 + 4 * (strings + 1) + start);
+		view.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	// compares the bytes of a string with the given ones, as unsigned bytes, without building the string
+	private int compare(
+			int id,
+			byte[] other) {
+		int start = table.getInt(4 + 4 * id);
+		int length = table.getInt(8 + 4 * id) - start;
+		int base = 4 + 4 * (strings + 1) + start;
+		for (int i = 0; i < length && i < other.length; i++) {
+			int diff = Byte.toUnsignedInt(table.get(base + i)) - Byte.toUnsignedInt(other[i]);
+			if (diff != 0)
+				return diff;
+		}
+		return length - other.length;
+	}
+
+	// a view of a region of the file, independent from the other views
+	private ByteBuffer region(
+			long offset,
+			int length)
+			throws IOException {
+		if (mapped == null)
+			return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+		ByteBuffer view = mapped.duplicate();
+		view.position((int) offset).limit((int) offset + length);
+		return view.slice();
+	}
+
+	private static byte[] bytes(
+			ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	static String html(
+			String text) {
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+	}
+
+	static void writeVarint(
+			ByteArrayOutputStream out,
+			long value) {
+		// 7 bits per byte, least significant first, with the high bit set on all bytes but the last
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	static long readVarint(
+			ByteBuffer buffer) {
+		long value = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+		}
+	}
+
+	/**
+	 * Renders some of the CFGs of a binary results file as html pages.<br>
+	 * <br>
+	 * Usage: {@code BinaryResults <file> [<output directory> <cfg>...]}: without CFGs, the signatures of the CFGs in
+	 * the file are listed.
+	 *
+	 * @param args the command line arguments
+	 *
+	 * @throws IOException if the file cannot be read or the pages cannot be written
+	 */
+	public static void main(
+			String[] args)
+			throws IOException {
+		if (args.length == 0 || args.length == 2) {
+			System.err.println("Usage: BinaryResults <file> [<output directory> <cfg>...]");
+			System.exit(1);
+		}
+
+		try (BinaryResults results = open(Paths.get(args[0]))) {
+			if (args.length == 1) {
+				for (String cfg : results.getCFGs())
+					System.out.println(cfg);
+				return;
+			}
+
+			Path directory = Paths.get(args[1]);
+			Files.createDirectories(directory);
+			for (int i = 2; i < args.length; i++)
+				try (Writer writer = Files.newBufferedWriter(
+						directory.resolve(args[i].replaceAll("[^A-Za-z0-9_.-]", "_") + ".html"))) {
+					results.toHtml(args[i], writer);
+				}
+		}
+	}
+
+	/**
+	 * The post-state of a statement.
+	 */
+	public static final class Point {
+
+		private final String statement;
+
+		private final String location;
+
+		private final Object state;
+
+		private Point(
+				String statement,
+				String location,
+				Object state) {
+			this.statement = statement;
+			this.location = location;
+			this.state = state;
+		}
+
+		/**
+		 * Yields the textual form of the statement.
+		 *
+		 * @return the statement
+		 */
+		public String getStatement() {
+			return statement;
+		}
+
+		/**
+		 * Yields the location of the statement.
+		 *
+		 * @return the location
+		 */
+		public String getLocation() {
+			return location;
+		}
+
+		/**
+		 * Yields the post-state of the statement, made of strings, lists and maps.
+		 *
+		 * @return the state
+		 */
+		public Object getState() {
+			return state;
+		}
+	}
+}
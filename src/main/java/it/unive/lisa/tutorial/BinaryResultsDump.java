@@ -0,0 +1,223 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.analysis.AbstractState;
+import it.unive.lisa.analysis.AnalyzedCFG;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.checks.semantic.CheckToolWithAnalysisResults;
+import it.unive.lisa.checks.semantic.SemanticCheck;
+import it.unive.lisa.outputs.serializableGraph.SerializableArray;
+import it.unive.lisa.outputs.serializableGraph.SerializableObject;
+import it.unive.lisa.outputs.serializableGraph.SerializableString;
+import it.unive.lisa.outputs.serializableGraph.SerializableValue;
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.statement.Statement;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A semantic check that dumps the post-state of every statement in {@link #RESULTS_FILE}, a compact binary file that
+ * can be read with {@link BinaryResults}, also to query the state of a single statement. It is meant to replace the
+ * html and json dumps of LiSA ({@code conf.analysisGraphs} and {@code conf.serializeResults}) on large programs:
+ * strings are stored only once, numbers are varints, and the html pages can be rendered later only for the CFGs that
+ * are actually inspected.
+ *
+ * @param <A> the type of abstract state used by the analysis
+ */
+public class BinaryResultsDump<A extends AbstractState<A>>
+		implements
+		SemanticCheck<A> {
+
+	/**
+	 * The name of the file, inside the working directory, containing the results.
+	 */
+	public static final String RESULTS_FILE = "results.lisab";
+
+	private final BinaryResults.Compression compression;
+
+	private final List<CFG> cfgs = new ArrayList<>();
+
+	// the string table, with the position of each string
+	private final Map<String, Integer> strings = new LinkedHashMap<>();
+
+	/**
+	 * Builds the check, that does not compress the file.
+	 */
+	public BinaryResultsDump() {
+		this(BinaryResults.Compression.NONE);
+	}
+
+	/**
+	 * Builds the check.
+	 *
+	 * @param compression the compression to apply to the sections of the file
+	 */
+	public BinaryResultsDump(
+			BinaryResults.Compression compression) {
+		this.compression = compression;
+	}
+
+	// This method is called once for each analyzed CFG, before its statements
+	@Override
+	public boolean visit(
+			CheckToolWithAnalysisResults<A> tool,
+			CFG graph) {
+		cfgs.add(graph);
+		return true;
+	}
+
+	@Override
+	public void afterExecution(
+			CheckToolWithAnalysisResults<A> tool) {
+		cfgs.sort(Comparator.comparing(cfg -> cfg.getDescriptor().getFullSignature()));
+		Path file = Paths.get(tool.getFileManager().getWorkdir(), RESULTS_FILE);
+		try {
+			Files.createDirectories(file.getParent());
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				dump(tool, channel);
+			}
+		} catch (IOException | SemanticException e) {
+			System.err.println("Cannot dump the results in " + file);
+			e.printStackTrace(System.err);
+		}
+	}
+
+	private void dump(
+			CheckToolWithAnalysisResults<A> tool,
+			FileChannel channel)
+			throws IOException,
+			SemanticException {
+		ByteBuffer header = ByteBuffer.allocate(BinaryResults.HEADER_SIZE);
+		header.putInt(BinaryResults.MAGIC).put(BinaryResults.VERSION).put((byte) compression.ordinal());
+		write(channel, header.flip());
+
+		// the blocks are written as soon as they are ready, while the
+		// index is kept in memory since it can only be written at the end
+		ByteArrayOutputStream index = new ByteArrayOutputStream();
+		BinaryResults.writeVarint(index, cfgs.size());
+		for (CFG cfg : cfgs) {
+			ByteArrayOutputStream states = new ByteArrayOutputStream();
+			ByteBuffer points = points(tool, cfg, states);
+			byte[] section = compression.compress(states.toByteArray());
+
+			BinaryResults.writeVarint(index, id(cfg.getDescriptor().getFullSignature()));
+			BinaryResults.writeVarint(index, channel.position());
+			BinaryResults.writeVarint(index, section.length);
+			write(channel, ByteBuffer.wrap(section));
+			BinaryResults.writeVarint(index, channel.position());
+			BinaryResults.writeVarint(index, points.remaining());
+			write(channel, points);
+		}
+
+		// the number of strings, the offset of each string (plus the end of the last one) and then their bytes
+		List<byte[]> encoded = new ArrayList<>(strings.size());
+		int size = 0;
+		for (String string : strings.keySet()) {
+			byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+			encoded.add(bytes);
+			size += bytes.length;
+		}
+		ByteBuffer table = ByteBuffer.allocate(4 + 4 * (encoded.size() + 1) + size);
+		table.putInt(encoded.size());
+		int offset = 0;
+		for (byte[] bytes : encoded) {
+			table.putInt(offset);
+			offset += bytes.length;
+		}
+		table.putInt(offset);
+		for (byte[] bytes : encoded)
+			table.put(bytes);
+		byte[] compressed = compression.compress(table.array());
+
+		ByteBuffer footer = ByteBuffer.allocate(BinaryResults.FOOTER_SIZE);
+		footer.putLong(channel.position()).putLong(compressed.length);
+		write(channel, ByteBuffer.wrap(compressed));
+		footer.putLong(channel.position()).putLong(index.size());
+		write(channel, ByteBuffer.wrap(index.toByteArray()));
+		write(channel, footer.flip());
+	}
+
+	// encodes the states of the cfg in the given stream, yielding the entries pointing to them
+	private ByteBuffer points(
+			CheckToolWithAnalysisResults<A> tool,
+			CFG cfg,
+			ByteArrayOutputStream states)
+			throws SemanticException {
+		List<Statement> nodes = new ArrayList<>(cfg.getNodes());
+		nodes.sort(Comparator.comparing((Statement node) -> node.getLocation()).thenComparing(Statement::toString));
+
+		List<AnalyzedCFG<A>> results = new ArrayList<>(tool.getResultOf(cfg));
+		ByteBuffer points = ByteBuffer.allocate(4 + results.size() * (4 + nodes.size() * BinaryResults.POINT_SIZE));
+		points.putInt(results.size());
+		for (AnalyzedCFG<A> result : results) {
+			// states are encoded in the order of the statements, while points are
+			// sorted by location so that they can be searched by location
+			List<int[]> entries = new ArrayList<>(nodes.size());
+			List<byte[]> locations = new ArrayList<>(nodes.size());
+			for (Statement node : nodes) {
+				String location = node.getLocation().toString();
+				entries.add(new int[] { id(node.toString()), id(location), states.size(), entries.size() });
+				locations.add(location.getBytes(StandardCharsets.UTF_8));
+				encode(states, result.getAnalysisStateAfter(node).getState().representation().toSerializableValue());
+			}
+			entries.sort((l, r) -> Arrays.compareUnsigned(locations.get(l[3]), locations.get(r[3])));
+
+			points.putInt(entries.size());
+			for (int[] entry : entries)
+				points.putInt(entry[0]).putInt(entry[1]).putInt(entry[2]);
+		}
+		return points.flip();
+	}
+
+	private void encode(
+			ByteArrayOutputStream out,
+			SerializableValue value) {
+		if (value instanceof SerializableArray) {
+			List<SerializableValue> elements = ((SerializableArray) value).getElements();
+			out.write(BinaryResults.ARRAY);
+			BinaryResults.writeVarint(out, elements.size());
+			for (SerializableValue element : elements)
+				encode(out, element);
+		} else if (value instanceof SerializableObject) {
+			Map<String, SerializableValue> fields = ((SerializableObject) value).getFields();
+			out.write(BinaryResults.OBJECT);
+			BinaryResults.writeVarint(out, fields.size());
+			for (Map.Entry<String, SerializableValue> field : fields.entrySet()) {
+				BinaryResults.writeVarint(out, id(field.getKey()));
+				encode(out, field.getValue());
+			}
+		} else {
+			out.write(BinaryResults.STRING);
+			BinaryResults.writeVarint(out, id(value instanceof SerializableString
+					? ((SerializableString) value).getValue()
+					: String.valueOf(value)));
+		}
+	}
+
+	private int id(
+			String string) {
+		return strings.computeIfAbsent(string, s -> strings.size());
+	}
+
+	private static void write(
+			FileChannel channel,
+			ByteBuffer buffer)
+			throws IOException {
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	}
+}
@@ -16,6 +16,8 @@ import it.unive.lisa.symbolic.value.operator.unary.UnaryOperator;
 import it.unive.lisa.util.representation.StringRepresentation;
 import it.unive.lisa.util.representation.StructuredRepresentation;
 
+import java.util.Objects;
+
 public final class CongruenceDomain implements BaseNonRelationalValueDomain<CongruenceDomain> {
     private static int lcm(int a, int b) {
         if (a == 0 || b == 0) {
@@ -86,6 +88,23 @@ public final class CongruenceDomain implements BaseNonRelationalValueDomain<Cong
         return offset;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        CongruenceDomain other = (CongruenceDomain) o;
+        return coeff == other.coeff && offset == other.offset;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(coeff, offset);
+    }
+
     @Override
     public boolean lessOrEqualAux(CongruenceDomain other) throws SemanticException {
         return divides(other.coeff, coeff) && eqModulo(offset, other.offset, other.coeff);
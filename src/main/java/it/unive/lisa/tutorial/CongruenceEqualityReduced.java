@@ -0,0 +1,567 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.analysis.BaseLattice;
+import it.unive.lisa.analysis.Lattice;
+import it.unive.lisa.analysis.ScopeToken;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.SemanticOracle;
+import it.unive.lisa.analysis.lattices.Satisfiability;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
+import it.unive.lisa.analysis.value.ValueDomain;
+import it.unive.lisa.program.cfg.ProgramPoint;
+import it.unive.lisa.symbolic.value.BinaryExpression;
+import it.unive.lisa.symbolic.value.Identifier;
+import it.unive.lisa.symbolic.value.UnaryExpression;
+import it.unive.lisa.symbolic.value.ValueExpression;
+import it.unive.lisa.symbolic.value.operator.binary.ComparisonEq;
+import it.unive.lisa.symbolic.value.operator.binary.ComparisonNe;
+import it.unive.lisa.symbolic.value.operator.unary.LogicalNegation;
+import it.unive.lisa.util.representation.MapRepresentation;
+import it.unive.lisa.util.representation.StringRepresentation;
+import it.unive.lisa.util.representation.StructuredRepresentation;
+
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.function.Predicate;
+
+/**
+ * Reduced product of the equality and the congruence domains. While {@link CongruenceEqualityCartesian} stores a
+ * congruence for every variable, this domain stores a single {@link CongruenceDomain} value for each class of equal
+ * variables, indexed by the representative of the class. The size of the state thus depends on the number of classes
+ * rather than on the number of variables, and lattice operations process each class once.
+ */
+public class CongruenceEqualityReduced
+		// instances of this class are lattice elements such that:
+		// - their state (fields) hold the information contained into a whole program state
+		// - they provide logic for the evaluation of expressions
+		implements ValueDomain<CongruenceEqualityReduced>,
+		// we exploit BaseLattice to avoid writing common-sense logic
+		BaseLattice<CongruenceEqualityReduced> {
+
+	private static final CongruenceDomain CONGRUENCE = new CongruenceDomain();
+
+	// representatives are chosen deterministically, so that equal states have equal fields
+	private static final Comparator<Identifier> ORDER = Comparator.comparing(Identifier::getName)
+			.thenComparing(Object::toString);
+
+	private static final CongruenceEqualityReduced TOP = new CongruenceEqualityReduced(
+			Collections.emptyMap(), Collections.emptyMap(), false);
+
+	private static final CongruenceEqualityReduced BOTTOM = new CongruenceEqualityReduced(
+			Collections.emptyMap(), Collections.emptyMap(), true);
+
+	// each known variable is mapped to the representative of its equality class
+	private final Map<Identifier, Identifier> classes;
+
+	// each representative is mapped to the congruence shared by all the variables of its class
+	private final Map<Identifier, CongruenceDomain> congruences;
+
+	private final boolean bottom;
+
+	public CongruenceEqualityReduced() {
+		this(Collections.emptyMap(), Collections.emptyMap(), false);
+	}
+
+	private CongruenceEqualityReduced(
+			Map<Identifier, Identifier> classes,
+			Map<Identifier, CongruenceDomain> congruences,
+			boolean bottom) {
+		this.classes = classes;
+		this.congruences = congruences;
+		this.bottom = bottom;
+	}
+
+	/**
+	 * Yields the congruence of the given variable, that is, the one of its equality class.
+	 *
+	 * @param id the variable
+	 *
+	 * @return the congruence of {@code id}
+	 */
+	public CongruenceDomain getState(
+			Identifier id) {
+		if (bottom)
+			return CONGRUENCE.bottom();
+		Identifier rep = classes.get(id);
+		return rep == null ? CONGRUENCE.top() : congruences.get(rep);
+	}
+
+	@Override
+	public CongruenceEqualityReduced top() {
+		return TOP;
+	}
+
+	@Override
+	public boolean isTop() {
+		return !bottom && classes.isEmpty();
+	}
+
+	@Override
+	public CongruenceEqualityReduced bottom() {
+		return BOTTOM;
+	}
+
+	@Override
+	public boolean isBottom() {
+		return bottom;
+	}
+
+	@Override
+	public boolean lessOrEqualAux(
+			CongruenceEqualityReduced other)
+			throws SemanticException {
+		// every equality of other must hold here as well
+		for (Entry<Identifier, Identifier> entry : other.classes.entrySet())
+			if (!entry.getKey().equals(entry.getValue())) {
+				Identifier rep = classes.get(entry.getKey());
+				if (rep == null || !rep.equals(classes.get(entry.getValue())))
+					return false;
+			}
+
+		// congruences are compared once per class of other
+		for (Entry<Identifier, CongruenceDomain> entry : other.congruences.entrySet())
+			if (!getState(entry.getKey()).lessOrEqual(entry.getValue()))
+				return false;
+
+		return true;
+	}
+
+	@Override
+	public CongruenceEqualityReduced lubAux(
+			CongruenceEqualityReduced other)
+			throws SemanticException {
+		// the classes of the lub are the intersections of the classes of the two states:
+		// we identify each of them through the pair of representatives it comes from
+		Map<List<Identifier>, Identifier> reps = new HashMap<>();
+		for (Entry<Identifier, Identifier> entry : classes.entrySet()) {
+			Identifier otherRep = other.classes.get(entry.getKey());
+			if (otherRep != null)
+				reps.merge(List.of(entry.getValue(), otherRep), entry.getKey(), CongruenceEqualityReduced::min);
+		}
+
+		Map<Identifier, Identifier> newClasses = new HashMap<>();
+		Map<Identifier, CongruenceDomain> newCongruences = new HashMap<>();
+		for (Entry<Identifier, Identifier> entry : classes.entrySet()) {
+			Identifier otherRep = other.classes.get(entry.getKey());
+			if (otherRep == null) {
+				// the variable is unknown in other, so nothing is known about it after the lub
+				newClasses.put(entry.getKey(), entry.getKey());
+				newCongruences.put(entry.getKey(), CONGRUENCE.top());
+				continue;
+			}
+
+			Identifier rep = reps.get(List.of(entry.getValue(), otherRep));
+			newClasses.put(entry.getKey(), rep);
+			if (!newCongruences.containsKey(rep))
+				// one lub for each class
+				newCongruences.put(rep, congruences.get(entry.getValue()).lub(other.congruences.get(otherRep)));
+		}
+
+		for (Identifier id : other.classes.keySet())
+			if (!classes.containsKey(id)) {
+				newClasses.put(id, id);
+				newCongruences.put(id, CONGRUENCE.top());
+			}
+
+		return new CongruenceEqualityReduced(newClasses, newCongruences, false);
+	}
+
+	@Override
+	public CongruenceEqualityReduced glbAux(
+			CongruenceEqualityReduced other)
+			throws SemanticException {
+		Map<Identifier, Identifier> newClasses = new HashMap<>(classes);
+		Map<Identifier, CongruenceDomain> newCongruences = new HashMap<>(congruences);
+		for (Entry<Identifier, Identifier> entry : other.classes.entrySet()) {
+			introduce(newClasses, newCongruences, entry.getKey());
+			introduce(newClasses, newCongruences, entry.getValue());
+			if (union(newClasses, newCongruences, entry.getKey(), entry.getValue()).isBottom())
+				return bottom();
+		}
+
+		for (Entry<Identifier, CongruenceDomain> entry : other.congruences.entrySet()) {
+			Identifier rep = newClasses.get(entry.getKey());
+			CongruenceDomain glb = newCongruences.get(rep).glb(entry.getValue());
+			if (glb.isBottom())
+				return bottom();
+			newCongruences.put(rep, glb);
+		}
+
+		return new CongruenceEqualityReduced(newClasses, newCongruences, false);
+	}
+
+	@Override
+	public CongruenceEqualityReduced assign(
+			Identifier id,
+			ValueExpression expression,
+			ProgramPoint pp,
+			SemanticOracle oracle)
+			throws SemanticException {
+		if (bottom || expression.equals(id))
+			return this;
+
+		// the expression has to be evaluated before id is detached from its class,
+		// as it might contain id itself
+		CongruenceDomain value = expression instanceof Identifier
+				? CONGRUENCE.top()
+				: environmentFor(expression).eval(expression, pp, oracle);
+		if (value.isBottom())
+			return bottom();
+
+		Map<Identifier, Identifier> newClasses = new HashMap<>(classes);
+		Map<Identifier, CongruenceDomain> newCongruences = new HashMap<>(congruences);
+		detach(newClasses, newCongruences, id);
+		newClasses.put(id, id);
+		newCongruences.put(id, value);
+
+		if (expression instanceof Identifier) {
+			// id joins the class of the assigned variable, sharing its congruence
+			Identifier other = (Identifier) expression;
+			introduce(newClasses, newCongruences, other);
+			union(newClasses, newCongruences, id, other);
+		}
+
+		return new CongruenceEqualityReduced(newClasses, newCongruences, false);
+	}
+
+	@Override
+	public CongruenceEqualityReduced smallStepSemantics(
+			ValueExpression expression,
+			ProgramPoint pp,
+			SemanticOracle oracle)
+			throws SemanticException {
+		return this;
+	}
+
+	@Override
+	public CongruenceEqualityReduced assume(
+			ValueExpression expression,
+			ProgramPoint src,
+			ProgramPoint dest,
+			SemanticOracle oracle)
+			throws SemanticException {
+		if (bottom)
+			return this;
+
+		Satisfiability sat = satisfies(expression, src, oracle);
+		if (sat == Satisfiability.NOT_SATISFIED)
+			return bottom();
+		if (sat == Satisfiability.SATISFIED)
+			return this;
+
+		BinaryExpression equality = asEquality(expression);
+		if (equality == null)
+			return this;
+
+		Map<Identifier, Identifier> newClasses = new HashMap<>(classes);
+		Map<Identifier, CongruenceDomain> newCongruences = new HashMap<>(congruences);
+		if (equality.getLeft() instanceof Identifier && equality.getRight() instanceof Identifier) {
+			// [[x == y]]: the two classes are merged, and their congruences are intersected once
+			Identifier x = (Identifier) equality.getLeft();
+			Identifier y = (Identifier) equality.getRight();
+			introduce(newClasses, newCongruences, x);
+			introduce(newClasses, newCongruences, y);
+			if (union(newClasses, newCongruences, x, y).isBottom())
+				return bottom();
+		} else if (equality.getLeft() instanceof Identifier || equality.getRight() instanceof Identifier) {
+			// [[x == e]]: the congruence of the class of x is refined with the one of e
+			boolean left = equality.getLeft() instanceof Identifier;
+			Identifier x = (Identifier) (left ? equality.getLeft() : equality.getRight());
+			ValueExpression e = (ValueExpression) (left ? equality.getRight() : equality.getLeft());
+			CongruenceDomain value = environmentFor(e).eval(e, src, oracle);
+			introduce(newClasses, newCongruences, x);
+			Identifier rep = newClasses.get(x);
+			CongruenceDomain glb = newCongruences.get(rep).glb(value);
+			if (glb.isBottom())
+				return bottom();
+			newCongruences.put(rep, glb);
+		} else
+			return this;
+
+		return new CongruenceEqualityReduced(newClasses, newCongruences, false);
+	}
+
+	@Override
+	public Satisfiability satisfies(
+			ValueExpression expression,
+			ProgramPoint pp,
+			SemanticOracle oracle)
+			throws SemanticException {
+		if (bottom)
+			return Satisfiability.BOTTOM;
+
+		// equalities between variables of the same class are decided without evaluating anything
+		boolean negated = false;
+		ValueExpression inner = expression;
+		if (inner instanceof UnaryExpression
+				&& ((UnaryExpression) inner).getOperator() instanceof LogicalNegation) {
+			inner = (ValueExpression) ((UnaryExpression) inner).getExpression();
+			negated = true;
+		}
+
+		if (inner instanceof BinaryExpression) {
+			BinaryExpression binary = (BinaryExpression) inner;
+			if ((binary.getOperator() instanceof ComparisonEq || binary.getOperator() instanceof ComparisonNe)
+					&& binary.getLeft() instanceof Identifier
+					&& binary.getRight() instanceof Identifier) {
+				Identifier rep = classes.get(binary.getLeft());
+				if (rep != null && rep.equals(classes.get(binary.getRight())))
+					return Satisfiability.fromBoolean(negated != binary.getOperator() instanceof ComparisonEq);
+			}
+		}
+
+		return environmentFor(expression).satisfies(expression, pp, oracle);
+	}
+
+	@Override
+	public boolean knowsIdentifier(
+			Identifier id) {
+		return classes.containsKey(id);
+	}
+
+	@Override
+	public CongruenceEqualityReduced forgetIdentifier(
+			Identifier id)
+			throws SemanticException {
+		if (!classes.containsKey(id))
+			return this;
+
+		Map<Identifier, Identifier> newClasses = new HashMap<>(classes);
+		Map<Identifier, CongruenceDomain> newCongruences = new HashMap<>(congruences);
+		detach(newClasses, newCongruences, id);
+		return new CongruenceEqualityReduced(newClasses, newCongruences, false);
+	}
+
+	@Override
+	public CongruenceEqualityReduced forgetIdentifiersIf(
+			Predicate<Identifier> test)
+			throws SemanticException {
+		Map<Identifier, Identifier> newClasses = new HashMap<>(classes);
+		Map<Identifier, CongruenceDomain> newCongruences = new HashMap<>(congruences);
+		// all the variables are detached at once, so that each class is re-rooted once
+		detach(newClasses, newCongruences, test);
+		return new CongruenceEqualityReduced(newClasses, newCongruences, bottom);
+	}
+
+	@Override
+	public CongruenceEqualityReduced pushScope(
+			ScopeToken token)
+			throws SemanticException {
+		return lift(id -> (Identifier) id.pushScope(token));
+	}
+
+	@Override
+	public CongruenceEqualityReduced popScope(
+			ScopeToken token)
+			throws SemanticException {
+		return lift(id -> (Identifier) id.popScope(token));
+	}
+
+	@Override
+	public StructuredRepresentation representation() {
+		if (isTop())
+			return Lattice.topRepresentation();
+		if (isBottom())
+			return Lattice.bottomRepresentation();
+
+		Map<Identifier, SortedSet<String>> members = new HashMap<>();
+		for (Entry<Identifier, Identifier> entry : classes.entrySet())
+			members.computeIfAbsent(entry.getValue(), k -> new TreeSet<>()).add(entry.getKey().getName());
+
+		Map<StructuredRepresentation, StructuredRepresentation> mapping = new HashMap<>();
+		for (Entry<Identifier, SortedSet<String>> entry : members.entrySet())
+			mapping.put(new StringRepresentation(String.join(" = ", entry.getValue())),
+					congruences.get(entry.getKey()).representation());
+		return new MapRepresentation(mapping);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(classes, congruences, bottom);
+	}
+
+	@Override
+	public boolean equals(
+			Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		CongruenceEqualityReduced other = (CongruenceEqualityReduced) obj;
+		return bottom == other.bottom
+				&& Objects.equals(classes, other.classes)
+				&& Objects.equals(congruences, other.congruences);
+	}
+
+	@Override
+	public String toString() {
+		return representation().toString();
+	}
+
+	private ValueEnvironment<CongruenceDomain> environmentFor(
+			ValueExpression expression) {
+		// non-relational evaluations only need the congruences of the variables in the expression
+		Map<Identifier, CongruenceDomain> function = new HashMap<>();
+		for (Identifier id : Identifiers.of(expression))
+			function.put(id, getState(id));
+		return new ValueEnvironment<>(CONGRUENCE, function);
+	}
+
+	private static BinaryExpression asEquality(
+			ValueExpression expression) {
+		if (expression instanceof BinaryExpression
+				&& ((BinaryExpression) expression).getOperator() instanceof ComparisonEq)
+			return (BinaryExpression) expression;
+
+		if (expression instanceof UnaryExpression
+				&& ((UnaryExpression) expression).getOperator() instanceof LogicalNegation
+				&& ((UnaryExpression) expression).getExpression() instanceof BinaryExpression) {
+			BinaryExpression inner = (BinaryExpression) ((UnaryExpression) expression).getExpression();
+			if (inner.getOperator() instanceof ComparisonNe)
+				return inner;
+		}
+
+		return null;
+	}
+
+	private static Identifier min(
+			Identifier a,
+			Identifier b) {
+		return ORDER.compare(a, b) <= 0 ? a : b;
+	}
+
+	private static void introduce(
+			Map<Identifier, Identifier> classes,
+			Map<Identifier, CongruenceDomain> congruences,
+			Identifier id) {
+		// unknown variables are equal only to themselves, and have no congruence information
+		if (!classes.containsKey(id)) {
+			classes.put(id, id);
+			congruences.put(id, CONGRUENCE.top());
+		}
+	}
+
+	private static void detach(
+			Map<Identifier, Identifier> classes,
+			Map<Identifier, CongruenceDomain> congruences,
+			Identifier id) {
+		if (classes.containsKey(id))
+			detach(classes, congruences, id::equals);
+	}
+
+	// removes the variables satisfying the test in a constant number of passes over the state,
+	// moving each class whose representative is removed to its smallest remaining member
+	private static void detach(
+			Map<Identifier, Identifier> classes,
+			Map<Identifier, CongruenceDomain> congruences,
+			Predicate<Identifier> test) {
+		Set<Identifier> droppedReps = new HashSet<>();
+		Iterator<Entry<Identifier, Identifier>> it = classes.entrySet().iterator();
+		while (it.hasNext()) {
+			Entry<Identifier, Identifier> entry = it.next();
+			if (test.test(entry.getKey())) {
+				if (entry.getKey().equals(entry.getValue()))
+					droppedReps.add(entry.getKey());
+				it.remove();
+			}
+		}
+		if (droppedReps.isEmpty())
+			return;
+
+		Map<Identifier, Identifier> next = new HashMap<>();
+		for (Entry<Identifier, Identifier> entry : classes.entrySet())
+			if (droppedReps.contains(entry.getValue()))
+				next.merge(entry.getValue(), entry.getKey(), CongruenceEqualityReduced::min);
+		for (Entry<Identifier, Identifier> entry : classes.entrySet()) {
+			Identifier rep = next.get(entry.getValue());
+			if (rep != null)
+				entry.setValue(rep);
+		}
+		for (Identifier rep : droppedReps) {
+			CongruenceDomain value = congruences.remove(rep);
+			Identifier moved = next.get(rep);
+			if (moved != null)
+				congruences.put(moved, value);
+		}
+	}
+
+	private static CongruenceDomain union(
+			Map<Identifier, Identifier> classes,
+			Map<Identifier, CongruenceDomain> congruences,
+			Identifier x,
+			Identifier y)
+			throws SemanticException {
+		Identifier repX = classes.get(x);
+		Identifier repY = classes.get(y);
+		if (repX.equals(repY))
+			return congruences.get(repX);
+
+		Identifier rep = min(repX, repY);
+		Identifier dropped = rep.equals(repX) ? repY : repX;
+		CongruenceDomain glb = congruences.get(repX).glb(congruences.get(repY));
+		for (Entry<Identifier, Identifier> entry : classes.entrySet())
+			if (entry.getValue().equals(dropped))
+				entry.setValue(rep);
+		congruences.remove(dropped);
+		congruences.put(rep, glb);
+		return glb;
+	}
+
+	private CongruenceEqualityReduced lift(
+			Lifter lifter)
+			throws SemanticException {
+		if (bottom || classes.isEmpty())
+			return this;
+
+		// the members of each class that survive the lifting stay in the same class, even if its
+		// representative does not survive: the class is re-rooted in its smallest lifted member
+		Map<Identifier, List<Identifier>> members = new HashMap<>();
+		for (Entry<Identifier, Identifier> entry : classes.entrySet()) {
+			Identifier lifted = lifter.lift(entry.getKey());
+			if (lifted != null)
+				members.computeIfAbsent(entry.getValue(), k -> new ArrayList<>()).add(lifted);
+		}
+
+		Map<Identifier, Identifier> newClasses = new HashMap<>();
+		Map<Identifier, CongruenceDomain> newCongruences = new HashMap<>();
+		for (Entry<Identifier, List<Identifier>> entry : members.entrySet()) {
+			List<Identifier> lifted = entry.getValue();
+			Identifier rep = lifted.get(0);
+			for (Identifier id : lifted)
+				rep = min(rep, id);
+			CongruenceDomain value = congruences.get(entry.getKey());
+			boolean collision = false;
+			for (Identifier id : lifted)
+				collision |= newClasses.containsKey(id);
+
+			if (!collision) {
+				for (Identifier id : lifted)
+					newClasses.put(id, rep);
+				newCongruences.put(rep, value);
+				continue;
+			}
+
+			// some variable has been lifted to one of another class: the two classes are merged
+			for (Identifier id : lifted)
+				introduce(newClasses, newCongruences, id);
+			for (Identifier id : lifted)
+				union(newClasses, newCongruences, rep, id);
+			Identifier current = newClasses.get(rep);
+			CongruenceDomain glb = newCongruences.get(current).glb(value);
+			if (glb.isBottom())
+				return bottom();
+			newCongruences.put(current, glb);
+		}
+
+		return new CongruenceEqualityReduced(newClasses, newCongruences, false);
+	}
+
+	@FunctionalInterface
+	private interface Lifter {
+		Identifier lift(
+				Identifier id)
+				throws SemanticException;
+	}
+}
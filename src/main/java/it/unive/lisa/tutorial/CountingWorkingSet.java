@@ -0,0 +1,93 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.util.collections.workset.WorkingSet;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A working set that delegates to another one, counting the elements popped from it. Since the fixpoint pops a node
+ * each time it computes its post-state, the count is the number of fixpoint iterations of the whole analysis. The
+ * count is shared by all the working sets created through {@link #mk()}, and it is available through
+ * {@link #getPops()} on the instance put in the configuration:
+ * {@code conf.fixpointWorkingSet = new CountingWorkingSet<>(conf.fixpointWorkingSet)}.
+ *
+ * @param <E> the type of the elements of the working set
+ */
+public class CountingWorkingSet<E>
+		implements
+		WorkingSet<E> {
+
+	private final WorkingSet<E> delegate;
+
+	// fixpoints of different cfgs can run in parallel
+	private final AtomicLong pops;
+
+	/**
+	 * Builds the working set.
+	 *
+	 * @param delegate the working set actually holding the elements
+	 */
+	public CountingWorkingSet(
+			WorkingSet<E> delegate) {
+		this(delegate, new AtomicLong());
+	}
+
+	private CountingWorkingSet(
+			WorkingSet<E> delegate,
+			AtomicLong pops) {
+		this.delegate = delegate;
+		this.pops = pops;
+	}
+
+	/**
+	 * Yields the number of elements popped from this working set and from all the ones created from it.
+	 *
+	 * @return the number of pops
+	 */
+	public long getPops() {
+		return pops.get();
+	}
+
+	@Override
+	public WorkingSet<E> mk() {
+		return new CountingWorkingSet<>(delegate.mk(), pops);
+	}
+
+	@Override
+	public void push(
+			E e) {
+		delegate.push(e);
+	}
+
+	@Override
+	public E pop() {
+		pops.incrementAndGet();
+		return delegate.pop();
+	}
+
+	@Override
+	public E peek() {
+		return delegate.peek();
+	}
+
+	@Override
+	public int size() {
+		return delegate.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return delegate.isEmpty();
+	}
+
+	@Override
+	public Collection<E> getContents() {
+		return delegate.getContents();
+	}
+
+	@Override
+	public String toString() {
+		return delegate.toString();
+	}
+}
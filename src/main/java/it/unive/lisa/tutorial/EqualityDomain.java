@@ -18,13 +18,11 @@ import java.util.HashSet;
 import java.util.function.Predicate;
 
 public class EqualityDomain implements ValueDomain<EqualityDomain> {
-    public static final EqualityDomain BOTTOM = new EqualityDomain();
-    static {
-        var set = new HashSet<Identifier>();
-        BOTTOM.equalities.add(set);
-    }
+    // instances are never modified once they have been returned, so they can be shared across threads
+    public static final EqualityDomain BOTTOM = new EqualityDomain(true);
     public static final EqualityDomain TOP = new EqualityDomain();
     private final HashSet<HashSet<Identifier>> equalities = new HashSet<>();
+    private final boolean bottom;
 
     private void addEquality(Identifier a, Identifier b) {
         HashSet<Identifier> equalityA = equalities.stream().filter(e -> e.contains(a)).findAny().orElse(null);
@@ -64,9 +62,15 @@ public class EqualityDomain implements ValueDomain<EqualityDomain> {
     }
 
     public EqualityDomain() {
+        this(false);
+    }
+
+    private EqualityDomain(boolean bottom) {
+        this.bottom = bottom;
     }
 
     public EqualityDomain(EqualityDomain other) {
+        this(other.bottom);
         for (var eq: other.equalities) {
             equalities.add(new HashSet<>(eq));
         }
@@ -75,6 +79,12 @@ public class EqualityDomain implements ValueDomain<EqualityDomain> {
 
     @Override
     public boolean lessOrEqual(EqualityDomain other) throws SemanticException {
+        if (isBottom()) {
+            return true;
+        }
+        if (other.isBottom()) {
+            return false;
+        }
         return other.equalities.stream().allMatch(o -> equalities.stream().anyMatch(e -> e.containsAll(o)));
     }
 
@@ -119,11 +129,14 @@ public class EqualityDomain implements ValueDomain<EqualityDomain> {
 
     @Override
     public boolean isBottom() {
-        return this == BOTTOM;
+        return bottom;
     }
 
     @Override
     public EqualityDomain assign(Identifier identifier, ValueExpression valueExpression, ProgramPoint programPoint, SemanticOracle semanticOracle) throws SemanticException {
+        if (isBottom()) {
+            return this;
+        }
         EqualityDomain res = new EqualityDomain(this);
         if (valueExpression instanceof Identifier) {
             res.addEquality(identifier, (Identifier) valueExpression);
@@ -152,6 +165,20 @@ public class EqualityDomain implements ValueDomain<EqualityDomain> {
         return this;
     }
 
+    // the equality classes of this state, that must not be modified
+    Collection<? extends Collection<Identifier>> classes() {
+        return Collections.unmodifiableSet(equalities);
+    }
+
+    // the number of identifiers in the equality classes of this state
+    int size() {
+        int size = 0;
+        for (var eq : equalities) {
+            size += eq.size();
+        }
+        return size;
+    }
+
     @Override
     public boolean knowsIdentifier(Identifier identifier) {
         return equalities.stream().anyMatch(e -> e.contains(identifier));
@@ -159,6 +186,9 @@ public class EqualityDomain implements ValueDomain<EqualityDomain> {
 
     @Override
     public EqualityDomain forgetIdentifier(Identifier identifier) throws SemanticException {
+        if (isBottom()) {
+            return this;
+        }
         var res = new EqualityDomain(this);
         for (var it = res.equalities.iterator(); it.hasNext(); ) {
             var eq = it.next();
@@ -172,6 +202,9 @@ public class EqualityDomain implements ValueDomain<EqualityDomain> {
 
     @Override
     public EqualityDomain forgetIdentifiersIf(Predicate<Identifier> predicate) throws SemanticException {
+        if (isBottom()) {
+            return this;
+        }
         var res = new EqualityDomain(this);
         var identifiers = equalities.stream().flatMap(Collection::stream).toArray(Identifier[]::new);
         for (var identifier: identifiers) {
@@ -186,6 +219,9 @@ public class EqualityDomain implements ValueDomain<EqualityDomain> {
 
     @Override
     public Satisfiability satisfies(ValueExpression valueExpression, ProgramPoint programPoint, SemanticOracle semanticOracle) throws SemanticException {
+        if (isBottom()) {
+            return Satisfiability.BOTTOM;
+        }
         boolean inverted = false;
         if (valueExpression instanceof UnaryExpression) {
             UnaryExpression unary = (UnaryExpression) valueExpression;
@@ -0,0 +1,77 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.symbolic.value.Identifier;
+
+/**
+ * Interns identifiers into dense integer indexes, so that sets of identifiers can be stored as bitsets. Indexes are
+ * assigned in order of first use and are shared by all the analyses running in the same JVM. Interning is
+ * thread-safe.<br>
+ * <br>
+ * Identifiers are interned in a numbered {@link StateInterner}, whose numbers are the indexes: once the canonical
+ * instance of an identifier (the one returned by {@link #canonical(Identifier)}) is no longer reachable, its entry is
+ * removed, and an equal identifier interned later gets a fresh index. Indexes are never reused, so a bitset can only
+ * refer to a released identifier if nothing else keeps its canonical instance alive: the states of
+ * {@link StrictUpperBounds} prevent that by using the canonical instances as the keys of their rows and columns.
+ */
+final class IdentifierIndex {
+
+	private static final StateInterner<Identifier> IDENTIFIERS = StateInterner.numbered();
+
+	private IdentifierIndex() {
+		// this class only contains static methods
+	}
+
+	/**
+	 * Yields the index of the given identifier, assigning a new one if the identifier is not interned.
+	 *
+	 * @param id the identifier
+	 *
+	 * @return the index of {@code id}
+	 */
+	static int intern(
+			Identifier id) {
+		while (true) {
+			int index = IDENTIFIERS.number(IDENTIFIERS.intern(id));
+			// the canonical instance might have been collected right after being interned
+			if (index >= 0)
+				return index;
+		}
+	}
+
+	/**
+	 * Yields the canonical instance of the given identifier, interning it if needed. Keeping the canonical instance
+	 * reachable keeps the index of the identifier assigned.
+	 *
+	 * @param id the identifier
+	 *
+	 * @return the canonical instance equal to {@code id}
+	 */
+	static Identifier canonical(
+			Identifier id) {
+		return IDENTIFIERS.intern(id);
+	}
+
+	/**
+	 * Yields the index of the given identifier, without interning it.
+	 *
+	 * @param id the identifier
+	 *
+	 * @return the index of {@code id}, or {@code -1} if it is not interned
+	 */
+	static int indexOf(
+			Identifier id) {
+		return IDENTIFIERS.number(id);
+	}
+
+	/**
+	 * Yields the identifier with the given index.
+	 *
+	 * @param index the index, as returned by {@link #intern(Identifier)}
+	 *
+	 * @return the canonical instance of the identifier, or {@code null} if it has been released
+	 */
+	static Identifier get(
+			int index) {
+		return IDENTIFIERS.get(index);
+	}
+}
@@ -0,0 +1,54 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.symbolic.SymbolicExpression;
+import it.unive.lisa.symbolic.value.BinaryExpression;
+import it.unive.lisa.symbolic.value.Identifier;
+import it.unive.lisa.symbolic.value.TernaryExpression;
+import it.unive.lisa.symbolic.value.UnaryExpression;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Utilities for inspecting the identifiers that appear inside symbolic expressions.
+ */
+final class Identifiers {
+
+	private Identifiers() {
+		// this class only contains static methods
+	}
+
+	/**
+	 * Yields the identifiers appearing in the given expression.
+	 *
+	 * @param expression the expression to inspect
+	 *
+	 * @return the identifiers appearing in {@code expression}
+	 */
+	static Set<Identifier> of(
+			SymbolicExpression expression) {
+		Set<Identifier> result = new HashSet<>();
+		collect(expression, result);
+		return result;
+	}
+
+	private static void collect(
+			SymbolicExpression expression,
+			Set<Identifier> result) {
+		if (expression instanceof Identifier)
+			result.add((Identifier) expression);
+		else if (expression instanceof UnaryExpression)
+			collect(((UnaryExpression) expression).getExpression(), result);
+		else if (expression instanceof BinaryExpression) {
+			BinaryExpression binary = (BinaryExpression) expression;
+			collect(binary.getLeft(), result);
+			collect(binary.getRight(), result);
+		} else if (expression instanceof TernaryExpression) {
+			TernaryExpression ternary = (TernaryExpression) expression;
+			collect(ternary.getLeft(), result);
+			collect(ternary.getMiddle(), result);
+			collect(ternary.getRight(), result);
+		}
+		// constants and the other leaves do not contain identifiers
+	}
+}
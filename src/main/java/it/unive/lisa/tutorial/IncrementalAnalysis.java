@@ -0,0 +1,561 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.AnalysisException;
+import it.unive.lisa.LiSA;
+import it.unive.lisa.LiSAReport;
+import it.unive.lisa.analysis.Lattice;
+import it.unive.lisa.checks.semantic.SemanticCheck;
+import it.unive.lisa.checks.warnings.Warning;
+import it.unive.lisa.conf.LiSAConfiguration;
+import it.unive.lisa.interprocedural.ModularWorstCaseAnalysis;
+import it.unive.lisa.program.Program;
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.Parameter;
+import it.unive.lisa.program.cfg.edge.Edge;
+import it.unive.lisa.program.cfg.statement.Statement;
+import it.unive.lisa.program.cfg.statement.call.Call;
+import it.unive.lisa.util.datastructures.graph.GraphVisitor;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Runs an analysis reusing, for the parts of the program that did not change, the results of previous runs stored in
+ * an on-disk cache. The program is split in units that LiSA can analyze independently: with LiSA's modular
+ * worst-case analysis each CFG is a unit, while with any other interprocedural analysis (e.g., the one used for the
+ * {@link Taint} analysis) a unit is a group of CFGs connected by calls, since the results of a CFG depend on both its
+ * callers and its callees.<br>
+ * <br>
+ * Each CFG is fingerprinted by hashing its statements, edges, locations and annotations together with the ones of all
+ * the CFGs it can (transitively) call, and each unit by hashing the fingerprints of its CFGs with a description of the
+ * configuration: the classes of its domains (including the ones wrapped by other domains), of the interprocedural
+ * analysis, call graph, open call policy and working set, the checks with their parameters, and the output options.
+ * A unit whose fingerprint is in the cache is not analyzed: its warnings and the files generated for it
+ * (e.g., the fixpoint results, with {@code serializeResults}) are restored from the cache instead. Since changing a
+ * CFG changes the fingerprints of all its callers, dirty CFGs are re-analyzed together with their dependants.<br>
+ * <br>
+ * The code of the domains and of the checks is not part of the fingerprints: the cache must be cleared when it
+ * changes. Warnings restored from the cache are only available in their textual form.
+ */
+public class IncrementalAnalysis {
+
+	// bumped whenever the layout of the cache or the fingerprints change
+	private static final String VERSION = "2";
+
+	private static final String WARNINGS_FILE = "warnings.bin";
+
+	private static final String FILES_DIRECTORY = "files";
+
+	// identifies the domain configuration
+	private final String name;
+
+	// builds a fresh configuration for the given working directory
+	private final Function<String, LiSAConfiguration> configurations;
+
+	private final Path cache;
+
+	/**
+	 * Builds the driver.
+	 *
+	 * @param name           the name of the configuration (e.g., the name of a {@link Preset}), that becomes part of
+	 *                           the fingerprints
+	 * @param configurations a function building a fresh configuration that generates files in the given directory,
+	 *                           invoked once for each analyzed unit
+	 * @param cache          the directory holding the cache, shared by all the runs
+	 */
+	public IncrementalAnalysis(
+			String name,
+			Function<String, LiSAConfiguration> configurations,
+			Path cache) {
+		this.name = name;
+		this.configurations = configurations;
+		this.cache = cache;
+	}
+
+	/**
+	 * Analyzes the given program, generating the files of each unit in a sub-directory of {@code workdir} named after
+	 * its first CFG.
+	 *
+	 * @param program the program
+	 * @param workdir the directory where files will be generated
+	 *
+	 * @return the results of all the units
+	 *
+	 * @throws AnalysisException if the analysis of one of the units fails
+	 * @throws IOException       if the cache or the working directory cannot be accessed
+	 */
+	public Result run(
+			Program program,
+			Path workdir)
+			throws AnalysisException,
+			IOException {
+		// a configuration that is only inspected, never used for an analysis
+		LiSAConfiguration probe = configurations.apply(workdir.toString());
+		String configuration = name + " " + describe(probe);
+		boolean modular = probe.interproceduralAnalysis == null
+				|| probe.interproceduralAnalysis instanceof ModularWorstCaseAnalysis;
+
+		List<CFG> cfgs = new ArrayList<>(program.getAllCFGs());
+		cfgs.sort(Comparator.comparing(IncrementalAnalysis::signature));
+		Map<CFG, Set<CFG>> callees = callees(cfgs);
+		Map<CFG, String> fingerprints = fingerprints(cfgs, callees);
+
+		Map<String, Unit> units = new LinkedHashMap<>();
+		for (List<CFG> members : modular ? singletons(cfgs) : components(cfgs, callees)) {
+			StringBuilder content = new StringBuilder(VERSION).append('\n').append(configuration).append('\n');
+			for (CFG cfg : members)
+				content.append(fingerprints.get(cfg))
+						.append(program.getEntryPoints().contains(cfg) ? " entry\n" : "\n");
+			String fingerprint = hash(content.toString());
+			String directory = signature(members.get(0)).replaceAll("[^A-Za-z0-9_.-]", "_");
+			units.put(signature(members.get(0)), process(program, members, fingerprint, workdir.resolve(directory)));
+		}
+
+		return new Result(units);
+	}
+
+	private Unit process(
+			Program program,
+			List<CFG> members,
+			String fingerprint,
+			Path workdir)
+			throws AnalysisException,
+			IOException {
+		// previous outputs must not survive, as they might not be regenerated
+		delete(workdir);
+
+		Path entry = cache.resolve(fingerprint);
+		if (Files.isDirectory(entry)) {
+			copy(entry.resolve(FILES_DIRECTORY), workdir);
+			return new Unit(fingerprint, true, load(entry.resolve(WARNINGS_FILE)));
+		}
+
+		// a program containing only the cfgs of the unit
+		Program unit = new Program(program.getFeatures(), program.getTypes());
+		for (CFG cfg : members) {
+			unit.addCodeMember(cfg);
+			if (program.getEntryPoints().contains(cfg))
+				unit.addEntryPoint(cfg);
+		}
+		LiSAReport report = new LiSA(configurations.apply(workdir.toString())).run(unit);
+
+		List<String> warnings = new ArrayList<>();
+		for (Warning warning : new TreeSet<>(report.getWarnings()))
+			warnings.add(warning.toString());
+
+		// the entry is prepared aside and then moved in place, so that a
+		// crashed or concurrent run never leaves a partial entry behind
+		Files.createDirectories(cache);
+		Path tmp = Files.createTempDirectory(cache, fingerprint);
+		try {
+			copy(workdir, tmp.resolve(FILES_DIRECTORY));
+			store(tmp.resolve(WARNINGS_FILE), warnings);
+			Files.move(tmp, entry, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			// another run stored the same entry in the meantime
+			if (!Files.isDirectory(entry))
+				throw e;
+		} finally {
+			delete(tmp);
+		}
+
+		return new Unit(fingerprint, false, warnings);
+	}
+
+	// the cfgs that each cfg might call, resolving calls by the name of their target
+	private static Map<CFG, Set<CFG>> callees(
+			List<CFG> cfgs) {
+		Map<String, List<CFG>> byName = new HashMap<>();
+		for (CFG cfg : cfgs)
+			byName.computeIfAbsent(cfg.getDescriptor().getName(), n -> new ArrayList<>()).add(cfg);
+
+		Map<CFG, Set<CFG>> callees = new HashMap<>();
+		for (CFG cfg : cfgs) {
+			Set<CFG> targets = new HashSet<>();
+			cfg.accept(new GraphVisitor<Set<CFG>, CFG, Statement, Edge>() {
+				@Override
+				public boolean visit(
+						Set<CFG> tool,
+						CFG graph,
+						Statement node) {
+					if (node instanceof Call)
+						tool.addAll(byName.getOrDefault(((Call) node).getTargetName(), List.of()));
+					return true;
+				}
+			}, targets);
+			callees.put(cfg, targets);
+		}
+		return callees;
+	}
+
+	// the fingerprint of each cfg, that covers the cfg and everything it might call
+	private static Map<CFG, String> fingerprints(
+			List<CFG> cfgs,
+			Map<CFG, Set<CFG>> callees) {
+		Map<CFG, String> contents = new HashMap<>();
+		for (CFG cfg : cfgs)
+			contents.put(cfg, hash(content(cfg)));
+
+		Map<CFG, String> fingerprints = new HashMap<>();
+		for (CFG cfg : cfgs) {
+			// recursion is handled by hashing the reachable cfgs as a set
+			SortedSet<String> reachable = new TreeSet<>();
+			for (CFG callee : reachable(cfg, callees))
+				reachable.add(contents.get(callee));
+			fingerprints.put(cfg, hash(contents.get(cfg) + "\n" + String.join("\n", reachable)));
+		}
+		return fingerprints;
+	}
+
+	private static String content(
+			CFG cfg) {
+		List<String> lines = new ArrayList<>();
+		lines.add(signature(cfg) + " @ " + cfg.getDescriptor().getLocation() + " " + cfg.getDescriptor().getAnnotations());
+		for (Parameter formal : cfg.getDescriptor().getFormals())
+			lines.add(formal + " " + formal.getAnnotations());
+		// sub-expressions are visited as well
+		cfg.accept(new GraphVisitor<List<String>, CFG, Statement, Edge>() {
+			@Override
+			public boolean visit(
+					List<String> tool,
+					CFG graph,
+					Statement node) {
+				tool.add(node.getClass().getName() + " " + node + " @ " + node.getLocation());
+				return true;
+			}
+
+			@Override
+			public boolean visit(
+					List<String> tool,
+					CFG graph,
+					Edge edge) {
+				tool.add(edge.getClass().getName() + " " + edge.getSource().getLocation() + " " + edge.getSource()
+						+ " -> " + edge.getDestination().getLocation() + " " + edge.getDestination());
+				return true;
+			}
+		}, lines);
+
+		// the order of the visit is not specified
+		Collections.sort(lines);
+		return String.join("\n", lines);
+	}
+
+	private static Set<CFG> reachable(
+			CFG cfg,
+			Map<CFG, Set<CFG>> callees) {
+		Set<CFG> reachable = new HashSet<>();
+		Deque<CFG> ws = new ArrayDeque<>(callees.get(cfg));
+		while (!ws.isEmpty()) {
+			CFG current = ws.pop();
+			if (reachable.add(current))
+				ws.addAll(callees.get(current));
+		}
+		return reachable;
+	}
+
+	private static List<List<CFG>> singletons(
+			List<CFG> cfgs) {
+		List<List<CFG>> units = new ArrayList<>();
+		for (CFG cfg : cfgs)
+			units.add(List.of(cfg));
+		return units;
+	}
+
+	// the groups of cfgs connected by calls, in either direction
+	private static List<List<CFG>> components(
+			List<CFG> cfgs,
+			Map<CFG, Set<CFG>> callees) {
+		Map<CFG, Set<CFG>> neighbours = new HashMap<>();
+		for (CFG cfg : cfgs)
+			for (CFG callee : callees.get(cfg)) {
+				neighbours.computeIfAbsent(cfg, c -> new HashSet<>()).add(callee);
+				neighbours.computeIfAbsent(callee, c -> new HashSet<>()).add(cfg);
+			}
+
+		List<List<CFG>> units = new ArrayList<>();
+		Set<CFG> seen = new HashSet<>();
+		// cfgs are sorted, so each component is listed starting from its first cfg
+		for (CFG cfg : cfgs) {
+			if (!seen.add(cfg))
+				continue;
+			List<CFG> component = new ArrayList<>();
+			Deque<CFG> ws = new ArrayDeque<>(List.of(cfg));
+			while (!ws.isEmpty()) {
+				CFG current = ws.pop();
+				component.add(current);
+				for (CFG next : neighbours.getOrDefault(current, Set.of()))
+					if (seen.add(next))
+						ws.push(next);
+			}
+			component.sort(Comparator.comparing(IncrementalAnalysis::signature));
+			units.add(component);
+		}
+		return units;
+	}
+
+	// the parts of the configuration that can change the results
+	private static String describe(
+			LiSAConfiguration conf) {
+		SortedSet<String> checks = new TreeSet<>();
+		for (SemanticCheck<?> check : conf.semanticChecks)
+			checks.add(parameters(check));
+		return domains(conf.abstractState, Collections.newSetFromMap(new IdentityHashMap<>()))
+				+ " " + className(conf.interproceduralAnalysis)
+				+ " " + className(conf.callGraph)
+				+ " " + className(conf.openCallPolicy)
+				+ " " + className(conf.fixpointWorkingSet)
+				+ " " + checks
+				+ " " + conf.analysisGraphs
+				+ " " + conf.jsonOutput
+				+ " " + conf.serializeResults
+				+ " " + conf.useWideningPoints
+				+ " " + conf.wideningThreshold
+				+ " " + conf.optimize;
+	}
+
+	private static String className(
+			Object object) {
+		return object == null ? "null" : object.getClass().getName();
+	}
+
+	// the class of the given lattice element, followed by the descriptions of its fields that are lattice elements
+	// themselves: this yields the heap, value and type domains of an abstract state, as well as the components of
+	// wrappers and products (e.g., the domain wrapped by an InterningValueDomain). The other fields hold the state
+	// of the element, not its configuration, and are skipped
+	private static String domains(
+			Object lattice,
+			Set<Object> visited) {
+		if (!visited.add(lattice))
+			return className(lattice);
+		StringBuilder description = new StringBuilder(className(lattice));
+		List<String> components = new ArrayList<>();
+		for (Object value : fields(lattice, Lattice.class::isInstance))
+			components.add(domains(value, visited));
+		if (!components.isEmpty())
+			description.append(components);
+		return description.toString();
+	}
+
+	// the class of the given check, followed by the values of its fields that are numbers, booleans, strings or
+	// enums, that is, its parameters (e.g., the size of the shards of a LazyHtmlDump)
+	private static String parameters(
+			Object check) {
+		List<String> parameters = new ArrayList<>();
+		for (Object value : fields(check, value -> value instanceof Number
+				|| value instanceof Boolean
+				|| value instanceof CharSequence
+				|| value instanceof Enum))
+			parameters.add(value.toString());
+		return className(check) + parameters;
+	}
+
+	// the values of the instance fields of the given object that satisfy the given test, in declaration order
+	private static List<Object> fields(
+			Object object,
+			Predicate<Object> test) {
+		List<Object> values = new ArrayList<>();
+		for (Class<?> type = object.getClass(); type != null && type != Object.class; type = type.getSuperclass())
+			for (Field field : type.getDeclaredFields())
+				if (!Modifier.isStatic(field.getModifiers()))
+					try {
+						field.setAccessible(true);
+						Object value = field.get(object);
+						if (value != null && test.test(value))
+							values.add(value);
+					} catch (ReflectiveOperationException | RuntimeException e) {
+						// fields that cannot be read are not part of the description
+					}
+		return values;
+	}
+
+	private static String signature(
+			CFG cfg) {
+		return cfg.getDescriptor().getFullSignature();
+	}
+
+	private static String hash(
+			String content) {
+		try {
+			StringBuilder hex = new StringBuilder();
+			for (byte b : MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8)))
+				hex.append(String.format("%02x", b));
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// every java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void store(
+			Path file,
+			List<String> warnings)
+			throws IOException {
+		try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+			out.writeInt(warnings.size());
+			for (String warning : warnings)
+				out.writeUTF(warning);
+		}
+	}
+
+	private static List<String> load(
+			Path file)
+			throws IOException {
+		try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+			int size = in.readInt();
+			List<String> warnings = new ArrayList<>(size);
+			for (int i = 0; i < size; i++)
+				warnings.add(in.readUTF());
+			return warnings;
+		}
+	}
+
+	private static void copy(
+			Path from,
+			Path to)
+			throws IOException {
+		Files.createDirectories(to);
+		if (!Files.isDirectory(from))
+			return;
+		try (Stream<Path> files = Files.walk(from)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Path target = to.resolve(from.relativize(file).toString());
+				if (Files.isDirectory(file))
+					Files.createDirectories(target);
+				else
+					Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+
+	private static void delete(
+			Path directory)
+			throws IOException {
+		if (!Files.exists(directory))
+			return;
+		try (Stream<Path> files = Files.walk(directory)) {
+			for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+				Files.delete(file);
+		}
+	}
+
+	/**
+	 * The outcome of the analysis of a single unit.
+	 */
+	public static final class Unit {
+
+		private final String fingerprint;
+
+		private final boolean reused;
+
+		private final List<String> warnings;
+
+		private Unit(
+				String fingerprint,
+				boolean reused,
+				List<String> warnings) {
+			this.fingerprint = fingerprint;
+			this.reused = reused;
+			this.warnings = Collections.unmodifiableList(warnings);
+		}
+
+		/**
+		 * Yields the fingerprint of the unit, that is also the name of its entry in the cache.
+		 *
+		 * @return the fingerprint
+		 */
+		public String getFingerprint() {
+			return fingerprint;
+		}
+
+		/**
+		 * Yields whether the results of the unit have been restored from the cache.
+		 *
+		 * @return {@code true} if the unit has not been analyzed
+		 */
+		public boolean isReused() {
+			return reused;
+		}
+
+		/**
+		 * Yields the textual form of the warnings generated for the unit, in their natural order.
+		 *
+		 * @return the warnings
+		 */
+		public List<String> getWarnings() {
+			return warnings;
+		}
+	}
+
+	/**
+	 * The results of an {@link IncrementalAnalysis}.
+	 */
+	public static final class Result {
+
+		private final Map<String, Unit> units;
+
+		private Result(
+				Map<String, Unit> units) {
+			this.units = Collections.unmodifiableMap(units);
+		}
+
+		/**
+		 * Yields the outcome of each unit, indexed and ordered by the signature of its first CFG.
+		 *
+		 * @return the units
+		 */
+		public Map<String, Unit> getUnits() {
+			return units;
+		}
+
+		/**
+		 * Yields the number of units that have been analyzed, as opposed to restored from the cache.
+		 *
+		 * @return the number of analyzed units
+		 */
+		public int getAnalyzed() {
+			int analyzed = 0;
+			for (Unit unit : units.values())
+				if (!unit.isReused())
+					analyzed++;
+			return analyzed;
+		}
+
+		/**
+		 * Yields the textual form of the warnings generated for all the units, in the order of the units.
+		 *
+		 * @return the warnings
+		 */
+		public List<String> getWarnings() {
+			List<String> warnings = new ArrayList<>();
+			for (Unit unit : units.values())
+				warnings.addAll(unit.getWarnings());
+			return warnings;
+		}
+	}
+}
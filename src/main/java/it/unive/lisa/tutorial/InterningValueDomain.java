@@ -0,0 +1,260 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.analysis.ScopeToken;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.SemanticOracle;
+import it.unive.lisa.analysis.lattices.Satisfiability;
+import it.unive.lisa.analysis.value.ValueDomain;
+import it.unive.lisa.program.cfg.ProgramPoint;
+import it.unive.lisa.symbolic.value.Identifier;
+import it.unive.lisa.symbolic.value.ValueExpression;
+import it.unive.lisa.util.representation.StructuredRepresentation;
+
+import java.util.function.Predicate;
+
+/**
+ * A value domain that wraps another one, hash-consing its states: every state produced by an operation is replaced by
+ * the canonical instance equal to it, held in a {@link StateInterner} shared by all the states derived from the same
+ * domain. Consecutive program points whose value states are equal (e.g., along statements that do not touch the
+ * tracked variables) then share a single instance in the results, and two canonical states are equal if and only if
+ * they are the same object, so that comparisons between them, as well as {@link #lessOrEqual} and {@link #lub} between
+ * equal states, are constant-time. The structural hash of each state is computed once, when it is interned.<br>
+ * <br>
+ * Interning costs a hash and, on a hit, an equality check of the whole state for each operation: it pays off on
+ * large states, such as {@link Pentagons} or environments of many variables, that are often left unchanged. Use it
+ * by wrapping the value domain of the configuration, e.g.
+ * {@code DefaultConfiguration.simpleState(heap, new InterningValueDomain<>(new Pentagons()), types)}.<br>
+ * <br>
+ * Every state is hashed, and possibly compared, as soon as it is produced. For domains that compute part of a result
+ * lazily this defeats the laziness: the upper bounds of a join of {@link Pentagons} are computed by the join itself
+ * instead of when they are first needed. This only costs the joins whose result is never inspected, since the
+ * fixpoint applies a transfer function or a comparison to almost every joined state anyway.
+ *
+ * @param <D> the type of the wrapped domain
+ */
+public class InterningValueDomain<D extends ValueDomain<D>>
+		implements
+		ValueDomain<InterningValueDomain<D>> {
+
+	private final D domain;
+
+	private final int hash;
+
+	private final StateInterner<InterningValueDomain<D>> interner;
+
+	// whether this is the canonical instance of its state in the interner: it is set right after interning, and
+	// threads that do not see it yet just fall back to structural comparisons
+	private boolean canonical;
+
+	/**
+	 * Builds the domain, with a fresh table of canonical states.
+	 *
+	 * @param domain the domain to intern
+	 */
+	public InterningValueDomain(
+			D domain) {
+		this(domain, new StateInterner<>(InterningValueDomain::hashCode));
+	}
+
+	private InterningValueDomain(
+			D domain,
+			StateInterner<InterningValueDomain<D>> interner) {
+		this.domain = domain;
+		this.hash = domain.hashCode();
+		this.interner = interner;
+	}
+
+	/**
+	 * Yields the wrapped state.
+	 *
+	 * @return the state
+	 */
+	public D getDomain() {
+		return domain;
+	}
+
+	/**
+	 * Yields the table of canonical states shared by all the states derived from the same domain.
+	 *
+	 * @return the table
+	 */
+	public StateInterner<InterningValueDomain<D>> getInterner() {
+		return interner;
+	}
+
+	private InterningValueDomain<D> wrap(
+			D result) {
+		if (result == domain && canonical)
+			return this;
+		InterningValueDomain<D> state = new InterningValueDomain<>(result, interner);
+		InterningValueDomain<D> interned = interner.intern(state);
+		if (interned == state)
+			state.canonical = true;
+		return interned;
+	}
+
+	@Override
+	public boolean lessOrEqual(
+			InterningValueDomain<D> other)
+			throws SemanticException {
+		if (this == other)
+			return true;
+		return domain.lessOrEqual(other.domain);
+	}
+
+	@Override
+	public InterningValueDomain<D> lub(
+			InterningValueDomain<D> other)
+			throws SemanticException {
+		if (this == other)
+			return this;
+		return wrap(domain.lub(other.domain));
+	}
+
+	@Override
+	public InterningValueDomain<D> glb(
+			InterningValueDomain<D> other)
+			throws SemanticException {
+		if (this == other)
+			return this;
+		return wrap(domain.glb(other.domain));
+	}
+
+	@Override
+	public InterningValueDomain<D> widening(
+			InterningValueDomain<D> other)
+			throws SemanticException {
+		// widenings with thresholds might not be idempotent, so no shortcut here
+		return wrap(domain.widening(other.domain));
+	}
+
+	@Override
+	public InterningValueDomain<D> narrowing(
+			InterningValueDomain<D> other)
+			throws SemanticException {
+		return wrap(domain.narrowing(other.domain));
+	}
+
+	@Override
+	public InterningValueDomain<D> top() {
+		return wrap(domain.top());
+	}
+
+	@Override
+	public boolean isTop() {
+		return domain.isTop();
+	}
+
+	@Override
+	public InterningValueDomain<D> bottom() {
+		return wrap(domain.bottom());
+	}
+
+	@Override
+	public boolean isBottom() {
+		return domain.isBottom();
+	}
+
+	@Override
+	public InterningValueDomain<D> assign(
+			Identifier id,
+			ValueExpression expression,
+			ProgramPoint pp,
+			SemanticOracle oracle)
+			throws SemanticException {
+		return wrap(domain.assign(id, expression, pp, oracle));
+	}
+
+	@Override
+	public InterningValueDomain<D> smallStepSemantics(
+			ValueExpression expression,
+			ProgramPoint pp,
+			SemanticOracle oracle)
+			throws SemanticException {
+		return wrap(domain.smallStepSemantics(expression, pp, oracle));
+	}
+
+	@Override
+	public InterningValueDomain<D> assume(
+			ValueExpression expression,
+			ProgramPoint src,
+			ProgramPoint dest,
+			SemanticOracle oracle)
+			throws SemanticException {
+		return wrap(domain.assume(expression, src, dest, oracle));
+	}
+
+	@Override
+	public Satisfiability satisfies(
+			ValueExpression expression,
+			ProgramPoint pp,
+			SemanticOracle oracle)
+			throws SemanticException {
+		return domain.satisfies(expression, pp, oracle);
+	}
+
+	@Override
+	public boolean knowsIdentifier(
+			Identifier id) {
+		return domain.knowsIdentifier(id);
+	}
+
+	@Override
+	public InterningValueDomain<D> forgetIdentifier(
+			Identifier id)
+			throws SemanticException {
+		return wrap(domain.forgetIdentifier(id));
+	}
+
+	@Override
+	public InterningValueDomain<D> forgetIdentifiersIf(
+			Predicate<Identifier> test)
+			throws SemanticException {
+		return wrap(domain.forgetIdentifiersIf(test));
+	}
+
+	@Override
+	public InterningValueDomain<D> pushScope(
+			ScopeToken token)
+			throws SemanticException {
+		return wrap(domain.pushScope(token));
+	}
+
+	@Override
+	public InterningValueDomain<D> popScope(
+			ScopeToken token)
+			throws SemanticException {
+		return wrap(domain.popScope(token));
+	}
+
+	@Override
+	public StructuredRepresentation representation() {
+		return domain.representation();
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(
+			Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		InterningValueDomain<?> other = (InterningValueDomain<?>) obj;
+		// distinct canonical states of the same table are never equal
+		if (canonical && other.canonical && (Object) interner == other.interner)
+			return false;
+		return hash == other.hash && domain.equals(other.domain);
+	}
+
+	@Override
+	public String toString() {
+		return domain.toString();
+	}
+}
@@ -0,0 +1,259 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.analysis.AbstractState;
+import it.unive.lisa.analysis.AnalyzedCFG;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.checks.semantic.CheckToolWithAnalysisResults;
+import it.unive.lisa.checks.semantic.SemanticCheck;
+import it.unive.lisa.outputs.serializableGraph.SerializableArray;
+import it.unive.lisa.outputs.serializableGraph.SerializableObject;
+import it.unive.lisa.outputs.serializableGraph.SerializableString;
+import it.unive.lisa.outputs.serializableGraph.SerializableValue;
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.edge.Edge;
+import it.unive.lisa.program.cfg.statement.Statement;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A semantic check that dumps the results of the analysis as html pages that load the states lazily, as an
+ * alternative to {@code GraphType.HTML} for large programs. For each CFG, a lightweight page listing its statements
+ * and edges is written in {@link #DIRECTORY}, together with an {@code index.html} linking all of them; the states are
+ * streamed to shards of {@code shardSize} statements each, and a shard is loaded by the page only when one of its
+ * statements is clicked. Shards contain json objects wrapped in a call to a javascript function, so that they can be
+ * loaded with a {@code <script>} element also when the pages are opened from the file system.
+ *
+ * @param <A> the type of abstract state used by the analysis
+ */
+public class LazyHtmlDump<A extends AbstractState<A>>
+		implements
+		SemanticCheck<A> {
+
+	/**
+	 * The name of the directory, inside the working directory, containing the pages.
+	 */
+	public static final String DIRECTORY = "lazy-html";
+
+	private final int shardSize;
+
+	private final List<CFG> cfgs = new ArrayList<>();
+
+	/**
+	 * Builds the check, with shards of 64 statements.
+	 */
+	public LazyHtmlDump() {
+		this(64);
+	}
+
+	/**
+	 * Builds the check.
+	 *
+	 * @param shardSize the number of statements whose states are stored in the same shard
+	 */
+	public LazyHtmlDump(
+			int shardSize) {
+		this.shardSize = shardSize;
+	}
+
+	// This method is called once for each analyzed CFG, before its statements
+	@Override
+	public boolean visit(
+			CheckToolWithAnalysisResults<A> tool,
+			CFG graph) {
+		cfgs.add(graph);
+		return true;
+	}
+
+	@Override
+	public void afterExecution(
+			CheckToolWithAnalysisResults<A> tool) {
+		cfgs.sort(Comparator.comparing(cfg -> cfg.getDescriptor().getFullSignature()));
+		Path directory = Paths.get(tool.getFileManager().getWorkdir(), DIRECTORY);
+		try {
+			Files.createDirectories(directory);
+			try (Writer writer = Files.newBufferedWriter(directory.resolve("index.html"))) {
+				writer.write("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"utf-8\">\n<title>Results</title>\n"
+						+ "</head>\n<body>\n<h1>Results</h1>\n<ul>\n");
+				for (int i = 0; i < cfgs.size(); i++)
+					writer.write("<li><a href=\"" + name(i, cfgs.get(i)) + ".html\">"
+							+ BinaryResults.html(cfgs.get(i).getDescriptor().getFullSignature()) + "</a></li>\n");
+				writer.write("</ul>\n</body>\n</html>\n");
+			}
+
+			for (int i = 0; i < cfgs.size(); i++)
+				dump(tool, cfgs.get(i), name(i, cfgs.get(i)), directory);
+		} catch (IOException | SemanticException e) {
+			System.err.println("Cannot dump the results in " + directory);
+			e.printStackTrace(System.err);
+		}
+	}
+
+	private void dump(
+			CheckToolWithAnalysisResults<A> tool,
+			CFG cfg,
+			String name,
+			Path directory)
+			throws IOException,
+			SemanticException {
+		List<Statement> nodes = new ArrayList<>(cfg.getNodes());
+		nodes.sort(Comparator.comparing((Statement node) -> node.getLocation()).thenComparing(Statement::toString));
+		Map<Statement, Integer> ids = new HashMap<>();
+		for (Statement node : nodes)
+			ids.put(node, ids.size());
+
+		List<AnalyzedCFG<A>> results = new ArrayList<>(tool.getResultOf(cfg));
+
+		// the skeleton: statements and edges only
+		try (Writer writer = Files.newBufferedWriter(directory.resolve(name + ".html"))) {
+			writer.write("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"utf-8\">\n<title>");
+			writer.write(BinaryResults.html(cfg.getDescriptor().getFullSignature()));
+			writer.write("</title>\n<style>\n"
+					+ "td { vertical-align: top; padding: 2px 8px; }\n"
+					+ "tr.node { cursor: pointer; }\n"
+					+ "tr.selected { background: #ffd; }\n"
+					+ "#state { position: fixed; top: 0; right: 0; width: 40%; height: 100%; overflow: auto;"
+					+ " border-left: 1px solid #ccc; padding: 8px; background: #fff; }\n"
+					+ "ul { margin: 0; padding-left: 16px; }\n"
+					+ "</style>\n</head>\n<body>\n<div style=\"width: 58%\">\n<h1>");
+			writer.write(BinaryResults.html(cfg.getDescriptor().getFullSignature()));
+			writer.write("</h1>\n<p><a href=\"index.html\">All CFGs</a></p>\n<table>\n");
+			for (Statement node : nodes) {
+				int id = ids.get(node);
+				writer.write("<tr class=\"node\" id=\"n" + id + "\" onclick=\"select(" + id + ")\"><td>" + id
+						+ "</td><td><code>" + BinaryResults.html(node.toString()) + "</code></td><td><small>"
+						+ BinaryResults.html(node.getLocation().toString()) + "</small></td><td>");
+				for (Edge edge : cfg.getOutgoingEdges(node))
+					writer.write("<a href=\"#n" + ids.get(edge.getDestination()) + "\">&rarr; "
+							+ ids.get(edge.getDestination()) + "</a> <small>"
+							+ edge.getClass().getSimpleName().replace("Edge", "").toLowerCase() + "</small> ");
+				writer.write("</td></tr>\n");
+			}
+			writer.write("</table>\n</div>\n<div id=\"state\">Click on a statement to see its post-state</div>\n");
+			writer.write("<script>\n"
+					+ "var shardSize = " + shardSize + ", shards = {}, pending = null;\n"
+					+ "function lisaShard(shard, states) {\n"
+					+ "  shards[shard] = states;\n"
+					+ "  // the statement clicked last might belong to another shard, still loading\n"
+					+ "  if (pending !== null && Math.floor(pending / shardSize) === shard) show(pending);\n"
+					+ "}\n"
+					+ "function select(id) {\n"
+					+ "  var shard = Math.floor(id / shardSize);\n"
+					+ "  pending = id;\n"
+					+ "  if (shards[shard]) { show(id); return; }\n"
+					+ "  var script = document.createElement('script');\n"
+					+ "  script.src = 'states/" + name + "/' + shard + '.js';\n"
+					+ "  document.head.appendChild(script);\n"
+					+ "}\n"
+					+ "function render(value) {\n"
+					+ "  if (typeof value === 'string') { var span = document.createElement('span');"
+					+ " span.textContent = value; return span; }\n"
+					+ "  var list = document.createElement('ul');\n"
+					+ "  for (var key in value) { var item = document.createElement('li');\n"
+					+ "    if (!Array.isArray(value)) { var b = document.createElement('b'); b.textContent = key + ': ';"
+					+ " item.appendChild(b); }\n"
+					+ "    item.appendChild(render(value[key])); list.appendChild(item); }\n"
+					+ "  return list;\n"
+					+ "}\n"
+					+ "function show(id) {\n"
+					+ "  var states = shards[Math.floor(id / shardSize)][id % shardSize];\n"
+					+ "  var panel = document.getElementById('state');\n"
+					+ "  panel.innerHTML = '';\n"
+					+ "  var old = document.querySelector('tr.selected'); if (old) old.className = 'node';\n"
+					+ "  document.getElementById('n' + id).className = 'node selected';\n"
+					+ "  for (var i = 0; i < states.length; i++) { var h = document.createElement('h3');"
+					+ " h.textContent = 'Statement ' + id + ', context ' + i; panel.appendChild(h);"
+					+ " panel.appendChild(render(states[i])); }\n"
+					+ "  pending = null;\n"
+					+ "}\n"
+					+ "</script>\n</body>\n</html>\n");
+		}
+
+		// the shards: each one is an array with, for each statement, the array of its post-states. The serializable
+		// tree of a state is built by LiSA as a whole, so only one of them is held in memory at any time
+		Path shards = directory.resolve("states").resolve(name);
+		Files.createDirectories(shards);
+		for (int shard = 0; shard * shardSize < nodes.size(); shard++)
+			try (Writer writer = Files.newBufferedWriter(shards.resolve(shard + ".js"))) {
+				writer.write("lisaShard(" + shard + ", [\n");
+				for (int i = shard * shardSize; i < Math.min(nodes.size(), (shard + 1) * shardSize); i++) {
+					writer.write(i == shard * shardSize ? "[" : ",\n[");
+					for (int r = 0; r < results.size(); r++) {
+						if (r > 0)
+							writer.write(", ");
+						json(writer, results.get(r).getAnalysisStateAfter(nodes.get(i)).getState().representation()
+								.toSerializableValue());
+					}
+					writer.write("]");
+				}
+				writer.write("\n]);\n");
+			}
+	}
+
+	// streams the value to the writer as json
+	private static void json(
+			Writer writer,
+			SerializableValue value)
+			throws IOException {
+		if (value instanceof SerializableArray) {
+			writer.write('[');
+			boolean first = true;
+			for (SerializableValue element : ((SerializableArray) value).getElements()) {
+				if (!first)
+					writer.write(", ");
+				json(writer, element);
+				first = false;
+			}
+			writer.write(']');
+		} else if (value instanceof SerializableObject) {
+			writer.write('{');
+			boolean first = true;
+			for (Map.Entry<String, SerializableValue> field : ((SerializableObject) value).getFields().entrySet()) {
+				if (!first)
+					writer.write(", ");
+				string(writer, field.getKey());
+				writer.write(": ");
+				json(writer, field.getValue());
+				first = false;
+			}
+			writer.write('}');
+		} else
+			string(writer, value instanceof SerializableString
+					? ((SerializableString) value).getValue()
+					: String.valueOf(value));
+	}
+
+	private static void string(
+			Writer writer,
+			String text)
+			throws IOException {
+		writer.write('"');
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '"' || c == '\\')
+				writer.write("\\" + c);
+			else if (c < 0x20 || c == '\u2028' || c == '\u2029')
+				// line separators are valid in json, but not in javascript before ES2019
+				writer.write(String.format("\\u%04x", (int) c));
+			else
+				writer.write(c);
+		}
+		writer.write('"');
+	}
+
+	// the name of the files of the cfg at the given position in the sorted list: signatures that only differ in
+	// the characters replaced by the sanitization would otherwise share their files
+	private static String name(
+			int index,
+			CFG cfg) {
+		return index + "-" + cfg.getDescriptor().getFullSignature().replaceAll("[^A-Za-z0-9_.-]", "_");
+	}
+}
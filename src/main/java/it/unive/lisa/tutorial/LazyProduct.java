@@ -0,0 +1,315 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.analysis.BaseLattice;
+import it.unive.lisa.analysis.Lattice;
+import it.unive.lisa.analysis.ScopeToken;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.SemanticOracle;
+import it.unive.lisa.analysis.lattices.Satisfiability;
+import it.unive.lisa.analysis.value.ValueDomain;
+import it.unive.lisa.program.cfg.ProgramPoint;
+import it.unive.lisa.symbolic.value.Identifier;
+import it.unive.lisa.symbolic.value.ValueExpression;
+import it.unive.lisa.util.representation.MapRepresentation;
+import it.unive.lisa.util.representation.StringRepresentation;
+import it.unive.lisa.util.representation.StructuredRepresentation;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A product of an arbitrary number of value domains that evaluates the transfer functions of its components lazily:
+ * <ul>
+ * <li>as soon as one component goes to bottom, the whole product is bottom and the remaining components are not
+ * evaluated;</li>
+ * <li>components that do not know an identifier are not asked to forget it, as that cannot change them (assumptions
+ * are always processed by every component, as they can reach bottom on constant guards or introduce relations between
+ * variables that a component has not seen yet);</li>
+ * <li>{@link #satisfies(ValueExpression, ProgramPoint, SemanticOracle)} stops at the first component that can decide
+ * the query.</li>
+ * </ul>
+ * Components are queried in the order they are given, so cheaper domains should come first.<br>
+ * <br>
+ * Apart from the bottom check, assignments, assumptions and expression evaluations still reach every component: an
+ * expression can change a component even if it does not know any of its identifiers. The product is not reduced, so
+ * it does not replace {@link Pentagons}, whose intervals and bounds refine each other, nor
+ * {@link CongruenceEqualityCartesian}, that shows the {@code CartesianProduct} of LiSA: it is an alternative
+ * configuration for the same components, as in its test.
+ */
+public class LazyProduct
+		// instances of this class are lattice elements such that:
+		// - their state (fields) hold the information contained into a whole program state
+		// - they provide logic for the evaluation of expressions
+		implements ValueDomain<LazyProduct>,
+		// we exploit BaseLattice to avoid writing common-sense logic
+		BaseLattice<LazyProduct> {
+
+	private final ValueDomain<?>[] components;
+
+	// a product is bottom as soon as one of its components is
+	private final boolean bottom;
+
+	public LazyProduct(
+			ValueDomain<?>... components) {
+		this.components = components;
+		this.bottom = Arrays.stream(components).anyMatch(Lattice::isBottom);
+	}
+
+	/**
+	 * Yields the component at the given position.
+	 *
+	 * @param index the position of the component
+	 *
+	 * @return the component
+	 */
+	public ValueDomain<?> getComponent(
+			int index) {
+		return components[index];
+	}
+
+	/**
+	 * Yields the number of components of this product.
+	 *
+	 * @return the number of components
+	 */
+	public int getComponentCount() {
+		return components.length;
+	}
+
+	@Override
+	public LazyProduct top() {
+		return new LazyProduct(Arrays.stream(components).map(Lattice::top).toArray(ValueDomain<?>[]::new));
+	}
+
+	@Override
+	public boolean isTop() {
+		// since top() does not return a constant value, we have to override this method as well
+		return Arrays.stream(components).allMatch(Lattice::isTop);
+	}
+
+	@Override
+	public LazyProduct bottom() {
+		return new LazyProduct(Arrays.stream(components).map(Lattice::bottom).toArray(ValueDomain<?>[]::new));
+	}
+
+	@Override
+	public boolean isBottom() {
+		// since bottom() does not return a constant value, we have to override this method as well
+		return bottom;
+	}
+
+	@Override
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public boolean lessOrEqualAux(
+			LazyProduct other)
+			throws SemanticException {
+		for (int i = 0; i < components.length; i++)
+			if (!((Lattice) components[i]).lessOrEqual(other.components[i]))
+				return false;
+		return true;
+	}
+
+	@Override
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public LazyProduct lubAux(
+			LazyProduct other)
+			throws SemanticException {
+		return combine(other, (left, right) -> (ValueDomain<?>) ((Lattice) left).lub(right));
+	}
+
+	@Override
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public LazyProduct glbAux(
+			LazyProduct other)
+			throws SemanticException {
+		return combine(other, (left, right) -> (ValueDomain<?>) ((Lattice) left).glb(right));
+	}
+
+	@Override
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public LazyProduct wideningAux(
+			LazyProduct other)
+			throws SemanticException {
+		return combine(other, (left, right) -> (ValueDomain<?>) ((Lattice) left).widening(right));
+	}
+
+	@Override
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public LazyProduct narrowingAux(
+			LazyProduct other)
+			throws SemanticException {
+		return combine(other, (left, right) -> (ValueDomain<?>) ((Lattice) left).narrowing(right));
+	}
+
+	@Override
+	public LazyProduct assign(
+			Identifier id,
+			ValueExpression expression,
+			ProgramPoint pp,
+			SemanticOracle oracle)
+			throws SemanticException {
+		// assignments always bind id, so no component can be skipped
+		return transform(null, component -> component.assign(id, expression, pp, oracle));
+	}
+
+	@Override
+	public LazyProduct smallStepSemantics(
+			ValueExpression expression,
+			ProgramPoint pp,
+			SemanticOracle oracle)
+			throws SemanticException {
+		return transform(null, component -> component.smallStepSemantics(expression, pp, oracle));
+	}
+
+	@Override
+	public LazyProduct assume(
+			ValueExpression expression,
+			ProgramPoint src,
+			ProgramPoint dest,
+			SemanticOracle oracle)
+			throws SemanticException {
+		return transform(null, component -> component.assume(expression, src, dest, oracle));
+	}
+
+	@Override
+	public Satisfiability satisfies(
+			ValueExpression expression,
+			ProgramPoint pp,
+			SemanticOracle oracle)
+			throws SemanticException {
+		if (bottom)
+			return Satisfiability.BOTTOM;
+
+		for (ValueDomain<?> component : components) {
+			Satisfiability sat = component.satisfies(expression, pp, oracle);
+			if (sat != Satisfiability.UNKNOWN)
+				// the first component that can decide the query answers for the whole product
+				return sat;
+		}
+
+		return Satisfiability.UNKNOWN;
+	}
+
+	@Override
+	public boolean knowsIdentifier(
+			Identifier id) {
+		return Arrays.stream(components).anyMatch(component -> component.knowsIdentifier(id));
+	}
+
+	@Override
+	public LazyProduct forgetIdentifier(
+			Identifier id)
+			throws SemanticException {
+		return transform(Set.of(id), component -> component.forgetIdentifier(id));
+	}
+
+	@Override
+	public LazyProduct forgetIdentifiersIf(
+			Predicate<Identifier> test)
+			throws SemanticException {
+		return transform(null, component -> component.forgetIdentifiersIf(test));
+	}
+
+	@Override
+	public LazyProduct pushScope(
+			ScopeToken token)
+			throws SemanticException {
+		return transform(null, component -> component.pushScope(token));
+	}
+
+	@Override
+	public LazyProduct popScope(
+			ScopeToken token)
+			throws SemanticException {
+		return transform(null, component -> component.popScope(token));
+	}
+
+	@Override
+	public StructuredRepresentation representation() {
+		if (isTop())
+			return Lattice.topRepresentation();
+		if (isBottom())
+			return Lattice.bottomRepresentation();
+		Map<StructuredRepresentation, StructuredRepresentation> mapping = new LinkedHashMap<>();
+		for (int i = 0; i < components.length; i++)
+			mapping.put(new StringRepresentation(i + ": " + components[i].getClass().getSimpleName()),
+					components[i].representation());
+		return new MapRepresentation(mapping);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(components);
+	}
+
+	@Override
+	public boolean equals(
+			Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		LazyProduct other = (LazyProduct) obj;
+		return Arrays.equals(components, other.components);
+	}
+
+	@Override
+	public String toString() {
+		return representation().toString();
+	}
+
+	private LazyProduct transform(
+			Set<Identifier> involved,
+			Transformer transformer)
+			throws SemanticException {
+		if (bottom)
+			return this;
+
+		ValueDomain<?>[] result = components.clone();
+		boolean changed = false;
+		for (int i = 0; i < components.length; i++) {
+			ValueDomain<?> component = components[i];
+			if (involved != null && !involved.isEmpty() && involved.stream().noneMatch(component::knowsIdentifier))
+				// only used to forget identifiers, which cannot change a component that does not know them
+				continue;
+
+			result[i] = transformer.apply(component);
+			if (result[i].isBottom())
+				// no need to evaluate the remaining components
+				return bottom();
+			changed |= result[i] != component;
+		}
+
+		return changed ? new LazyProduct(result) : this;
+	}
+
+	private LazyProduct combine(
+			LazyProduct other,
+			Combiner combiner)
+			throws SemanticException {
+		ValueDomain<?>[] result = new ValueDomain<?>[components.length];
+		for (int i = 0; i < components.length; i++)
+			result[i] = combiner.apply(components[i], other.components[i]);
+		return new LazyProduct(result);
+	}
+
+	@FunctionalInterface
+	private interface Transformer {
+		ValueDomain<?> apply(
+				ValueDomain<?> component)
+				throws SemanticException;
+	}
+
+	@FunctionalInterface
+	private interface Combiner {
+		ValueDomain<?> apply(
+				ValueDomain<?> left,
+				ValueDomain<?> right)
+				throws SemanticException;
+	}
+}
@@ -0,0 +1,79 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.conf.LiSAConfiguration;
+import it.unive.lisa.imp.expressions.IMPArrayAccess;
+import it.unive.lisa.program.cfg.statement.Expression;
+import it.unive.lisa.program.cfg.statement.NaryExpression;
+import it.unive.lisa.program.cfg.statement.Statement;
+import it.unive.lisa.program.cfg.statement.call.Call;
+
+import java.util.function.Predicate;
+
+/**
+ * Memory-lean analysis results. In the optimized mode of LiSA, the fixpoint keeps the post-states of widening points
+ * (the loop heads) and of the statements selected as hotspots only: any other state is rebuilt, when a check or a dump
+ * first asks for it, by unwinding the CFG from the stored states. Since the checks of this package only query a few
+ * expressions, keeping those as hotspots lets them run without ever unwinding, and the states of all the other
+ * statements are dropped as soon as their fixpoint ends.<br>
+ * <br>
+ * Use it on a configuration that is otherwise ready, e.g.
+ * {@code LeanResults.configure(Preset.TAINT.configuration(workdir))}. Graph dumps need all the states, so they should
+ * be disabled (or restricted with {@link LazyHtmlDump}) for the savings to hold.
+ */
+public final class LeanResults {
+
+	/**
+	 * The actual parameters of calls, whose states are queried by {@link TaintCheck}.
+	 */
+	public static final Predicate<Statement> CALL_PARAMETERS = st -> st instanceof Expression
+			&& ((Expression) st).getParentStatement() instanceof Call;
+
+	/**
+	 * The indexes of array accesses and the {@code arraylen} expressions, whose states are queried by
+	 * {@link ArrayBoundsCheck}.
+	 */
+	public static final Predicate<Statement> ARRAY_ACCESSES = st -> st instanceof Expression
+			&& (((Expression) st).getParentStatement() instanceof IMPArrayAccess
+					|| st instanceof NaryExpression && "arraylen".equals(((NaryExpression) st).getConstructName()));
+
+	/**
+	 * The statements whose states are queried by the checks of this package.
+	 */
+	public static final Predicate<Statement> CHECKED = CALL_PARAMETERS.or(ARRAY_ACCESSES);
+
+	private LeanResults() {
+		// utility class
+	}
+
+	/**
+	 * Switches the given configuration to lean results, keeping the states queried by the checks of this package.
+	 *
+	 * @param conf the configuration
+	 *
+	 * @return the same configuration
+	 */
+	public static LiSAConfiguration configure(
+			LiSAConfiguration conf) {
+		return configure(conf, CHECKED);
+	}
+
+	/**
+	 * Switches the given configuration to lean results.
+	 *
+	 * @param conf     the configuration
+	 * @param hotspots the statements whose states are queried without unwinding, besides the widening points
+	 *
+	 * @return the same configuration
+	 */
+	public static LiSAConfiguration configure(
+			LiSAConfiguration conf,
+			Predicate<Statement> hotspots) {
+		// the stored states are those of the widening points, so they must be in use
+		conf.useWideningPoints = true;
+		conf.optimize = true;
+		conf.hotspots = hotspots;
+		// dumps are written from the stored states, without unwinding the rest
+		conf.dumpForcesUnwinding = false;
+		return conf;
+	}
+}
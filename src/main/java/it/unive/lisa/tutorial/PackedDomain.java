@@ -0,0 +1,358 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.analysis.BaseLattice;
+import it.unive.lisa.analysis.Lattice;
+import it.unive.lisa.analysis.ScopeToken;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.SemanticOracle;
+import it.unive.lisa.analysis.lattices.Satisfiability;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
+import it.unive.lisa.analysis.value.ValueDomain;
+import it.unive.lisa.program.cfg.ProgramPoint;
+import it.unive.lisa.symbolic.value.Identifier;
+import it.unive.lisa.symbolic.value.ValueExpression;
+import it.unive.lisa.util.representation.MapRepresentation;
+import it.unive.lisa.util.representation.StringRepresentation;
+import it.unive.lisa.util.representation.StructuredRepresentation;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * A value domain that runs a relational domain, such as {@link Pentagons} or {@link StrictUpperBounds}, once for each
+ * pack of variables computed by {@link VariablePacks}, and tracks all the variables with {@link Interval}s. An
+ * assignment or a guard is passed to the relational domain of a pack only if all its variables are in that pack,
+ * otherwise the pack forgets the assigned variable and only the intervals are updated. The cost of the relational
+ * domains is then bounded by the size of the packs, at the price of the relations between variables that never appear
+ * together in the code.<br>
+ * <br>
+ * Packs are computed on the program before the analysis, e.g.
+ * {@code new PackedDomain<>(VariablePacks.of(program), new Pentagons())}.
+ *
+ * @param <D> the type of the relational domain
+ */
+public class PackedDomain<D extends ValueDomain<D>>
+		implements
+		ValueDomain<PackedDomain<D>>,
+		BaseLattice<PackedDomain<D>> {
+
+	private final VariablePacks packs;
+
+	// the top element of the relational domain
+	private final D relationalTop;
+
+	private final ValueEnvironment<Interval> intervals;
+
+	// the state of each pack: packs that are not in the map are top
+	private final Map<Integer, D> relational;
+
+	/**
+	 * Builds the top element of the domain.
+	 *
+	 * @param packs  the packs of the variables of the analyzed program
+	 * @param domain an instance of the relational domain
+	 */
+	public PackedDomain(
+			VariablePacks packs,
+			D domain) {
+		this(packs, domain.top(), new ValueEnvironment<>(new Interval()).top(), Map.of());
+	}
+
+	private PackedDomain(
+			VariablePacks packs,
+			D relationalTop,
+			ValueEnvironment<Interval> intervals,
+			Map<Integer, D> relational) {
+		this.packs = packs;
+		this.relationalTop = relationalTop;
+		this.intervals = intervals;
+		this.relational = relational;
+	}
+
+	// yields a state with the given components, where a pack whose state is bottom makes the whole state bottom
+	private PackedDomain<D> mk(
+			ValueEnvironment<Interval> intervals,
+			Map<Integer, D> relational) {
+		if (intervals.isBottom())
+			return bottom();
+		for (D state : relational.values())
+			if (state.isBottom())
+				return bottom();
+		return new PackedDomain<>(packs, relationalTop, intervals, relational);
+	}
+
+	private D packState(
+			int pack) {
+		D state = relational.get(pack);
+		return state == null ? relationalTop : state;
+	}
+
+	// sets the state of a pack, removing it if top
+	private static <D extends ValueDomain<D>> void put(
+			Map<Integer, D> relational,
+			int pack,
+			D state) {
+		if (state.isTop())
+			relational.remove(pack);
+		else
+			relational.put(pack, state);
+	}
+
+	/**
+	 * Yields the intervals of all the variables.
+	 *
+	 * @return the intervals
+	 */
+	ValueEnvironment<Interval> intervals() {
+		return intervals;
+	}
+
+	/**
+	 * Yields the states of the packs that are not top.
+	 *
+	 * @return the states, by index of the pack
+	 */
+	Map<Integer, D> relational() {
+		return relational;
+	}
+
+	@Override
+	public PackedDomain<D> top() {
+		return new PackedDomain<>(packs, relationalTop, intervals.top(), Map.of());
+	}
+
+	@Override
+	public boolean isTop() {
+		return intervals.isTop() && relational.isEmpty();
+	}
+
+	@Override
+	public PackedDomain<D> bottom() {
+		return new PackedDomain<>(packs, relationalTop, intervals.bottom(), Map.of());
+	}
+
+	@Override
+	public boolean isBottom() {
+		return intervals.isBottom();
+	}
+
+	@Override
+	public boolean lessOrEqualAux(
+			PackedDomain<D> other)
+			throws SemanticException {
+		if (!intervals.lessOrEqual(other.intervals))
+			return false;
+		// the packs missing from this state are top
+		for (Map.Entry<Integer, D> entry : other.relational.entrySet())
+			if (!packState(entry.getKey()).lessOrEqual(entry.getValue()))
+				return false;
+		return true;
+	}
+
+	@Override
+	public PackedDomain<D> lubAux(
+			PackedDomain<D> other)
+			throws SemanticException {
+		// packs that are top in either state are top in the result
+		Map<Integer, D> result = new HashMap<>();
+		for (Map.Entry<Integer, D> entry : relational.entrySet()) {
+			D theirs = other.relational.get(entry.getKey());
+			if (theirs != null)
+				put(result, entry.getKey(), entry.getValue().lub(theirs));
+		}
+		return mk(intervals.lub(other.intervals), result);
+	}
+
+	@Override
+	public PackedDomain<D> wideningAux(
+			PackedDomain<D> other)
+			throws SemanticException {
+		Map<Integer, D> result = new HashMap<>();
+		for (Map.Entry<Integer, D> entry : relational.entrySet()) {
+			D theirs = other.relational.get(entry.getKey());
+			if (theirs != null)
+				put(result, entry.getKey(), entry.getValue().widening(theirs));
+		}
+		return mk(intervals.widening(other.intervals), result);
+	}
+
+	@Override
+	public PackedDomain<D> glbAux(
+			PackedDomain<D> other)
+			throws SemanticException {
+		Map<Integer, D> result = new HashMap<>(relational);
+		for (Map.Entry<Integer, D> entry : other.relational.entrySet())
+			put(result, entry.getKey(), packState(entry.getKey()).glb(entry.getValue()));
+		return mk(intervals.glb(other.intervals), result);
+	}
+
+	@Override
+	public PackedDomain<D> assign(
+			Identifier id,
+			ValueExpression expression,
+			ProgramPoint pp,
+			SemanticOracle oracle)
+			throws SemanticException {
+		if (isBottom())
+			return this;
+		ValueEnvironment<Interval> newIntervals = intervals.assign(id, expression, pp, oracle);
+
+		int pack = packs.packOf(pp.getCFG(), id);
+		if (pack < 0)
+			return mk(newIntervals, relational);
+
+		Set<Identifier> ids = Identifiers.of(expression);
+		ids.add(id);
+		D state = packState(pack);
+		Map<Integer, D> result = new HashMap<>(relational);
+		if (packs.packOf(pp.getCFG(), ids) == pack)
+			put(result, pack, state.assign(id, expression, pp, oracle));
+		else
+			// the new value depends on variables outside of the pack
+			put(result, pack, state.forgetIdentifier(id));
+		return mk(newIntervals, result);
+	}
+
+	@Override
+	public PackedDomain<D> smallStepSemantics(
+			ValueExpression expression,
+			ProgramPoint pp,
+			SemanticOracle oracle)
+			throws SemanticException {
+		if (isBottom())
+			return this;
+		ValueEnvironment<Interval> newIntervals = intervals.smallStepSemantics(expression, pp, oracle);
+		int pack = packs.packOf(pp.getCFG(), Identifiers.of(expression));
+		if (pack < 0)
+			return mk(newIntervals, relational);
+		Map<Integer, D> result = new HashMap<>(relational);
+		put(result, pack, packState(pack).smallStepSemantics(expression, pp, oracle));
+		return mk(newIntervals, result);
+	}
+
+	@Override
+	public PackedDomain<D> assume(
+			ValueExpression expression,
+			ProgramPoint src,
+			ProgramPoint dest,
+			SemanticOracle oracle)
+			throws SemanticException {
+		if (isBottom())
+			return this;
+		ValueEnvironment<Interval> newIntervals = intervals.assume(expression, src, dest, oracle);
+		int pack = packs.packOf(src.getCFG(), Identifiers.of(expression));
+		if (pack < 0)
+			return mk(newIntervals, relational);
+		Map<Integer, D> result = new HashMap<>(relational);
+		put(result, pack, packState(pack).assume(expression, src, dest, oracle));
+		return mk(newIntervals, result);
+	}
+
+	@Override
+	public Satisfiability satisfies(
+			ValueExpression expression,
+			ProgramPoint pp,
+			SemanticOracle oracle)
+			throws SemanticException {
+		if (isBottom())
+			return Satisfiability.BOTTOM;
+		Satisfiability result = intervals.satisfies(expression, pp, oracle);
+		if (result == Satisfiability.SATISFIED || result == Satisfiability.NOT_SATISFIED)
+			return result;
+		// the pack can decide relations that the intervals cannot
+		int pack = packs.packOf(pp.getCFG(), Identifiers.of(expression));
+		return pack < 0 ? result : packState(pack).satisfies(expression, pp, oracle).glb(result);
+	}
+
+	@Override
+	public boolean knowsIdentifier(
+			Identifier id) {
+		if (intervals.knowsIdentifier(id))
+			return true;
+		for (D state : relational.values())
+			if (state.knowsIdentifier(id))
+				return true;
+		return false;
+	}
+
+	@Override
+	public PackedDomain<D> forgetIdentifier(
+			Identifier id)
+			throws SemanticException {
+		Map<Integer, D> result = new HashMap<>();
+		for (Map.Entry<Integer, D> entry : relational.entrySet())
+			put(result, entry.getKey(), entry.getValue().forgetIdentifier(id));
+		return mk(intervals.forgetIdentifier(id), result);
+	}
+
+	@Override
+	public PackedDomain<D> forgetIdentifiersIf(
+			Predicate<Identifier> test)
+			throws SemanticException {
+		Map<Integer, D> result = new HashMap<>();
+		for (Map.Entry<Integer, D> entry : relational.entrySet())
+			put(result, entry.getKey(), entry.getValue().forgetIdentifiersIf(test));
+		return mk(intervals.forgetIdentifiersIf(test), result);
+	}
+
+	@Override
+	public PackedDomain<D> pushScope(
+			ScopeToken token)
+			throws SemanticException {
+		Map<Integer, D> result = new HashMap<>();
+		for (Map.Entry<Integer, D> entry : relational.entrySet())
+			put(result, entry.getKey(), entry.getValue().pushScope(token));
+		return mk(intervals.pushScope(token), result);
+	}
+
+	@Override
+	public PackedDomain<D> popScope(
+			ScopeToken token)
+			throws SemanticException {
+		Map<Integer, D> result = new HashMap<>();
+		for (Map.Entry<Integer, D> entry : relational.entrySet())
+			put(result, entry.getKey(), entry.getValue().popScope(token));
+		return mk(intervals.popScope(token), result);
+	}
+
+	@Override
+	public StructuredRepresentation representation() {
+		if (isTop())
+			return Lattice.topRepresentation();
+		if (isBottom())
+			return Lattice.bottomRepresentation();
+		Map<StructuredRepresentation, StructuredRepresentation> mapping = new HashMap<>();
+		mapping.put(new StringRepresentation("intervals"), intervals.representation());
+		for (Map.Entry<Integer, D> entry : new TreeMap<>(relational).entrySet())
+			mapping.put(new StringRepresentation("pack " + entry.getKey() + " " + packs.getMembers(entry.getKey())),
+					entry.getValue().representation());
+		return new MapRepresentation(mapping);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(intervals, relational);
+	}
+
+	@Override
+	public boolean equals(
+			Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		PackedDomain<?> other = (PackedDomain<?>) obj;
+		return Objects.equals(intervals, other.intervals) && Objects.equals(relational, other.relational);
+	}
+
+	@Override
+	public String toString() {
+		return representation().toString();
+	}
+}
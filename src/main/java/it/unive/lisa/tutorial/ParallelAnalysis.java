@@ -0,0 +1,183 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.AnalysisException;
+import it.unive.lisa.LiSA;
+import it.unive.lisa.LiSAReport;
+import it.unive.lisa.checks.warnings.Warning;
+import it.unive.lisa.conf.LiSAConfiguration;
+import it.unive.lisa.program.Program;
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.type.Type;
+import it.unive.lisa.type.TypeSystem;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Runs an intraprocedural analysis on each CFG of a program independently, analyzing them concurrently on a
+ * work-stealing pool. Each CFG is analyzed by its own {@link LiSA} instance, with a fresh configuration obtained from
+ * the given supplier, and its outputs are generated in a sub-directory of the configured working directory named
+ * after the CFG. The reports are then merged in the order of the CFGs' signatures, so that the result does not depend
+ * on the degree of parallelism.<br>
+ * <br>
+ * Each CFG is analyzed in a program of its own, where calls to the other CFGs cannot be resolved: they are open calls,
+ * whose results are given by the open call policy of the configuration (by default, the worst case). The results of
+ * each CFG are then an approximation of the ones of a whole-program analysis, that might be less precise wherever
+ * calls are involved: this driver must not be used for interprocedural analyses. The programs of the CFGs are built
+ * before the analyses start, each with its own copy of the type system, since LiSA can register types while analyzing.
+ */
+public class ParallelAnalysis {
+
+	// each task needs its own configuration, as configurations hold mutable objects such as the semantic checks
+	private final Supplier<LiSAConfiguration> configurations;
+
+	private final int parallelism;
+
+	/**
+	 * Builds the driver.
+	 *
+	 * @param configurations a supplier of fresh configurations, invoked once for each CFG
+	 * @param parallelism    the maximum number of CFGs analyzed at the same time
+	 */
+	public ParallelAnalysis(
+			Supplier<LiSAConfiguration> configurations,
+			int parallelism) {
+		this.configurations = configurations;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Analyzes all the CFGs of the given program.
+	 *
+	 * @param program the program
+	 *
+	 * @return the merged results
+	 *
+	 * @throws AnalysisException if the analysis of one of the CFGs fails
+	 */
+	public Result run(
+			Program program)
+			throws AnalysisException {
+		List<CFG> cfgs = new ArrayList<>(program.getAllCFGs());
+		cfgs.sort(Comparator.comparing(ParallelAnalysis::signature));
+
+		ExecutorService pool = Executors.newWorkStealingPool(parallelism);
+		try {
+			List<Future<LiSAReport>> tasks = new ArrayList<>(cfgs.size());
+			for (CFG cfg : cfgs) {
+				// the programs are built here, so that the original one is only read by this thread
+				Program single = isolate(program, cfg);
+				tasks.add(pool.submit(() -> analyze(single, cfg)));
+			}
+
+			// results are collected in the order of the cfgs, not in the one of completion
+			Map<String, LiSAReport> reports = new LinkedHashMap<>();
+			for (int i = 0; i < cfgs.size(); i++)
+				reports.put(signature(cfgs.get(i)), join(tasks.get(i)));
+			return new Result(reports);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private LiSAReport analyze(
+			Program single,
+			CFG cfg)
+			throws AnalysisException {
+		LiSAConfiguration conf = configurations.get();
+		conf.workdir = Paths.get(conf.workdir, directory(cfg)).toString();
+		return new LiSA(conf).run(single);
+	}
+
+	// yields a program containing only the given cfg, with a copy of the type system of the original one
+	// (language features are stateless, so they are shared)
+	private static Program isolate(
+			Program program,
+			CFG cfg)
+			throws AnalysisException {
+		TypeSystem types;
+		try {
+			types = program.getTypes().getClass().getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new AnalysisException("Cannot copy the type system of the program", e);
+		}
+		for (Type type : program.getTypes().getTypes())
+			types.registerType(type);
+
+		Program single = new Program(program.getFeatures(), types);
+		single.addCodeMember(cfg);
+		return single;
+	}
+
+	private static LiSAReport join(
+			Future<LiSAReport> task)
+			throws AnalysisException {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AnalysisException("Interrupted while waiting for the analysis", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof AnalysisException)
+				throw (AnalysisException) e.getCause();
+			throw new AnalysisException("The analysis of a cfg failed", e.getCause());
+		}
+	}
+
+	private static String signature(
+			CFG cfg) {
+		return cfg.getDescriptor().getFullSignature();
+	}
+
+	private static String directory(
+			CFG cfg) {
+		return signature(cfg).replaceAll("[^A-Za-z0-9_.-]", "_");
+	}
+
+	/**
+	 * The merged results of a {@link ParallelAnalysis}.
+	 */
+	public static final class Result {
+
+		private final Map<String, LiSAReport> reports;
+
+		private final SortedSet<Warning> warnings = new TreeSet<>();
+
+		private Result(
+				Map<String, LiSAReport> reports) {
+			this.reports = Collections.unmodifiableMap(reports);
+			for (LiSAReport report : reports.values())
+				warnings.addAll(report.getWarnings());
+		}
+
+		/**
+		 * Yields the report of each CFG, indexed and ordered by the signature of the CFG.
+		 *
+		 * @return the reports
+		 */
+		public Map<String, LiSAReport> getReports() {
+			return reports;
+		}
+
+		/**
+		 * Yields the warnings generated for all the CFGs, in their natural order.
+		 *
+		 * @return the warnings
+		 */
+		public SortedSet<Warning> getWarnings() {
+			return Collections.unmodifiableSortedSet(warnings);
+		}
+	}
+}
@@ -10,6 +10,7 @@ import it.unive.lisa.symbolic.value.Identifier;
 import it.unive.lisa.symbolic.value.ValueExpression;
 import it.unive.lisa.symbolic.value.operator.SubtractionOperator;
 import it.unive.lisa.symbolic.value.operator.binary.BinaryOperator;
+import it.unive.lisa.util.numeric.IntInterval;
 import it.unive.lisa.util.numeric.MathNumber;
 import it.unive.lisa.util.representation.MapRepresentation;
 import it.unive.lisa.util.representation.StringRepresentation;
@@ -17,7 +18,7 @@ import it.unive.lisa.util.representation.StructuredRepresentation;
 import org.apache.commons.collections4.CollectionUtils;
 
 import java.util.*;
-import java.util.Map.Entry;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 /**
@@ -32,9 +33,13 @@ public class Pentagons
 		BaseLattice<Pentagons> {
 
 	// client domains are just fields of this one
-	private final StrictUpperBounds upperbounds;
+	// the upper bounds of a state produced by a join are null until they are first needed (see bounds())
+	private StrictUpperBounds upperbounds;
 	private final ValueEnvironment<Interval> intervals;
 
+	// the operands of the join that produced this state, kept until its upper bounds are computed
+	private Pentagons[] pending;
+
 	public Pentagons() {
 		this(new StrictUpperBounds().top(), new ValueEnvironment<>(new Interval()).top());
 	}
@@ -46,26 +51,34 @@ public class Pentagons
 		this.intervals = intervals;
 	}
 
+	private Pentagons(
+			Pentagons left,
+			Pentagons right,
+			ValueEnvironment<Interval> intervals) {
+		this.intervals = intervals;
+		this.pending = new Pentagons[] { left, right };
+	}
+
 	@Override
 	public Pentagons top() {
-		return new Pentagons(upperbounds.top(), intervals.top());
+		return new Pentagons(new StrictUpperBounds().top(), intervals.top());
 	}
 
 	@Override
 	public boolean isTop() {
 		// since top() does not return a constant value, we have to override this method as well
 		// providing the logic for identifying the top element
-		return upperbounds.isTop() && intervals.isTop();
+		return intervals.isTop() && bounds().isTop();
 	}
 
 	@Override
-	public Pentagons bottom() {	return new Pentagons(upperbounds.bottom(), intervals.bottom());	}
+	public Pentagons bottom() {	return new Pentagons(new StrictUpperBounds().bottom(), intervals.bottom());	}
 
 	@Override
 	public boolean isBottom() {
 		// since bottom() does not return a constant value, we have to override this method as well
 		// providing the logic for identifying the bottom element
-		return upperbounds.isBottom() && intervals.isBottom();
+		return intervals.isBottom() && bounds().isBottom();
 	}
 
 	@Override
@@ -73,20 +86,21 @@ public class Pentagons
 		if (!this.intervals.lessOrEqual(other.intervals))
 			return false;
 
-		for (Entry<Identifier, StrictUpperBounds.IdSet> entry : other.upperbounds)
-			for (Identifier bound : entry.getValue()) {
-				if (this.upperbounds.getState(entry.getKey()).contains(bound))
-					continue;
-
-				Interval state = this.intervals.getState(entry.getKey());
-				Interval boundState = this.intervals.getState(bound);
-				if (state.isBottom()
-						|| boundState.isTop()
-						|| state.interval.getHigh().compareTo(boundState.interval.getLow()) < 0)
-					continue;
-
+		// each bound of other must either be a bound here too, or be proven by our intervals
+		StrictUpperBounds bounds = bounds();
+		StrictUpperBounds otherBounds = other.bounds();
+		Map<Identifier, StrictUpperBounds.IdSet> proven = above(
+				otherBounds.getKeys(),
+				otherBounds.getBoundKeys(),
+				intervals);
+		for (Identifier x : otherBounds.getKeys()) {
+			if (this.intervals.getState(x).isBottom())
+				continue;
+
+			StrictUpperBounds.IdSet known = bounds.getState(x).or(proven.getOrDefault(x, StrictUpperBounds.IdSet.TOP));
+			if (!known.containsAll(otherBounds.getState(x)))
 				return false;
-			}
+		}
 
 		return true;
 	}
@@ -97,43 +111,119 @@ public class Pentagons
 			throws SemanticException {
 		ValueEnvironment<Interval> newIntervals = this.intervals.lub(other.intervals);
 
+		// the upper bounds of the result are only computed when they are first needed:
+		// joins whose result is never inspected do not pay for the reduction
+		return new Pentagons(this, other, newIntervals);
+	}
+
+	// the number of intervals and bounds in this state. The bounds of a lazy join that have not been computed yet are
+	// estimated from its operands instead, so that measuring a state does not change the cost of the analysis: for
+	// such states the result is an estimate, not a bound on the actual size
+	synchronized int size() {
+		return intervals.getKeys().size() + estimatedBounds();
+	}
+
+	// the estimate of a pending join is its larger operand: the join keeps the bounds its operands agree on, which are
+	// no more than the ones of either operand, but the bounds recovered from the intervals can add more
+	private synchronized int estimatedBounds() {
+		if (upperbounds != null)
+			return upperbounds.size();
+		return Math.max(pending[0].estimatedBounds(), pending[1].estimatedBounds());
+	}
+
+	// the intervals of this state
+	ValueEnvironment<Interval> intervals() {
+		return intervals;
+	}
+
+	// yields the upper bounds of this state, computing them if this state comes from a join
+	// the method is synchronized since the same state might be inspected by more than one thread
+	synchronized StrictUpperBounds bounds() {
+		if (upperbounds == null) {
+			upperbounds = join(pending[0], pending[1]);
+			// the operands are no longer needed
+			pending = null;
+		}
+		return upperbounds;
+	}
+
+	private static StrictUpperBounds join(
+			Pentagons left,
+			Pentagons right) {
+		StrictUpperBounds leftBounds = left.bounds();
+		StrictUpperBounds rightBounds = right.bounds();
+		if (leftBounds.isBottom())
+			return rightBounds;
+		if (rightBounds.isBottom())
+			return leftBounds;
+
 		// lub performs the intersection between the two
 		// this effectively builds s'
-		StrictUpperBounds newBounds = upperbounds.lub(other.upperbounds);
-
-		// the following builds s''
-		for (Identifier x : upperbounds.getKeys()) {
-			StrictUpperBounds.IdSet closure = newBounds.getState(x);
-
-			Interval b2_x = other.intervals.getState(x);
-			if (!b2_x.isBottom()) {
-				for (Identifier y : upperbounds.getState(x)) {
-					Interval b2_y = other.intervals.getState(y);
-					if (!b2_y.isBottom() && b2_x.interval.getHigh().compareTo(b2_y.interval.getLow()) < 0) {
-						closure = closure.add(y);
-					}
-				}
-			}
+		// the bounds added by the following passes are accumulated in a builder,
+		// that is frozen only once at the end
+		StrictUpperBounds.Builder newBounds = leftBounds.lubAux(rightBounds).builder();
 
-			newBounds = newBounds.putState(x, closure);
-		}
+		// the following builds s'': bounds of the left state that are proven by the right intervals
+		recover(newBounds, leftBounds, right.intervals);
 
-		// the following builds s'''
-		for (Identifier x : other.upperbounds.getKeys()) {
-			StrictUpperBounds.IdSet closure = newBounds.getState(x);
+		// the following builds s''': bounds of the right state that are proven by the left intervals
+		recover(newBounds, rightBounds, left.intervals);
 
-			Interval b1_x = intervals.getState(x);
-			if (!b1_x.isBottom())
-				for (Identifier y : other.upperbounds.getState(x)) {
-					Interval b1_y = intervals.getState(y);
-					if (!b1_y.isBottom() && b1_x.interval.getHigh().compareTo(b1_y.interval.getLow()) < 0)
-						closure = closure.add(y);
-				}
+		return newBounds.build();
+	}
+
+	// adds to result the bounds x < y of the given state that are proven by the given intervals, closing them
+	// transitively: the lub of two closed states is closed, but a recovered bound can chain with its bounds
+	private static void recover(
+			StrictUpperBounds.Builder result,
+			StrictUpperBounds bounds,
+			ValueEnvironment<Interval> intervals) {
+		Map<Identifier, StrictUpperBounds.IdSet> proven = above(bounds.getKeys(), bounds.getBoundKeys(), intervals);
+		for (Map.Entry<Identifier, StrictUpperBounds.IdSet> entry : proven.entrySet())
+			for (Identifier y : bounds.getState(entry.getKey()).and(entry.getValue()))
+				result.addClosedBound(entry.getKey(), y);
+	}
 
-			newBounds = newBounds.putState(x, closure);
+	// yields, for each variable x in xs, the variables y in ys such that high(x) < low(y)
+	// according to the given intervals (variables with a bottom interval are skipped).
+	// Instead of comparing every pair, xs is sorted by decreasing high bound and ys by decreasing low bound:
+	// sweeping xs in this order, the ys above the current x only grow, and they are all found with a single scan
+	private static Map<Identifier, StrictUpperBounds.IdSet> above(
+			Collection<Identifier> xs,
+			Collection<Identifier> ys,
+			ValueEnvironment<Interval> intervals) {
+		List<Identifier> byHigh = sortedBy(xs, intervals, IntInterval::getHigh);
+		List<Identifier> byLow = sortedBy(ys, intervals, IntInterval::getLow);
+
+		Map<Identifier, StrictUpperBounds.IdSet> result = new HashMap<>();
+		StrictUpperBounds.IdSet.Builder found = StrictUpperBounds.IdSet.TOP.builder();
+		StrictUpperBounds.IdSet current = StrictUpperBounds.IdSet.TOP;
+		int next = 0;
+		for (Identifier x : byHigh) {
+			MathNumber high = intervals.getState(x).interval.getHigh();
+			boolean changed = false;
+			while (next < byLow.size()
+					&& intervals.getState(byLow.get(next)).interval.getLow().compareTo(high) > 0)
+				changed |= found.add(byLow.get(next++));
+			if (changed)
+				current = found.build();
+			result.put(x, current);
 		}
+		return result;
+	}
 
-		return new Pentagons(newBounds, newIntervals);
+	// yields the variables with a non-bottom interval, sorted by decreasing value of the given bound
+	private static List<Identifier> sortedBy(
+			Collection<Identifier> ids,
+			ValueEnvironment<Interval> intervals,
+			Function<IntInterval, MathNumber> bound) {
+		List<Identifier> result = new ArrayList<>(ids.size());
+		for (Identifier id : ids)
+			if (!intervals.getState(id).isBottom())
+				result.add(id);
+		result.sort(Comparator.comparing(
+				(Identifier id) -> bound.apply(intervals.getState(id).interval)).reversed());
+		return result;
 	}
 
 	@Override
@@ -141,7 +231,7 @@ public class Pentagons
 			Pentagons other)
 			throws SemanticException {
 		return new Pentagons(
-				upperbounds.wideningAux(other.upperbounds),
+				bounds().wideningAux(other.bounds()),
 				intervals.widening(other.intervals));
 	}
 
@@ -152,7 +242,7 @@ public class Pentagons
 			ProgramPoint pp,
 			SemanticOracle oracle)
 			throws SemanticException {
-		StrictUpperBounds newBounds = upperbounds.assign(id, expression, pp, oracle);
+		StrictUpperBounds newBounds = bounds().assign(id, expression, pp, oracle);
 		ValueEnvironment<Interval> newIntervals = intervals.assign(id, expression, pp, oracle);
 
 		if (expression instanceof BinaryExpression) {
@@ -170,11 +260,15 @@ public class Pentagons
 							newIntervals = newIntervals.putState(id, newIntervals.getState(id)
 									.glb(new Interval(MathNumber.ONE, MathNumber.PLUS_INFINITY)));
 						}
+						// the bounds of x are taken from the state where id has already been
+						// reassigned, so that stale facts about id are not kept around
 						Interval intv = intervals.getState(y);
-						if (!intv.isBottom() && intv.interval.getLow().compareTo(MathNumber.ZERO) > 0)
-							newBounds = upperbounds.putState(id, upperbounds.getState(x).add(x));
+						if (!intv.isBottom()
+								&& intv.interval.getLow().compareTo(MathNumber.ZERO) > 0
+								&& !x.equals(id))
+							newBounds = newBounds.putState(id, newBounds.getState(x).add(x));
 						else
-							newBounds = upperbounds.putState(id, upperbounds.lattice.top());
+							newBounds = newBounds.putState(id, StrictUpperBounds.IdSet.TOP);
 					}
 				}
 			}
@@ -190,7 +284,7 @@ public class Pentagons
 			ProgramPoint pp,
 			SemanticOracle oracle) throws SemanticException {
 		return new Pentagons(
-				upperbounds.smallStepSemantics(expression, pp, oracle),
+				bounds().smallStepSemantics(expression, pp, oracle),
 				intervals.smallStepSemantics(expression, pp, oracle));
 	}
 
@@ -202,7 +296,7 @@ public class Pentagons
 			SemanticOracle oracle)
 			throws SemanticException {
 		return new Pentagons(
-				upperbounds.assume(expression, src, dest, oracle),
+				bounds().assume(expression, src, dest, oracle),
 				intervals.assume(expression, src, dest, oracle));
 	}
 	
@@ -211,7 +305,7 @@ public class Pentagons
 			Identifier id)
 			throws SemanticException {
 		return new Pentagons(
-				upperbounds.forgetIdentifier(id),
+				bounds().forgetIdentifier(id),
 				intervals.forgetIdentifier(id));
 	}
 
@@ -220,7 +314,7 @@ public class Pentagons
 			Predicate<Identifier> test)
 			throws SemanticException {
 		return new Pentagons(
-				upperbounds.forgetIdentifiersIf(test),
+				bounds().forgetIdentifiersIf(test),
 				intervals.forgetIdentifiersIf(test));
 	}
 
@@ -230,21 +324,24 @@ public class Pentagons
 			ProgramPoint pp,
 			SemanticOracle oracle)
 			throws SemanticException {
-		return intervals.satisfies(expression, pp, oracle).glb(upperbounds.satisfies(expression, pp, oracle));
+		// the intervals are evaluated even when the bounds decide the query, since
+		// their glb detects contradictions (i.e., unreachable states) as bottom
+		Satisfiability bounds = bounds().satisfies(expression, pp, oracle);
+		return intervals.satisfies(expression, pp, oracle).glb(bounds);
 	}
 
 	@Override
 	public Pentagons pushScope(
 			ScopeToken token)
 			throws SemanticException {
-		return new Pentagons(upperbounds.pushScope(token), intervals.pushScope(token));
+		return new Pentagons(bounds().pushScope(token), intervals.pushScope(token));
 	}
 
 	@Override
 	public Pentagons popScope(
 			ScopeToken token)
 			throws SemanticException {
-		return new Pentagons(upperbounds.popScope(token), intervals.popScope(token));
+		return new Pentagons(bounds().popScope(token), intervals.popScope(token));
 	}
 
 	@Override
@@ -254,16 +351,16 @@ public class Pentagons
 		if (isBottom())
 			return Lattice.bottomRepresentation();
 		Map<StructuredRepresentation, StructuredRepresentation> mapping = new HashMap<>();
-		for (Identifier id : CollectionUtils.union(intervals.getKeys(), upperbounds.getKeys()))
+		for (Identifier id : CollectionUtils.union(intervals.getKeys(), bounds().getKeys()))
 			mapping.put(new StringRepresentation(id),
 					new StringRepresentation(intervals.getState(id).toString() + ", " +
-							upperbounds.getState(id).representation()));
+								bounds().getState(id).representation()));
 		return new MapRepresentation(mapping);
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(intervals, upperbounds);
+		return Objects.hash(intervals, bounds());
 	}
 
 	@Override
@@ -276,7 +373,7 @@ public class Pentagons
 		if (getClass() != obj.getClass())
 			return false;
 		Pentagons other = (Pentagons) obj;
-		return Objects.equals(intervals, other.intervals) && Objects.equals(upperbounds, other.upperbounds);
+		return Objects.equals(intervals, other.intervals) && Objects.equals(bounds(), other.bounds());
 	}
 
 	@Override
@@ -287,6 +384,6 @@ public class Pentagons
 	@Override
 	public boolean knowsIdentifier(
 			Identifier id) {
-		return intervals.knowsIdentifier(id) || upperbounds.knowsIdentifier(id);
+		return intervals.knowsIdentifier(id) || bounds().knowsIdentifier(id);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,190 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.DefaultConfiguration;
+import it.unive.lisa.analysis.heap.pointbased.FieldSensitivePointBasedHeap;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
+import it.unive.lisa.conf.LiSAConfiguration;
+import it.unive.lisa.conf.LiSAConfiguration.GraphType;
+import it.unive.lisa.interprocedural.context.ContextBasedAnalysis;
+import it.unive.lisa.interprocedural.context.FullStackToken;
+
+/**
+ * The analyses set up by the tests of this package, available as ready-made configurations for tools that run them
+ * outside of the tests. Each call to {@link #configuration(String)} yields a fresh configuration, with fresh domains
+ * and checks, that dumps no graphs: callers can change any of its fields before using it.
+ */
+public enum Preset {
+
+	/**
+	 * {@link Signs} in a non-relational environment.
+	 */
+	SIGNS {
+		@Override
+		protected void setup(
+				LiSAConfiguration conf) {
+			conf.abstractState = DefaultConfiguration.simpleState(
+					DefaultConfiguration.defaultHeapDomain(),
+					new ValueEnvironment<>(new Signs()),
+					DefaultConfiguration.defaultTypeDomain());
+		}
+	},
+
+	/**
+	 * {@link Interval} in a non-relational environment.
+	 */
+	INTERVAL {
+		@Override
+		protected void setup(
+				LiSAConfiguration conf) {
+			conf.abstractState = DefaultConfiguration.simpleState(
+					DefaultConfiguration.defaultHeapDomain(),
+					new ValueEnvironment<>(new Interval()),
+					DefaultConfiguration.defaultTypeDomain());
+		}
+	},
+
+	/**
+	 * {@link CongruenceDomain} in a non-relational environment.
+	 */
+	CONGRUENCE {
+		@Override
+		protected void setup(
+				LiSAConfiguration conf) {
+			conf.abstractState = DefaultConfiguration.simpleState(
+					DefaultConfiguration.defaultHeapDomain(),
+					new ValueEnvironment<>(CongruenceDomain.TOP),
+					DefaultConfiguration.defaultTypeDomain());
+		}
+	},
+
+	/**
+	 * The {@link EqualityDomain}.
+	 */
+	EQUALITY {
+		@Override
+		protected void setup(
+				LiSAConfiguration conf) {
+			conf.abstractState = DefaultConfiguration.simpleState(
+					DefaultConfiguration.defaultHeapDomain(),
+					EqualityDomain.TOP,
+					DefaultConfiguration.defaultTypeDomain());
+		}
+	},
+
+	/**
+	 * The {@link CongruenceEqualityCartesian} product, iterated following a weak topological ordering.
+	 */
+	CONGRUENCE_EQUALITY {
+		@Override
+		protected void setup(
+				LiSAConfiguration conf) {
+			conf.abstractState = DefaultConfiguration.simpleState(
+					DefaultConfiguration.defaultHeapDomain(),
+					new CongruenceEqualityCartesian(),
+					DefaultConfiguration.defaultTypeDomain());
+			conf.fixpointWorkingSet = new WtoWorkingSet();
+			conf.useWideningPoints = true;
+		}
+	},
+
+	/**
+	 * The {@link CongruenceEqualityReduced} product.
+	 */
+	CONGRUENCE_EQUALITY_REDUCED {
+		@Override
+		protected void setup(
+				LiSAConfiguration conf) {
+			conf.abstractState = DefaultConfiguration.simpleState(
+					DefaultConfiguration.defaultHeapDomain(),
+					new CongruenceEqualityReduced(),
+					DefaultConfiguration.defaultTypeDomain());
+		}
+	},
+
+	/**
+	 * The {@link LazyProduct} of {@link EqualityDomain} and {@link CongruenceDomain}.
+	 */
+	LAZY_PRODUCT {
+		@Override
+		protected void setup(
+				LiSAConfiguration conf) {
+			conf.abstractState = DefaultConfiguration.simpleState(
+					DefaultConfiguration.defaultHeapDomain(),
+					new LazyProduct(new EqualityDomain(), new ValueEnvironment<>(new CongruenceDomain())),
+					DefaultConfiguration.defaultTypeDomain());
+		}
+	},
+
+	/**
+	 * {@link StrictUpperBounds}.
+	 */
+	STRICT_UPPER_BOUNDS {
+		@Override
+		protected void setup(
+				LiSAConfiguration conf) {
+			conf.abstractState = DefaultConfiguration.simpleState(
+					new FieldSensitivePointBasedHeap(),
+					new StrictUpperBounds(),
+					DefaultConfiguration.defaultTypeDomain());
+		}
+	},
+
+	/**
+	 * {@link Pentagons}, iterated following a weak topological ordering, followed by the {@link ArrayBoundsCheck}.
+	 */
+	PENTAGONS {
+		@Override
+		protected void setup(
+				LiSAConfiguration conf) {
+			conf.abstractState = DefaultConfiguration.simpleState(
+					new FieldSensitivePointBasedHeap(),
+					new Pentagons(),
+					DefaultConfiguration.defaultTypeDomain());
+			conf.semanticChecks.add(new ArrayBoundsCheck());
+			conf.fixpointWorkingSet = new WtoWorkingSet();
+			conf.useWideningPoints = true;
+		}
+	},
+
+	/**
+	 * The {@link Taint} analysis, performed interprocedurally and followed by the {@link TaintCheck}.
+	 */
+	TAINT {
+		@Override
+		protected void setup(
+				LiSAConfiguration conf) {
+			conf.abstractState = DefaultConfiguration.simpleState(
+					DefaultConfiguration.defaultHeapDomain(),
+					new ValueEnvironment<>(new Taint()),
+					DefaultConfiguration.defaultTypeDomain());
+			conf.interproceduralAnalysis = new ContextBasedAnalysis<>(FullStackToken.getSingleton());
+			conf.semanticChecks.add(new TaintCheck());
+		}
+	};
+
+	/**
+	 * Builds a fresh configuration for this analysis.
+	 *
+	 * @param workdir the directory where files will be generated
+	 *
+	 * @return the configuration
+	 */
+	public LiSAConfiguration configuration(
+			String workdir) {
+		LiSAConfiguration conf = new DefaultConfiguration();
+		conf.workdir = workdir;
+		conf.analysisGraphs = GraphType.NONE;
+		// warnings are always dumped, so that each run leaves a trace of its outcome
+		conf.jsonOutput = true;
+		setup(conf);
+		return conf;
+	}
+
+	/**
+	 * Sets the domains and the checks of this analysis in the given configuration.
+	 *
+	 * @param conf the configuration
+	 */
+	protected abstract void setup(
+			LiSAConfiguration conf);
+}
@@ -0,0 +1,570 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.analysis.AbstractState;
+import it.unive.lisa.analysis.ScopeToken;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.SemanticOracle;
+import it.unive.lisa.analysis.combination.CartesianProduct;
+import it.unive.lisa.analysis.lattices.Satisfiability;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
+import it.unive.lisa.analysis.value.ValueDomain;
+import it.unive.lisa.checks.semantic.CheckToolWithAnalysisResults;
+import it.unive.lisa.checks.semantic.SemanticCheck;
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.ProgramPoint;
+import it.unive.lisa.symbolic.value.Identifier;
+import it.unive.lisa.symbolic.value.ValueExpression;
+import it.unive.lisa.util.representation.StructuredRepresentation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * A value domain that wraps another one, delegating every operation to it while recording, in a shared
+ * {@link Profile}, how many times each {@link Operation} is invoked, how long it takes and how big its result is,
+ * for each CFG. Lattice operations are attributed to the CFG of the state on their left, that is the one of the last
+ * transfer function that produced it.<br>
+ * <br>
+ * Use it by wrapping the value domain of the configuration and adding the reporter of its profile among the checks,
+ * so that the profile is printed at the end of the analysis:
+ *
+ * <pre>
+ * ProfilingValueDomain&lt;Pentagons&gt; domain = new ProfilingValueDomain&lt;&gt;(new Pentagons());
+ * conf.abstractState = DefaultConfiguration.simpleState(heap, domain, types);
+ * conf.semanticChecks.add(domain.getProfile().reporter());
+ * </pre>
+ *
+ * Counters are {@link LongAdder}s, so that threads analyzing different CFGs do not contend on them, and durations go
+ * to histograms with a bucket for each power of two of nanoseconds. The size of a state is the number of entries it
+ * holds (see {@link #size(ValueDomain)}).<br>
+ * <br>
+ * There is no separate entry for {@code eval}: it is not an operation of {@link ValueDomain}, and non-relational
+ * environments only evaluate expressions inside their own transfer functions and {@code satisfies}, so its cost is
+ * part of the operations that call it. Checks that evaluate expressions on the wrapped state (see
+ * {@link #getDomain()}) are not measured.
+ *
+ * @param <D> the type of the wrapped domain
+ */
+public class ProfilingValueDomain<D extends ValueDomain<D>>
+		implements
+		ValueDomain<ProfilingValueDomain<D>> {
+
+	/**
+	 * The operations whose cost is recorded.
+	 */
+	public enum Operation {
+		LESS_OR_EQUAL,
+		LUB,
+		GLB,
+		WIDENING,
+		NARROWING,
+		ASSIGN,
+		SMALL_STEP_SEMANTICS,
+		ASSUME,
+		SATISFIES,
+		FORGET,
+		SCOPE
+	}
+
+	private final D domain;
+
+	private final Profile profile;
+
+	private final ToIntFunction<? super D> size;
+
+	// the cfg of the last transfer function that produced this state, if any
+	private final CFG cfg;
+
+	/**
+	 * Builds the domain, measuring states with {@link #size(ValueDomain)}.
+	 *
+	 * @param domain the domain to profile
+	 */
+	public ProfilingValueDomain(
+			D domain) {
+		this(domain, ProfilingValueDomain::size);
+	}
+
+	/**
+	 * Builds the domain.
+	 *
+	 * @param domain the domain to profile
+	 * @param size   the function measuring the states of the domain, yielding a negative number when a state cannot
+	 *                   be measured
+	 */
+	public ProfilingValueDomain(
+			D domain,
+			ToIntFunction<? super D> size) {
+		this(domain, new Profile(), size, null);
+	}
+
+	private ProfilingValueDomain(
+			D domain,
+			Profile profile,
+			ToIntFunction<? super D> size,
+			CFG cfg) {
+		this.domain = domain;
+		this.profile = profile;
+		this.size = size;
+		this.cfg = cfg;
+	}
+
+	/**
+	 * Yields the wrapped state.
+	 *
+	 * @return the state
+	 */
+	public D getDomain() {
+		return domain;
+	}
+
+	/**
+	 * Yields the profile where the operations of this state, and of all the states produced from it, are recorded.
+	 *
+	 * @return the profile
+	 */
+	public Profile getProfile() {
+		return profile;
+	}
+
+	/**
+	 * Yields the size of the given state, if it is one of the domains of this package, a {@link ValueEnvironment} or a
+	 * {@link CartesianProduct} of those: the number of variables of environments, of bounds of
+	 * {@link StrictUpperBounds}, of identifiers in the classes of {@link EqualityDomain} and their sum for products
+	 * and {@link Pentagons}. The bounds of a {@link Pentagons} state produced by a join are only estimated, until
+	 * they are first needed by the analysis.
+	 *
+	 * @param state the state
+	 *
+	 * @return the size of the state, or {@code -1} if it cannot be measured
+	 */
+	public static int size(
+			ValueDomain<?> state) {
+		if (state instanceof ValueEnvironment)
+			return ((ValueEnvironment<?>) state).getKeys().size();
+		if (state instanceof StrictUpperBounds)
+			return ((StrictUpperBounds) state).size();
+		if (state instanceof EqualityDomain)
+			return ((EqualityDomain) state).size();
+		if (state instanceof Pentagons)
+			return ((Pentagons) state).size();
+		if (state instanceof ProfilingValueDomain)
+			return size(((ProfilingValueDomain<?>) state).domain);
+		if (state instanceof CartesianProduct) {
+			CartesianProduct<?, ?, ?, ?, ?> product = (CartesianProduct<?, ?, ?, ?, ?>) state;
+			if (product.left instanceof ValueDomain && product.right instanceof ValueDomain)
+				return sum(size((ValueDomain<?>) product.left), size((ValueDomain<?>) product.right));
+		}
+		if (state instanceof LazyProduct) {
+			LazyProduct product = (LazyProduct) state;
+			int total = 0;
+			for (int i = 0; i < product.getComponentCount(); i++)
+				total = sum(total, size(product.getComponent(i)));
+			return total;
+		}
+		return -1;
+	}
+
+	private static int sum(
+			int left,
+			int right) {
+		return left < 0 || right < 0 ? -1 : left + right;
+	}
+
+	// wraps a state produced by an operation of this one, recording the operation
+	private ProfilingValueDomain<D> record(
+			Operation operation,
+			CFG cfg,
+			long start,
+			D result) {
+		long nanos = System.nanoTime() - start;
+		profile.record(operation, cfg, nanos, size.applyAsInt(result));
+		return result == domain && cfg == this.cfg ? this : new ProfilingValueDomain<>(result, profile, size, cfg);
+	}
+
+	@Override
+	public boolean lessOrEqual(
+			ProfilingValueDomain<D> other)
+			throws SemanticException {
+		long start = System.nanoTime();
+		boolean result = domain.lessOrEqual(other.domain);
+		profile.record(Operation.LESS_OR_EQUAL, cfg, System.nanoTime() - start, -1);
+		return result;
+	}
+
+	@Override
+	public ProfilingValueDomain<D> lub(
+			ProfilingValueDomain<D> other)
+			throws SemanticException {
+		long start = System.nanoTime();
+		return record(Operation.LUB, cfg, start, domain.lub(other.domain));
+	}
+
+	@Override
+	public ProfilingValueDomain<D> glb(
+			ProfilingValueDomain<D> other)
+			throws SemanticException {
+		long start = System.nanoTime();
+		return record(Operation.GLB, cfg, start, domain.glb(other.domain));
+	}
+
+	@Override
+	public ProfilingValueDomain<D> widening(
+			ProfilingValueDomain<D> other)
+			throws SemanticException {
+		long start = System.nanoTime();
+		return record(Operation.WIDENING, cfg, start, domain.widening(other.domain));
+	}
+
+	@Override
+	public ProfilingValueDomain<D> narrowing(
+			ProfilingValueDomain<D> other)
+			throws SemanticException {
+		long start = System.nanoTime();
+		return record(Operation.NARROWING, cfg, start, domain.narrowing(other.domain));
+	}
+
+	@Override
+	public ProfilingValueDomain<D> top() {
+		return new ProfilingValueDomain<>(domain.top(), profile, size, cfg);
+	}
+
+	@Override
+	public boolean isTop() {
+		return domain.isTop();
+	}
+
+	@Override
+	public ProfilingValueDomain<D> bottom() {
+		return new ProfilingValueDomain<>(domain.bottom(), profile, size, cfg);
+	}
+
+	@Override
+	public boolean isBottom() {
+		return domain.isBottom();
+	}
+
+	@Override
+	public ProfilingValueDomain<D> assign(
+			Identifier id,
+			ValueExpression expression,
+			ProgramPoint pp,
+			SemanticOracle oracle)
+			throws SemanticException {
+		long start = System.nanoTime();
+		return record(Operation.ASSIGN, pp.getCFG(), start, domain.assign(id, expression, pp, oracle));
+	}
+
+	@Override
+	public ProfilingValueDomain<D> smallStepSemantics(
+			ValueExpression expression,
+			ProgramPoint pp,
+			SemanticOracle oracle)
+			throws SemanticException {
+		long start = System.nanoTime();
+		return record(Operation.SMALL_STEP_SEMANTICS, pp.getCFG(), start,
+				domain.smallStepSemantics(expression, pp, oracle));
+	}
+
+	@Override
+	public ProfilingValueDomain<D> assume(
+			ValueExpression expression,
+			ProgramPoint src,
+			ProgramPoint dest,
+			SemanticOracle oracle)
+			throws SemanticException {
+		long start = System.nanoTime();
+		return record(Operation.ASSUME, src.getCFG(), start, domain.assume(expression, src, dest, oracle));
+	}
+
+	@Override
+	public Satisfiability satisfies(
+			ValueExpression expression,
+			ProgramPoint pp,
+			SemanticOracle oracle)
+			throws SemanticException {
+		long start = System.nanoTime();
+		Satisfiability result = domain.satisfies(expression, pp, oracle);
+		profile.record(Operation.SATISFIES, pp.getCFG(), System.nanoTime() - start, -1);
+		return result;
+	}
+
+	@Override
+	public boolean knowsIdentifier(
+			Identifier id) {
+		return domain.knowsIdentifier(id);
+	}
+
+	@Override
+	public ProfilingValueDomain<D> forgetIdentifier(
+			Identifier id)
+			throws SemanticException {
+		long start = System.nanoTime();
+		return record(Operation.FORGET, cfg, start, domain.forgetIdentifier(id));
+	}
+
+	@Override
+	public ProfilingValueDomain<D> forgetIdentifiersIf(
+			Predicate<Identifier> test)
+			throws SemanticException {
+		long start = System.nanoTime();
+		return record(Operation.FORGET, cfg, start, domain.forgetIdentifiersIf(test));
+	}
+
+	@Override
+	public ProfilingValueDomain<D> pushScope(
+			ScopeToken token)
+			throws SemanticException {
+		long start = System.nanoTime();
+		return record(Operation.SCOPE, cfg, start, domain.pushScope(token));
+	}
+
+	@Override
+	public ProfilingValueDomain<D> popScope(
+			ScopeToken token)
+			throws SemanticException {
+		long start = System.nanoTime();
+		return record(Operation.SCOPE, cfg, start, domain.popScope(token));
+	}
+
+	@Override
+	public StructuredRepresentation representation() {
+		return domain.representation();
+	}
+
+	@Override
+	public int hashCode() {
+		return domain.hashCode();
+	}
+
+	@Override
+	public boolean equals(
+			Object obj) {
+		// the profile and the cfg are bookkeeping, and do not contribute to the abstract information
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		ProfilingValueDomain<?> other = (ProfilingValueDomain<?>) obj;
+		return Objects.equals(domain, other.domain);
+	}
+
+	@Override
+	public String toString() {
+		return domain.toString();
+	}
+
+	/**
+	 * The measurements of the operations of a {@link ProfilingValueDomain}, and of all the states produced from it.
+	 * Its {@link #toString()} yields a textual report with, for each operation, the number of calls, the total and
+	 * mean time, the approximate median and 99th percentile (as the upper bound of their histogram bucket) and the
+	 * mean and maximum size of the results, first for the whole analysis and then for each CFG.
+	 */
+	public static final class Profile {
+
+		// key of the operations performed on states that do not come from a cfg (e.g., the initial ones)
+		private static final Object NO_CFG = new Object();
+
+		private final Map<Object, AtomicReferenceArray<Stats>> stats = new ConcurrentHashMap<>();
+
+		private Profile() {
+		}
+
+		private void record(
+				Operation operation,
+				CFG cfg,
+				long nanos,
+				int size) {
+			Object key = cfg == null ? NO_CFG : cfg;
+			AtomicReferenceArray<Stats> perCfg = stats.get(key);
+			if (perCfg == null)
+				perCfg = stats.computeIfAbsent(key, k -> new AtomicReferenceArray<>(Operation.values().length));
+			Stats op = perCfg.get(operation.ordinal());
+			if (op == null) {
+				perCfg.compareAndSet(operation.ordinal(), null, new Stats());
+				op = perCfg.get(operation.ordinal());
+			}
+			op.add(nanos, size);
+		}
+
+		/**
+		 * Yields the number of times the given operation has been invoked, on any CFG.
+		 *
+		 * @param operation the operation
+		 *
+		 * @return the number of calls
+		 */
+		public long getCalls(
+				Operation operation) {
+			long calls = 0;
+			for (AtomicReferenceArray<Stats> perCfg : stats.values()) {
+				Stats op = perCfg.get(operation.ordinal());
+				if (op != null)
+					calls += op.calls.sum();
+			}
+			return calls;
+		}
+
+		/**
+		 * Yields the total time spent in the given operation, on any CFG.
+		 *
+		 * @param operation the operation
+		 *
+		 * @return the total time, in nanoseconds
+		 */
+		public long getNanos(
+				Operation operation) {
+			long nanos = 0;
+			for (AtomicReferenceArray<Stats> perCfg : stats.values()) {
+				Stats op = perCfg.get(operation.ordinal());
+				if (op != null)
+					nanos += op.nanos.sum();
+			}
+			return nanos;
+		}
+
+		/**
+		 * Yields a semantic check that prints this profile on the standard output at the end of the analysis.
+		 *
+		 * @param <A> the type of abstract state of the analysis
+		 *
+		 * @return the check
+		 */
+		public <A extends AbstractState<A>> SemanticCheck<A> reporter() {
+			return new SemanticCheck<A>() {
+
+				@Override
+				public void afterExecution(
+						CheckToolWithAnalysisResults<A> tool) {
+					System.out.println(Profile.this);
+				}
+			};
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder report = new StringBuilder("Profile of the value domain\n");
+			AtomicReferenceArray<Stats> total = new AtomicReferenceArray<>(Operation.values().length);
+			for (AtomicReferenceArray<Stats> perCfg : stats.values())
+				for (int i = 0; i < total.length(); i++)
+					if (perCfg.get(i) != null)
+						total.set(i, total.get(i) == null ? perCfg.get(i).copy() : total.get(i).merge(perCfg.get(i)));
+			append(report, "<all>", total);
+
+			// the most expensive cfgs come first
+			List<Map.Entry<Object, AtomicReferenceArray<Stats>>> entries = new ArrayList<>(stats.entrySet());
+			entries.sort(Comparator.comparingLong((Map.Entry<Object, AtomicReferenceArray<Stats>> e) -> nanos(e.getValue())).reversed());
+			for (Map.Entry<Object, AtomicReferenceArray<Stats>> entry : entries)
+				append(report, entry.getKey() == NO_CFG ? "<no cfg>"
+						: ((CFG) entry.getKey()).getDescriptor().getFullSignature(), entry.getValue());
+			return report.toString();
+		}
+
+		private static long nanos(
+				AtomicReferenceArray<Stats> perCfg) {
+			long nanos = 0;
+			for (int i = 0; i < perCfg.length(); i++)
+				if (perCfg.get(i) != null)
+					nanos += perCfg.get(i).nanos.sum();
+			return nanos;
+		}
+
+		private static void append(
+				StringBuilder report,
+				String name,
+				AtomicReferenceArray<Stats> perCfg) {
+			report.append("\n").append(name).append("\n");
+			report.append(String.format(Locale.ROOT, "  %-20s %12s %12s %10s %10s %10s %10s %8s%n", "operation",
+					"calls", "total ms", "mean ns", "p50 ns", "p99 ns", "mean size", "max size"));
+			for (Operation operation : Operation.values()) {
+				Stats op = perCfg.get(operation.ordinal());
+				if (op == null)
+					continue;
+				long calls = op.calls.sum();
+				long sized = op.sized.sum();
+				report.append(String.format(Locale.ROOT, "  %-20s %12d %12.3f %10d %10s %10s %10s %8s%n", operation,
+						calls, op.nanos.sum() / 1e6, calls == 0 ? 0 : op.nanos.sum() / calls,
+						"<=" + op.percentile(0.5), "<=" + op.percentile(0.99),
+						sized == 0 ? "-" : String.format(Locale.ROOT, "%.1f", (double) op.sizes.sum() / sized),
+						sized == 0 ? "-" : String.valueOf(op.maxSize.get())));
+			}
+		}
+	}
+
+	// the measurements of a single operation on a single cfg
+	private static final class Stats {
+
+		private final LongAdder calls = new LongAdder();
+
+		private final LongAdder nanos = new LongAdder();
+
+		// bucket i holds the durations d such that 2^(i-1) <= d < 2^i
+		private final LongAdder[] histogram = new LongAdder[64];
+
+		// the number of measured results, and the sum of their sizes
+		private final LongAdder sized = new LongAdder();
+
+		private final LongAdder sizes = new LongAdder();
+
+		private final LongAccumulator maxSize = new LongAccumulator(Math::max, 0);
+
+		private Stats() {
+			for (int i = 0; i < histogram.length; i++)
+				histogram[i] = new LongAdder();
+		}
+
+		private void add(
+				long nanos,
+				int size) {
+			calls.increment();
+			this.nanos.add(nanos);
+			histogram[64 - Long.numberOfLeadingZeros(Math.max(0, nanos))].increment();
+			if (size >= 0) {
+				sized.increment();
+				sizes.add(size);
+				maxSize.accumulate(size);
+			}
+		}
+
+		private Stats copy() {
+			return new Stats().merge(this);
+		}
+
+		private Stats merge(
+				Stats other) {
+			calls.add(other.calls.sum());
+			nanos.add(other.nanos.sum());
+			for (int i = 0; i < histogram.length; i++)
+				histogram[i].add(other.histogram[i].sum());
+			sized.add(other.sized.sum());
+			sizes.add(other.sizes.sum());
+			maxSize.accumulate(other.maxSize.get());
+			return this;
+		}
+
+		// the upper bound of the bucket containing the given percentile
+		private long percentile(
+				double fraction) {
+			long target = (long) Math.ceil(calls.sum() * fraction);
+			long seen = 0;
+			for (int i = 0; i < histogram.length; i++) {
+				seen += histogram[i].sum();
+				if (seen >= target && seen > 0)
+					return i == 0 ? 0 : i >= 63 ? Long.MAX_VALUE : (1L << i) - 1;
+			}
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,249 @@
+package it.unive.lisa.tutorial;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates synthetic IMP programs of a chosen shape, to measure how the analyses scale beyond the toy programs of
+ * {@code inputs}. A program is a single class containing:
+ * <ul>
+ * <li>{@code methods} methods {@code m0}, {@code m1}, ..., each with a parameter and {@code variables} local
+ * variables, whose body has {@code variables} statements at each loop nesting level, down to {@code loopDepth} nested
+ * loops;</li>
+ * <li>statements that are assignments of arithmetic expressions, wrapped in an {@code if}-{@code else} with
+ * probability {@code branchDensity}, or calls to the source or to the sink of the taint analysis, each with
+ * probability {@code sourceDensity};</li>
+ * <li>calls from each method to the next one, forming chains of {@code callDepth + 1} methods.</li>
+ * </ul>
+ * Generation is seeded, so that the same shape always yields the same program.
+ */
+public class ProgramGenerator {
+
+	/**
+	 * The names of the parameters of the generator, as produced by {@link #csv()}.
+	 */
+	public static final String HEADER = "methods,variables,loop_depth,branch_density,call_depth,source_density";
+
+	private int methods = 4;
+
+	private int variables = 4;
+
+	private int loopDepth = 1;
+
+	private double branchDensity = 0.2;
+
+	private int callDepth = 1;
+
+	private double sourceDensity = 0.1;
+
+	private long seed = 42;
+
+	/**
+	 * Sets the number of methods, 4 by default.
+	 *
+	 * @param methods the number of methods
+	 *
+	 * @return this generator
+	 */
+	public ProgramGenerator methods(
+			int methods) {
+		this.methods = Math.max(1, methods);
+		return this;
+	}
+
+	/**
+	 * Sets the number of local variables of each method, 4 by default.
+	 *
+	 * @param variables the number of variables
+	 *
+	 * @return this generator
+	 */
+	public ProgramGenerator variables(
+			int variables) {
+		this.variables = Math.max(1, variables);
+		return this;
+	}
+
+	/**
+	 * Sets the number of nested loops of each method, 1 by default.
+	 *
+	 * @param loopDepth the nesting depth
+	 *
+	 * @return this generator
+	 */
+	public ProgramGenerator loopDepth(
+			int loopDepth) {
+		this.loopDepth = Math.max(0, loopDepth);
+		return this;
+	}
+
+	/**
+	 * Sets the probability that a statement is guarded by a condition, 0.2 by default.
+	 *
+	 * @param branchDensity the probability, between 0 and 1
+	 *
+	 * @return this generator
+	 */
+	public ProgramGenerator branchDensity(
+			double branchDensity) {
+		this.branchDensity = branchDensity;
+		return this;
+	}
+
+	/**
+	 * Sets the length of the call chains, that is the number of calls that can be found on the stack, 1 by default.
+	 *
+	 * @param callDepth the length of the call chains
+	 *
+	 * @return this generator
+	 */
+	public ProgramGenerator callDepth(
+			int callDepth) {
+		this.callDepth = Math.max(0, callDepth);
+		return this;
+	}
+
+	/**
+	 * Sets the probability that a statement is a call to the source, and the one that it is a call to the sink, 0.1
+	 * by default.
+	 *
+	 * @param sourceDensity the probability, between 0 and 0.5
+	 *
+	 * @return this generator
+	 */
+	public ProgramGenerator sourceDensity(
+			double sourceDensity) {
+		this.sourceDensity = sourceDensity;
+		return this;
+	}
+
+	/**
+	 * Sets the seed of the random choices, 42 by default.
+	 *
+	 * @param seed the seed
+	 *
+	 * @return this generator
+	 */
+	public ProgramGenerator seed(
+			long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 * Yields a name identifying the shape of the generated programs, usable as a file name.
+	 *
+	 * @return the name
+	 */
+	public String name() {
+		return String.format(Locale.ROOT, "m%d_v%d_l%d_b%s_c%d_s%s", methods, variables, loopDepth, branchDensity,
+				callDepth, sourceDensity);
+	}
+
+	/**
+	 * Yields the values of the parameters of this generator, in the same order as {@link #HEADER}, separated by
+	 * commas.
+	 *
+	 * @return the parameters
+	 */
+	public String csv() {
+		return String.format(Locale.ROOT, "%d,%d,%d,%s,%d,%s", methods, variables, loopDepth, branchDensity, callDepth,
+				sourceDensity);
+	}
+
+	/**
+	 * Generates the code of the program.
+	 *
+	 * @return the code
+	 */
+	public String generate() {
+		Random random = new Random(seed);
+		StringBuilder code = new StringBuilder("class synthetic {\n\n");
+		code.append("\t[lisa.taint.Tainted]\n\tsource() {\n\t\treturn 1;\n\t}\n\n");
+		code.append("\tsink([lisa.taint.Sink] v) {\n\t}\n");
+
+		for (int m = 0; m < methods; m++) {
+			code.append("\n\tm").append(m).append("(p) {\n");
+			code.append("\t\tdef v0 = p;\n");
+			for (int v = 1; v < variables; v++)
+				code.append("\t\tdef v").append(v).append(" = ").append(random.nextInt(100)).append(";\n");
+			body(code, random, 0, "\t\t");
+			// each chain of callDepth + 1 methods ends where the next one starts
+			if (m + 1 < methods && (m + 1) % (callDepth + 1) != 0)
+				code.append("\t\tv0 = this.m").append(m + 1).append("(").append(variable(random)).append(");\n");
+			code.append("\t\treturn v0;\n\t}\n");
+		}
+		return code.append("}\n").toString();
+	}
+
+	/**
+	 * Generates the code of the program, writing it in the given file.
+	 *
+	 * @param file the file to write
+	 *
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(
+			Path file)
+			throws IOException {
+		if (file.getParent() != null)
+			Files.createDirectories(file.getParent());
+		Files.write(file, generate().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void body(
+			StringBuilder code,
+			Random random,
+			int depth,
+			String indent) {
+		for (int v = 0; v < variables; v++)
+			if (random.nextDouble() < branchDensity) {
+				code.append(indent).append("if (").append(variable(random)).append(" < ").append(variable(random))
+						.append(") {\n");
+				statement(code, random, v, indent + "\t");
+				code.append(indent).append("} else {\n");
+				statement(code, random, v, indent + "\t");
+				code.append(indent).append("}\n");
+			} else
+				statement(code, random, v, indent);
+
+		if (depth < loopDepth) {
+			// each loop has its own counter, so that all the loops terminate
+			String counter = "i" + depth;
+			code.append(indent).append("def ").append(counter).append(" = 0;\n");
+			code.append(indent).append("while (").append(counter).append(" < ").append(10 + random.nextInt(90))
+					.append(") {\n");
+			body(code, random, depth + 1, indent + "\t");
+			code.append(indent).append("\t").append(counter).append(" = ").append(counter).append(" + 1;\n");
+			code.append(indent).append("}\n");
+		}
+	}
+
+	private void statement(
+			StringBuilder code,
+			Random random,
+			int target,
+			String indent) {
+		double choice = random.nextDouble();
+		code.append(indent);
+		if (choice < sourceDensity)
+			code.append("v").append(target).append(" = this.source();\n");
+		else if (choice < 2 * sourceDensity)
+			code.append("this.sink(v").append(target).append(");\n");
+		else if (random.nextBoolean())
+			code.append("v").append(target).append(" = ").append(variable(random)).append(" + ")
+					.append(variable(random)).append(";\n");
+		else
+			code.append("v").append(target).append(" = ").append(variable(random)).append(" - ")
+					.append(1 + random.nextInt(10)).append(";\n");
+	}
+
+	private String variable(
+			Random random) {
+		return "v" + random.nextInt(variables);
+	}
+}
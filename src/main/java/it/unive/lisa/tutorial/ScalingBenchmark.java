@@ -0,0 +1,176 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.LiSA;
+import it.unive.lisa.conf.LiSAConfiguration;
+import it.unive.lisa.imp.IMPFrontend;
+import it.unive.lisa.program.Program;
+import it.unive.lisa.program.cfg.statement.Statement;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs a set of {@link Preset}s over programs of growing size produced by {@link ProgramGenerator}s, recording for
+ * each analysis its wall time, its number of fixpoint iterations (through a {@link CountingWorkingSet}) and the peak
+ * heap usage, in {@link #RESULTS_FILE}. The file has a row for each preset, program and repetition, so that scaling
+ * curves can be plotted directly from it.<br>
+ * <br>
+ * Analyses are executed one at a time, so that their peak heap usages do not overlap. The peak is the sum of the peaks
+ * of the heap memory pools, that are reset before each analysis: since pools can peak at different times, this is an
+ * upper bound of the actual peak. Parsing is not included in the wall time.
+ */
+public class ScalingBenchmark {
+
+	/**
+	 * The name of the file, inside the working directory, containing the measurements.
+	 */
+	public static final String RESULTS_FILE = "scaling.csv";
+
+	/**
+	 * The presets run by default, one for each domain of the tutorial.
+	 */
+	public static final List<Preset> PRESETS = Arrays.asList(Preset.SIGNS, Preset.INTERVAL, Preset.CONGRUENCE,
+			Preset.EQUALITY, Preset.PENTAGONS, Preset.TAINT);
+
+	private final List<Preset> presets;
+
+	private final List<ProgramGenerator> programs;
+
+	private final int repetitions;
+
+	/**
+	 * Builds the benchmark.
+	 *
+	 * @param presets     the analyses to run
+	 * @param programs    the generators of the programs to analyze, usually of growing size
+	 * @param repetitions the number of times each analysis is repeated on each program
+	 */
+	public ScalingBenchmark(
+			List<Preset> presets,
+			List<ProgramGenerator> programs,
+			int repetitions) {
+		this.presets = presets;
+		this.programs = programs;
+		this.repetitions = Math.max(1, repetitions);
+	}
+
+	/**
+	 * Yields generators of programs whose number of methods and variables doubles at each step, from 1 to
+	 * {@code max}, with the default values for the other parameters.
+	 *
+	 * @param max the number of methods and variables of the largest program
+	 *
+	 * @return the generators
+	 */
+	public static List<ProgramGenerator> doubling(
+			int max) {
+		List<ProgramGenerator> programs = new ArrayList<>();
+		for (int size = 1; size <= max; size *= 2)
+			programs.add(new ProgramGenerator().methods(size).variables(size));
+		return programs;
+	}
+
+	/**
+	 * Runs the benchmark. The generated programs are written in the {@code programs} sub-directory of the working
+	 * directory, and the files of each analysis in a sub-directory named after the preset and the program.
+	 *
+	 * @param workdir the working directory
+	 *
+	 * @return the path of the file containing the measurements
+	 *
+	 * @throws IOException if the files cannot be written
+	 */
+	public Path run(
+			Path workdir)
+			throws IOException {
+		Files.createDirectories(workdir);
+		Path results = workdir.resolve(RESULTS_FILE);
+		try (Writer writer = Files.newBufferedWriter(results, StandardCharsets.UTF_8)) {
+			writer.write("preset," + ProgramGenerator.HEADER + ",lines,run,status,wall_millis,iterations,peak_heap_bytes\n");
+			for (ProgramGenerator generator : programs) {
+				Path file = workdir.resolve("programs").resolve(generator.name() + ".imp");
+				generator.write(file);
+				int lines = Files.readAllLines(file, StandardCharsets.UTF_8).size();
+				for (Preset preset : presets)
+					for (int run = 0; run < repetitions; run++) {
+						String prefix = preset + "," + generator.csv() + "," + lines + "," + run + ",";
+						writer.write(prefix + measure(preset, file, workdir.resolve(preset + "_" + generator.name()))
+								+ "\n");
+						writer.flush();
+					}
+			}
+		}
+		return results;
+	}
+
+	// yields the status and the measurements of a single analysis
+	private static String measure(
+			Preset preset,
+			Path file,
+			Path workdir) {
+		Program program;
+		try {
+			program = IMPFrontend.processFile(file.toString());
+		} catch (Exception e) {
+			return BatchAnalysis.Status.PARSING_FAILED + ",,,";
+		}
+
+		LiSAConfiguration conf = preset.configuration(workdir.toString());
+		CountingWorkingSet<Statement> counter = new CountingWorkingSet<>(conf.fixpointWorkingSet);
+		conf.fixpointWorkingSet = counter;
+
+		// the heap left by previous analyses must not count as part of this one
+		System.gc();
+		List<MemoryPoolMXBean> pools = new ArrayList<>();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+				pool.resetPeakUsage();
+				pools.add(pool);
+			}
+
+		long start = System.nanoTime();
+		BatchAnalysis.Status status = BatchAnalysis.Status.ANALYZED;
+		try {
+			new LiSA(conf).run(program);
+		} catch (Exception e) {
+			status = BatchAnalysis.Status.ANALYSIS_FAILED;
+		}
+		long millis = (System.nanoTime() - start) / 1_000_000;
+
+		long peak = 0;
+		for (MemoryPoolMXBean pool : pools)
+			peak += pool.getPeakUsage().getUsed();
+		return String.format(Locale.ROOT, "%s,%d,%d,%d", status, millis, counter.getPops(), peak);
+	}
+
+	/**
+	 * Runs the default presets on programs whose number of methods and variables doubles up to a given size.<br>
+	 * <br>
+	 * Usage: {@code ScalingBenchmark [workdir] [max size] [repetitions]}, where the working directory defaults to
+	 * {@code outputs/scaling}, the maximum size to 32 and the repetitions to 3.
+	 *
+	 * @param args the command line arguments
+	 *
+	 * @throws IOException if the files cannot be written
+	 */
+	public static void main(
+			String[] args)
+			throws IOException {
+		Path workdir = Paths.get(args.length > 0 ? args[0] : "outputs/scaling");
+		int max = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+		int repetitions = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		Path results = new ScalingBenchmark(PRESETS, doubling(max), repetitions).run(workdir);
+		System.out.println("Measurements written to " + results);
+	}
+}
@@ -0,0 +1,521 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.analysis.ScopeToken;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.SemanticOracle;
+import it.unive.lisa.analysis.lattices.Satisfiability;
+import it.unive.lisa.analysis.nonrelational.value.NonRelationalValueDomain;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
+import it.unive.lisa.analysis.value.ValueDomain;
+import it.unive.lisa.program.cfg.ProgramPoint;
+import it.unive.lisa.symbolic.value.Identifier;
+import it.unive.lisa.symbolic.value.ValueExpression;
+import it.unive.lisa.util.representation.StructuredRepresentation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A sparse version of {@link ValueEnvironment}, for non-relational domains such as {@link Interval}, {@link Signs},
+ * {@link CongruenceDomain} and {@link Taint}. Since the value of a variable only changes at its definitions, a state
+ * is stored as the chain of definitions performed since an older state, down to a base holding a whole map: an
+ * assignment adds a single link, whatever the number of variables, and the states of consecutive statements share all
+ * their definitions but the last ones. Transfer functions only look at the variables of the expression at hand, and
+ * joins (as well as widenings and comparisons) between states that come from a common one only look at the variables
+ * defined along the diverging paths, that are the variables that an SSA form would join with a phi node at that
+ * point.<br>
+ * <br>
+ * The results are the same as with a {@link ValueEnvironment} of the same domain, since each operation is delegated to
+ * an environment restricted to the variables it reads or writes. Chains are flattened into a new base every
+ * {@value #CHAIN_LIMIT} definitions, so that lookups stay cheap: states with unrelated bases, as well as scope changes
+ * at calls, fall back to whole-map operations. Use it in place of the environment, e.g.
+ * {@code DefaultConfiguration.simpleState(heap, new SparseEnvironment<>(new Interval()), types)}.
+ *
+ * @param <T> the type of the non-relational domain
+ */
+public class SparseEnvironment<T extends NonRelationalValueDomain<T>>
+		implements
+		ValueDomain<SparseEnvironment<T>> {
+
+	/**
+	 * The maximum number of definitions on top of a base.
+	 */
+	public static final int CHAIN_LIMIT = 16;
+
+	// the same fields of a ValueEnvironment: the lattice element, and the function that is null for top and bottom
+	private final T lattice;
+
+	private final Definitions<T> definitions;
+
+	// lazily computed, as in String
+	private int hash;
+
+	/**
+	 * Builds an empty environment, as {@link ValueEnvironment#ValueEnvironment(NonRelationalValueDomain)} does.
+	 *
+	 * @param domain a singleton instance of the domain
+	 */
+	public SparseEnvironment(
+			T domain) {
+		this(domain, null);
+	}
+
+	private SparseEnvironment(
+			T lattice,
+			Definitions<T> definitions) {
+		this.lattice = lattice;
+		this.definitions = definitions;
+	}
+
+	/**
+	 * Builds the sparse version of the given environment.
+	 *
+	 * @param <T>         the type of the non-relational domain
+	 * @param environment the environment
+	 *
+	 * @return the sparse environment
+	 */
+	public static <T extends NonRelationalValueDomain<T>> SparseEnvironment<T> of(
+			ValueEnvironment<T> environment) {
+		return new SparseEnvironment<>(environment.lattice,
+				environment.function == null ? null : Definitions.base(new HashMap<>(environment.function)));
+	}
+
+	/**
+	 * Yields the dense version of this environment.
+	 *
+	 * @return the environment
+	 */
+	public ValueEnvironment<T> toEnvironment() {
+		return new ValueEnvironment<>(lattice, definitions == null ? null : definitions.toMap());
+	}
+
+	/**
+	 * Yields the value of the given variable, as {@link ValueEnvironment#getState(Identifier)} does.
+	 *
+	 * @param id the variable
+	 *
+	 * @return its value
+	 */
+	public T getState(
+			Identifier id) {
+		if (isBottom())
+			return lattice.bottom();
+		if (isTop())
+			return lattice.top();
+		T value = definitions == null ? null : definitions.get(id);
+		return value == null ? lattice.bottom() : value;
+	}
+
+	/**
+	 * Evaluates the given expression, as {@link ValueEnvironment#eval(ValueExpression, ProgramPoint, SemanticOracle)}
+	 * does.
+	 *
+	 * @param expression the expression
+	 * @param pp         the program point where the evaluation happens
+	 * @param oracle     the oracle for inter-domain communication
+	 *
+	 * @return the value of the expression
+	 *
+	 * @throws SemanticException if something goes wrong during the evaluation
+	 */
+	public T eval(
+			ValueExpression expression,
+			ProgramPoint pp,
+			SemanticOracle oracle)
+			throws SemanticException {
+		return restrict(Identifiers.of(expression)).eval(expression, pp, oracle);
+	}
+
+	// yields a dense environment with the given variables only
+	private ValueEnvironment<T> restrict(
+			Set<Identifier> ids) {
+		if (definitions == null)
+			return new ValueEnvironment<>(lattice, null);
+		Map<Identifier, T> function = new HashMap<>();
+		for (Identifier id : ids) {
+			T value = definitions.get(id);
+			if (value != null)
+				function.put(id, value);
+		}
+		return new ValueEnvironment<>(lattice, function);
+	}
+
+	// applies to this environment the changes that an operation made on its restriction
+	private SparseEnvironment<T> update(
+			ValueEnvironment<T> restricted,
+			ValueEnvironment<T> result) {
+		if (result == restricted)
+			return this;
+		if (definitions == null || result.function == null)
+			// the restriction of top and bottom is the whole environment
+			return of(result);
+
+		Set<Identifier> touched = new HashSet<>(result.function.keySet());
+		if (restricted.function != null)
+			touched.addAll(restricted.function.keySet());
+		Definitions<T> updated = definitions;
+		for (Identifier id : touched) {
+			T value = result.function.get(id);
+			if (!Objects.equals(value, updated.get(id)))
+				updated = updated.define(id, value);
+		}
+		return updated == definitions && result.lattice.equals(lattice) ? this
+				: new SparseEnvironment<>(result.lattice, updated);
+	}
+
+	@Override
+	public SparseEnvironment<T> assign(
+			Identifier id,
+			ValueExpression expression,
+			ProgramPoint pp,
+			SemanticOracle oracle)
+			throws SemanticException {
+		if (isBottom())
+			return this;
+		Set<Identifier> ids = Identifiers.of(expression);
+		ids.add(id);
+		ValueEnvironment<T> restricted = restrict(ids);
+		return update(restricted, restricted.assign(id, expression, pp, oracle));
+	}
+
+	@Override
+	public SparseEnvironment<T> smallStepSemantics(
+			ValueExpression expression,
+			ProgramPoint pp,
+			SemanticOracle oracle)
+			throws SemanticException {
+		if (isBottom())
+			return this;
+		ValueEnvironment<T> restricted = restrict(Identifiers.of(expression));
+		return update(restricted, restricted.smallStepSemantics(expression, pp, oracle));
+	}
+
+	@Override
+	public SparseEnvironment<T> assume(
+			ValueExpression expression,
+			ProgramPoint src,
+			ProgramPoint dest,
+			SemanticOracle oracle)
+			throws SemanticException {
+		if (isBottom())
+			return this;
+		ValueEnvironment<T> restricted = restrict(Identifiers.of(expression));
+		return update(restricted, restricted.assume(expression, src, dest, oracle));
+	}
+
+	@Override
+	public Satisfiability satisfies(
+			ValueExpression expression,
+			ProgramPoint pp,
+			SemanticOracle oracle)
+			throws SemanticException {
+		if (isBottom())
+			return Satisfiability.BOTTOM;
+		return restrict(Identifiers.of(expression)).satisfies(expression, pp, oracle);
+	}
+
+	@Override
+	public boolean lessOrEqual(
+			SparseEnvironment<T> other)
+			throws SemanticException {
+		if (other == null)
+			return false;
+		if (this == other || isBottom() || other.isTop())
+			return true;
+		if (isTop() || other.isBottom())
+			return false;
+		if (!lattice.lessOrEqual(other.lattice))
+			return false;
+
+		// the variables not in the set hold the same value in both states
+		Set<Identifier> ids = diverging(other);
+		if (ids == null)
+			ids = definitions.toMap().keySet();
+		for (Identifier id : ids) {
+			T value = definitions.get(id);
+			if (value != null && !value.lessOrEqual(other.getState(id)))
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public SparseEnvironment<T> lub(
+			SparseEnvironment<T> other)
+			throws SemanticException {
+		if (other == null || other.isBottom() || isTop() || this == other)
+			return this;
+		if (isBottom() || other.isTop())
+			return other;
+		return join(other, lattice.lub(other.lattice), false);
+	}
+
+	@Override
+	public SparseEnvironment<T> widening(
+			SparseEnvironment<T> other)
+			throws SemanticException {
+		if (other == null || other.isBottom() || isTop() || this == other)
+			return this;
+		if (isBottom() || other.isTop())
+			return other;
+		return join(other, lattice.widening(other.lattice), true);
+	}
+
+	// the pointwise lub or widening over the union of the variables, as in ValueEnvironment
+	private SparseEnvironment<T> join(
+			SparseEnvironment<T> other,
+			T joined,
+			boolean widening)
+			throws SemanticException {
+		Set<Identifier> ids = diverging(other);
+		if (ids == null) {
+			// unrelated states: the whole maps are joined
+			Map<Identifier, T> mine = definitions.toMap();
+			Map<Identifier, T> theirs = other.definitions.toMap();
+			Map<Identifier, T> function = new HashMap<>(mine);
+			for (Map.Entry<Identifier, T> entry : theirs.entrySet()) {
+				T value = mine.get(entry.getKey());
+				function.put(entry.getKey(), value == null ? entry.getValue()
+						: widening ? value.widening(entry.getValue()) : value.lub(entry.getValue()));
+			}
+			return new SparseEnvironment<>(joined, Definitions.base(function));
+		}
+
+		// the phi nodes: only the variables defined after the common state can differ
+		Definitions<T> result = definitions;
+		for (Identifier id : ids) {
+			T value = definitions.get(id);
+			T theirs = other.definitions.get(id);
+			T merged = value == null ? theirs
+					: theirs == null ? value : widening ? value.widening(theirs) : value.lub(theirs);
+			if (!Objects.equals(merged, value))
+				result = result.define(id, merged);
+		}
+		return result == definitions && joined.equals(lattice) ? this : new SparseEnvironment<>(joined, result);
+	}
+
+	// yields the variables defined in this state or in the given one since their most recent common state, or null if
+	// they do not have one
+	private Set<Identifier> diverging(
+			SparseEnvironment<T> other) {
+		Definitions<T> mine = definitions;
+		Definitions<T> theirs = other.definitions;
+		Set<Identifier> ids = new HashSet<>();
+		while (mine != theirs) {
+			if (mine.length > theirs.length) {
+				ids.add(mine.id);
+				mine = mine.parent;
+			} else if (theirs.length > mine.length) {
+				ids.add(theirs.id);
+				theirs = theirs.parent;
+			} else if (mine.parent == null)
+				// two different bases
+				return null;
+			else {
+				ids.add(mine.id);
+				ids.add(theirs.id);
+				mine = mine.parent;
+				theirs = theirs.parent;
+			}
+		}
+		return ids;
+	}
+
+	@Override
+	public SparseEnvironment<T> glb(
+			SparseEnvironment<T> other)
+			throws SemanticException {
+		// only used for refinements, that are rare enough to be computed on the dense environments
+		return other == null || this == other ? this : of(toEnvironment().glb(other.toEnvironment()));
+	}
+
+	@Override
+	public SparseEnvironment<T> narrowing(
+			SparseEnvironment<T> other)
+			throws SemanticException {
+		return other == null || this == other ? this : of(toEnvironment().narrowing(other.toEnvironment()));
+	}
+
+	@Override
+	public SparseEnvironment<T> top() {
+		return new SparseEnvironment<>(lattice.top(), null);
+	}
+
+	@Override
+	public boolean isTop() {
+		return lattice.isTop() && definitions == null;
+	}
+
+	@Override
+	public SparseEnvironment<T> bottom() {
+		return new SparseEnvironment<>(lattice.bottom(), null);
+	}
+
+	@Override
+	public boolean isBottom() {
+		return lattice.isBottom() && definitions == null;
+	}
+
+	@Override
+	public boolean knowsIdentifier(
+			Identifier id) {
+		return definitions != null && definitions.get(id) != null;
+	}
+
+	@Override
+	public SparseEnvironment<T> forgetIdentifier(
+			Identifier id)
+			throws SemanticException {
+		if (!knowsIdentifier(id))
+			return this;
+		return new SparseEnvironment<>(lattice, definitions.define(id, null));
+	}
+
+	// the following ones touch many variables at once, typically at calls, so they work on the dense environment
+
+	@Override
+	public SparseEnvironment<T> forgetIdentifiersIf(
+			Predicate<Identifier> test)
+			throws SemanticException {
+		ValueEnvironment<T> environment = toEnvironment();
+		ValueEnvironment<T> result = environment.forgetIdentifiersIf(test);
+		return result == environment ? this : of(result);
+	}
+
+	@Override
+	public SparseEnvironment<T> pushScope(
+			ScopeToken token)
+			throws SemanticException {
+		return definitions == null ? this : of(toEnvironment().pushScope(token));
+	}
+
+	@Override
+	public SparseEnvironment<T> popScope(
+			ScopeToken token)
+			throws SemanticException {
+		return definitions == null ? this : of(toEnvironment().popScope(token));
+	}
+
+	@Override
+	public StructuredRepresentation representation() {
+		return toEnvironment().representation();
+	}
+
+	@Override
+	public int hashCode() {
+		int h = hash;
+		if (h == 0) {
+			h = Objects.hash(lattice, definitions == null ? null : definitions.toMap());
+			hash = h;
+		}
+		return h;
+	}
+
+	@Override
+	public boolean equals(
+			Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		SparseEnvironment<?> other = (SparseEnvironment<?>) obj;
+		if (!Objects.equals(lattice, other.lattice))
+			return false;
+		if (definitions == null || other.definitions == null)
+			return definitions == other.definitions;
+		@SuppressWarnings("unchecked")
+		Set<Identifier> ids = diverging((SparseEnvironment<T>) other);
+		if (ids == null)
+			return definitions.toMap().equals(other.definitions.toMap());
+		for (Identifier id : ids)
+			if (!Objects.equals(definitions.get(id), other.definitions.get(id)))
+				return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return toEnvironment().toString();
+	}
+
+	// a link in a chain of definitions, or the base of the chain when it has no parent
+	private static final class Definitions<T> {
+
+		private final Definitions<T> parent;
+
+		private final int length;
+
+		// for bases only
+		private final Map<Identifier, T> base;
+
+		// for links only: the value is null if the variable has been forgotten
+		private final Identifier id;
+
+		private final T value;
+
+		private Definitions(
+				Definitions<T> parent,
+				Map<Identifier, T> base,
+				Identifier id,
+				T value) {
+			this.parent = parent;
+			this.length = parent == null ? 0 : parent.length + 1;
+			this.base = base;
+			this.id = id;
+			this.value = value;
+		}
+
+		private static <T> Definitions<T> base(
+				Map<Identifier, T> function) {
+			return new Definitions<>(null, function, null, null);
+		}
+
+		private Definitions<T> define(
+				Identifier id,
+				T value) {
+			if (length < CHAIN_LIMIT)
+				return new Definitions<>(this, null, id, value);
+			Map<Identifier, T> function = toMap();
+			if (value == null)
+				function.remove(id);
+			else
+				function.put(id, value);
+			return base(function);
+		}
+
+		private T get(
+				Identifier id) {
+			Definitions<T> current = this;
+			for (; current.parent != null; current = current.parent)
+				if (current.id.equals(id))
+					return current.value;
+			return current.base.get(id);
+		}
+
+		// yields a fresh map with all the definitions of the chain
+		private Map<Identifier, T> toMap() {
+			List<Definitions<T>> links = new ArrayList<>(length);
+			Definitions<T> current = this;
+			for (; current.parent != null; current = current.parent)
+				links.add(current);
+			Map<Identifier, T> function = new HashMap<>(current.base);
+			for (int i = links.size() - 1; i >= 0; i--) {
+				Definitions<T> link = links.get(i);
+				if (link.value == null)
+					function.remove(link.id);
+				else
+					function.put(link.id, link.value);
+			}
+			return function;
+		}
+	}
+}
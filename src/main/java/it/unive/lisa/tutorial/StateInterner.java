@@ -0,0 +1,243 @@
+package it.unive.lisa.tutorial;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+/**
+ * A concurrent table of canonical instances: {@link #intern(Object)} yields, among all the objects equal to the given
+ * one that are interned and still reachable, always the same instance. The table only holds weak references, so that
+ * instances no longer used elsewhere are reclaimed by the garbage collector, and their entries are removed at the
+ * following calls.<br>
+ * <br>
+ * Objects are looked up through a structural hash provided at construction, that should be cached by the objects
+ * themselves when it is expensive to compute. A table built by {@link #numbered()} also gives each canonical instance
+ * a number, unique in the table and never reused, that can be mapped back to the instance while it is reachable.
+ *
+ * @param <T> the type of the interned objects
+ */
+public final class StateInterner<T> {
+
+	private final ConcurrentMap<Key, Entry<T>> table = new ConcurrentHashMap<>();
+
+	private final ReferenceQueue<T> queue = new ReferenceQueue<>();
+
+	private final ToIntFunction<? super T> hash;
+
+	// the canonical instances by number, only for numbered tables
+	private final ConcurrentMap<Integer, Entry<T>> numbers;
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	/**
+	 * Builds an empty table that hashes objects with their {@link Object#hashCode()}.
+	 */
+	public StateInterner() {
+		this(Object::hashCode);
+	}
+
+	/**
+	 * Builds an empty table.
+	 *
+	 * @param hash the structural hash of the interned objects, consistent with their {@link Object#equals(Object)}
+	 */
+	public StateInterner(
+			ToIntFunction<? super T> hash) {
+		this(hash, false);
+	}
+
+	private StateInterner(
+			ToIntFunction<? super T> hash,
+			boolean numbered) {
+		this.hash = hash;
+		this.numbers = numbered ? new ConcurrentHashMap<>() : null;
+	}
+
+	/**
+	 * Builds an empty table that hashes objects with their {@link Object#hashCode()} and numbers its canonical
+	 * instances.
+	 *
+	 * @param <T> the type of the interned objects
+	 *
+	 * @return the table
+	 */
+	public static <T> StateInterner<T> numbered() {
+		return new StateInterner<>(Object::hashCode, true);
+	}
+
+	/**
+	 * Yields the canonical instance equal to the given object, that is the object itself if no equal object is in the
+	 * table.
+	 *
+	 * @param object the object
+	 *
+	 * @return the canonical instance
+	 */
+	public T intern(
+			T object) {
+		expunge();
+		Lookup probe = new Lookup(object, hash.applyAsInt(object));
+		while (true) {
+			Entry<T> entry = table.get(probe);
+			if (entry != null) {
+				T canonical = entry.get();
+				if (canonical != null)
+					return canonical;
+				// the canonical instance has just been collected
+				table.remove(entry, entry);
+				continue;
+			}
+
+			Entry<T> created = new Entry<>(object, probe.hash, numbers == null ? -1 : next.getAndIncrement(), queue);
+			// the number is published before the entry, so that whoever finds the entry can also resolve its number
+			if (numbers != null)
+				numbers.put(created.number, created);
+			if (table.putIfAbsent(created, created) == null)
+				return object;
+			if (numbers != null)
+				numbers.remove(created.number, created);
+		}
+	}
+
+	/**
+	 * Yields the number of the canonical instance equal to the given object, in a table built by {@link #numbered()}.
+	 * While the canonical instance is reachable, its number does not change.
+	 *
+	 * @param object the object
+	 *
+	 * @return the number, or {@code -1} if no equal object is in the table
+	 */
+	public int number(
+			T object) {
+		Entry<T> entry = table.get(new Lookup(object, hash.applyAsInt(object)));
+		return entry == null || entry.get() == null ? -1 : entry.number;
+	}
+
+	/**
+	 * Yields the canonical instance with the given number, in a table built by {@link #numbered()}.
+	 *
+	 * @param number the number, as returned by {@link #number(Object)}
+	 *
+	 * @return the canonical instance, or {@code null} if it has been collected
+	 */
+	public T get(
+			int number) {
+		Entry<T> entry = numbers.get(number);
+		return entry == null ? null : entry.get();
+	}
+
+	/**
+	 * Yields the number of canonical instances in the table, including the ones that have been collected but whose
+	 * entries have not been removed yet.
+	 *
+	 * @return the number of instances
+	 */
+	public int size() {
+		expunge();
+		return table.size();
+	}
+
+	private void expunge() {
+		Reference<? extends T> stale;
+		while ((stale = queue.poll()) != null) {
+			Entry<?> entry = (Entry<?>) stale;
+			table.remove(entry, entry);
+			if (numbers != null)
+				numbers.remove(entry.number, entry);
+		}
+	}
+
+	// the keys of the table: entries, weakly referencing the canonical instances, and lookups, strongly
+	// referencing the object to intern. Two keys are equal if they refer to equal objects
+	private interface Key {
+
+		Object referent();
+	}
+
+	private static boolean equal(
+			Key key,
+			int hash,
+			Object other) {
+		if (key == other)
+			return true;
+		if (!(other instanceof Key) || other.hashCode() != hash)
+			return false;
+		Object mine = key.referent();
+		// cleared entries are only equal to themselves, so that they can be removed
+		return mine != null && mine.equals(((Key) other).referent());
+	}
+
+	private static final class Entry<T>
+			extends
+			WeakReference<T>
+			implements
+			Key {
+
+		private final int hash;
+
+		// -1 in tables that are not numbered
+		private final int number;
+
+		private Entry(
+				T referent,
+				int hash,
+				int number,
+				ReferenceQueue<T> queue) {
+			super(referent, queue);
+			this.hash = hash;
+			this.number = number;
+		}
+
+		@Override
+		public Object referent() {
+			return get();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(
+				Object obj) {
+			return equal(this, hash, obj);
+		}
+	}
+
+	private static final class Lookup
+			implements
+			Key {
+
+		private final Object referent;
+
+		private final int hash;
+
+		private Lookup(
+				Object referent,
+				int hash) {
+			this.referent = referent;
+			this.hash = hash;
+		}
+
+		@Override
+		public Object referent() {
+			return referent;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(
+				Object obj) {
+			return equal(this, hash, obj);
+		}
+	}
+}
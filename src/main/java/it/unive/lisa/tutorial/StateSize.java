@@ -0,0 +1,227 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.analysis.SimpleAbstractState;
+import it.unive.lisa.analysis.combination.CartesianProduct;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
+import it.unive.lisa.symbolic.value.Identifier;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * An estimate of the size of an abstract state, as the number of identifiers it talks about, the number of bounds of
+ * its {@link StrictUpperBounds}, the number and the largest size of its equality classes and the approximate number of
+ * bytes it holds. The bytes assume compressed references, and do not count the identifiers nor the lattice constants
+ * (such as {@link Interval#TOP}) since they are shared by all the states; states can share parts with each other too
+ * (e.g., the rows of the upper bounds that an assignment does not change), so the sum of the bytes of many states
+ * overestimates their retained size.<br>
+ * <br>
+ * The states that can be measured are the value states of {@link SimpleAbstractState}s made of the domains of this
+ * package, {@link ValueEnvironment}s, {@link PackedDomain}s, {@link CartesianProduct}s and {@link LazyProduct}s of them,
+ * possibly wrapped in a {@link ProfilingValueDomain}, a {@link TracingValueDomain} or an {@link InterningValueDomain}.
+ * Other states have size zero. Measuring a {@link Pentagons} state computes the upper bounds that its join left
+ * pending, so states should be measured once the analysis is over, as {@link StateSizeReport} does.
+ */
+public final class StateSize {
+
+	/**
+	 * The size of a state that holds nothing.
+	 */
+	public static final StateSize ZERO = new StateSize(0, 0, 0, 0, 0);
+
+	// rough costs, in bytes, of the building blocks of the states
+	private static final long MAP = 48;
+
+	private static final long MAP_ENTRY = 40;
+
+	private static final long INTERVAL = 160;
+
+	private static final long SMALL_VALUE = 24;
+
+	private final int identifiers;
+
+	private final int bounds;
+
+	private final int classes;
+
+	private final int largestClass;
+
+	private final long bytes;
+
+	private StateSize(
+			int identifiers,
+			int bounds,
+			int classes,
+			int largestClass,
+			long bytes) {
+		this.identifiers = identifiers;
+		this.bounds = bounds;
+		this.classes = classes;
+		this.largestClass = largestClass;
+		this.bytes = bytes;
+	}
+
+	/**
+	 * Yields the number of identifiers the state holds information about. Identifiers known by more than one
+	 * component of a product are counted once for each component.
+	 *
+	 * @return the number of identifiers
+	 */
+	public int getIdentifiers() {
+		return identifiers;
+	}
+
+	/**
+	 * Yields the number of pairs {@code x < y} in the {@link StrictUpperBounds} of the state.
+	 *
+	 * @return the number of bounds
+	 */
+	public int getBounds() {
+		return bounds;
+	}
+
+	/**
+	 * Yields the number of equality classes of the {@link EqualityDomain} of the state.
+	 *
+	 * @return the number of classes
+	 */
+	public int getClasses() {
+		return classes;
+	}
+
+	/**
+	 * Yields the number of identifiers in the largest equality class of the state.
+	 *
+	 * @return the size of the largest class
+	 */
+	public int getLargestClass() {
+		return largestClass;
+	}
+
+	/**
+	 * Yields the approximate number of bytes held by the state.
+	 *
+	 * @return the number of bytes
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Yields the size of the combination of this state and the given one, e.g. the components of a product or the
+	 * states of the same program point in different contexts.
+	 *
+	 * @param other the other size
+	 *
+	 * @return the combined size
+	 */
+	public StateSize plus(
+			StateSize other) {
+		return new StateSize(identifiers + other.identifiers, bounds + other.bounds, classes + other.classes,
+				Math.max(largestClass, other.largestClass), bytes + other.bytes);
+	}
+
+	/**
+	 * Estimates the size of the given state.
+	 *
+	 * @param state the state, either a whole abstract state or a value state
+	 *
+	 * @return the size of the state
+	 */
+	public static StateSize of(
+			Object state) {
+		if (state instanceof SimpleAbstractState)
+			return of(((SimpleAbstractState<?, ?, ?>) state).getValueState());
+		if (state instanceof ProfilingValueDomain)
+			return of(((ProfilingValueDomain<?>) state).getDomain());
+		if (state instanceof TracingValueDomain)
+			return of(((TracingValueDomain<?>) state).getDomain());
+		if (state instanceof InterningValueDomain)
+			return of(((InterningValueDomain<?>) state).getDomain());
+		if (state instanceof ValueEnvironment)
+			return environment((ValueEnvironment<?>) state);
+		if (state instanceof StrictUpperBounds)
+			return upperBounds((StrictUpperBounds) state);
+		if (state instanceof EqualityDomain)
+			return equalities((EqualityDomain) state);
+		if (state instanceof Pentagons) {
+			Pentagons pentagons = (Pentagons) state;
+			// the bounds of a pending join are forced, otherwise the state would look empty
+			StateSize size = environment(pentagons.intervals());
+			return new StateSize(0, 0, 0, 0, 24).plus(size).plus(upperBounds(pentagons.bounds()));
+		}
+		if (state instanceof PackedDomain) {
+			PackedDomain<?> packed = (PackedDomain<?>) state;
+			StateSize size = new StateSize(0, 0, 0, 0, 32 + MAP).plus(environment(packed.intervals()));
+			for (Object pack : packed.relational().values())
+				size = size.plus(new StateSize(0, 0, 0, 0, MAP_ENTRY)).plus(of(pack));
+			return size;
+		}
+		if (state instanceof CartesianProduct) {
+			CartesianProduct<?, ?, ?, ?, ?> product = (CartesianProduct<?, ?, ?, ?, ?>) state;
+			return new StateSize(0, 0, 0, 0, 24).plus(of(product.left)).plus(of(product.right));
+		}
+		if (state instanceof LazyProduct) {
+			LazyProduct product = (LazyProduct) state;
+			StateSize size = new StateSize(0, 0, 0, 0, 32 + 4L * product.getComponentCount());
+			for (int i = 0; i < product.getComponentCount(); i++)
+				size = size.plus(of(product.getComponent(i)));
+			return size;
+		}
+		return ZERO;
+	}
+
+	private static StateSize environment(
+			ValueEnvironment<?> env) {
+		if (env.isTop() || env.isBottom())
+			return ZERO;
+		long bytes = 24 + MAP;
+		int identifiers = 0;
+		for (Map.Entry<Identifier, ?> entry : env) {
+			identifiers++;
+			bytes += MAP_ENTRY + value(entry.getValue());
+		}
+		return new StateSize(identifiers, 0, 0, 0, bytes);
+	}
+
+	private static long value(
+			Object value) {
+		if (value == Interval.TOP || value == Interval.BOTTOM || value == Interval.ZERO
+				|| value == CongruenceDomain.TOP || value == CongruenceDomain.BOTTOM)
+			return 0;
+		// an interval holds its bounds as numbers, the other values only hold a few primitive fields
+		return value instanceof Interval ? INTERVAL : SMALL_VALUE;
+	}
+
+	private static StateSize upperBounds(
+			StrictUpperBounds bounds) {
+		int identifiers = bounds.getKeys().size();
+		for (Identifier id : bounds.getBoundKeys())
+			if (!bounds.getKeys().contains(id))
+				identifiers++;
+		return new StateSize(identifiers, bounds.size(), 0, 0, bounds.bytes());
+	}
+
+	private static StateSize equalities(
+			EqualityDomain equalities) {
+		if (equalities.isBottom())
+			return ZERO;
+		Collection<? extends Collection<Identifier>> classes = equalities.classes();
+		int identifiers = 0;
+		int largest = 0;
+		// the object, the outer set and a set for each class, whose members cost about as a map entry
+		long bytes = 24 + MAP;
+		for (Collection<Identifier> members : classes) {
+			identifiers += members.size();
+			largest = Math.max(largest, members.size());
+			bytes += MAP_ENTRY + 16 + MAP + MAP_ENTRY * members.size();
+		}
+		return new StateSize(identifiers, 0, classes.size(), largest, bytes);
+	}
+
+	@Override
+	public String toString() {
+		return identifiers + " identifiers, " + bounds + " bounds, " + classes + " classes (largest: " + largestClass
+				+ "), ~" + bytes + " bytes";
+	}
+}
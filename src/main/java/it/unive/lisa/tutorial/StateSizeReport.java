@@ -0,0 +1,195 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.analysis.AbstractState;
+import it.unive.lisa.analysis.AnalyzedCFG;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.checks.semantic.CheckToolWithAnalysisResults;
+import it.unive.lisa.checks.semantic.SemanticCheck;
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.statement.Statement;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A semantic check that estimates, through {@link StateSize}, the size of the post-state of every statement, and
+ * writes the heaviest statements of each CFG in {@link #REPORT_FILE}. The size of a statement is the sum of the sizes
+ * of its post-states in all the contexts it has been analyzed in. CFGs are sorted by the total size of their states,
+ * so that the first ones are those where packing, forgetting variables or cheaper domains would save the most
+ * memory.<br>
+ * <br>
+ * The report has the form
+ * {@code {"cfgs": [{"cfg": ..., "statements": ..., "bytes": ..., "heaviest": [{"statement": ..., "location": ...,
+ * "contexts": ..., "identifiers": ..., "bounds": ..., "classes": ..., "largestClass": ..., "bytes": ...}, ...]}, ...]}}.
+ *
+ * @param <A> the type of abstract state used by the analysis
+ */
+public class StateSizeReport<A extends AbstractState<A>>
+		implements
+		SemanticCheck<A> {
+
+	/**
+	 * The name of the file, inside the working directory, containing the report.
+	 */
+	public static final String REPORT_FILE = "state-sizes.json";
+
+	private final int top;
+
+	private final List<CfgSizes> cfgs = new ArrayList<>();
+
+	/**
+	 * Builds the check, reporting the 10 heaviest statements of each CFG.
+	 */
+	public StateSizeReport() {
+		this(10);
+	}
+
+	/**
+	 * Builds the check.
+	 *
+	 * @param top the number of statements to report for each CFG
+	 */
+	public StateSizeReport(
+			int top) {
+		this.top = top;
+	}
+
+	// This method is called once for each analyzed CFG, before its statements
+	@Override
+	public boolean visit(
+			CheckToolWithAnalysisResults<A> tool,
+			CFG graph) {
+		try {
+			List<PointSize> points = new ArrayList<>();
+			long total = 0;
+			for (Statement node : graph.getNodes()) {
+				StateSize size = StateSize.ZERO;
+				int contexts = 0;
+				for (AnalyzedCFG<A> result : tool.getResultOf(graph)) {
+					size = size.plus(StateSize.of(result.getAnalysisStateAfter(node).getState()));
+					contexts++;
+				}
+				points.add(new PointSize(node, contexts, size));
+				total += size.getBytes();
+			}
+
+			points.sort(Comparator.comparingLong((PointSize point) -> point.size.getBytes()).reversed()
+					.thenComparing(point -> point.node.getLocation()));
+			cfgs.add(new CfgSizes(graph, points.size(), total,
+					new ArrayList<>(points.subList(0, Math.min(top, points.size())))));
+		} catch (SemanticException e) {
+			System.err.println("Cannot measure the states of " + graph);
+			e.printStackTrace(System.err);
+		}
+		// statements are already measured here
+		return false;
+	}
+
+	@Override
+	public void afterExecution(
+			CheckToolWithAnalysisResults<A> tool) {
+		cfgs.sort(Comparator.comparingLong((CfgSizes cfg) -> cfg.bytes).reversed()
+				.thenComparing(cfg -> cfg.cfg.getDescriptor().getFullSignature()));
+		Path file = Paths.get(tool.getFileManager().getWorkdir(), REPORT_FILE);
+		try {
+			Files.createDirectories(file.getParent());
+			try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+				write(writer);
+			}
+		} catch (IOException e) {
+			System.err.println("Cannot write the report in " + file);
+			e.printStackTrace(System.err);
+		}
+	}
+
+	private void write(
+			Writer writer)
+			throws IOException {
+		writer.write("{\"cfgs\": [");
+		for (int i = 0; i < cfgs.size(); i++) {
+			CfgSizes cfg = cfgs.get(i);
+			writer.write(i == 0 ? "\n" : ",\n");
+			writer.write("  {\"cfg\": \"" + BatchAnalysis.escape(cfg.cfg.getDescriptor().getFullSignature())
+					+ "\", \"statements\": " + cfg.statements + ", \"bytes\": " + cfg.bytes + ", \"heaviest\": [");
+			for (int j = 0; j < cfg.heaviest.size(); j++) {
+				PointSize point = cfg.heaviest.get(j);
+				writer.write(j == 0 ? "\n" : ",\n");
+				writer.write("    {\"statement\": \"" + BatchAnalysis.escape(point.node.toString())
+						+ "\", \"location\": \"" + BatchAnalysis.escape(String.valueOf(point.node.getLocation()))
+						+ "\", \"contexts\": " + point.contexts
+						+ ", \"identifiers\": " + point.size.getIdentifiers()
+						+ ", \"bounds\": " + point.size.getBounds()
+						+ ", \"classes\": " + point.size.getClasses()
+						+ ", \"largestClass\": " + point.size.getLargestClass()
+						+ ", \"bytes\": " + point.size.getBytes() + "}");
+			}
+			writer.write(cfg.heaviest.isEmpty() ? "]}" : "\n  ]}");
+		}
+		writer.write(cfgs.isEmpty() ? "]}\n" : "\n]}\n");
+	}
+
+	/**
+	 * Yields a textual summary of the heaviest statements found so far.
+	 *
+	 * @return the summary
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (CfgSizes cfg : cfgs) {
+			builder.append(cfg.cfg.getDescriptor().getFullSignature()).append(": ~").append(cfg.bytes)
+					.append(" bytes over ").append(cfg.statements).append(" statements\n");
+			for (PointSize point : cfg.heaviest)
+				builder.append("  ").append(point.node.getLocation()).append(" ").append(point.node).append(": ")
+						.append(point.size).append("\n");
+		}
+		return builder.toString();
+	}
+
+	private static final class PointSize {
+
+		private final Statement node;
+
+		private final int contexts;
+
+		private final StateSize size;
+
+		private PointSize(
+				Statement node,
+				int contexts,
+				StateSize size) {
+			this.node = node;
+			this.contexts = contexts;
+			this.size = size;
+		}
+	}
+
+	private static final class CfgSizes {
+
+		private final CFG cfg;
+
+		private final int statements;
+
+		private final long bytes;
+
+		private final List<PointSize> heaviest;
+
+		private CfgSizes(
+				CFG cfg,
+				int statements,
+				long bytes,
+				List<PointSize> heaviest) {
+			this.cfg = cfg;
+			this.statements = statements;
+			this.bytes = bytes;
+			this.heaviest = heaviest;
+		}
+	}
+}
@@ -1,11 +1,11 @@
 package it.unive.lisa.tutorial;
 
+import it.unive.lisa.analysis.BaseLattice;
+import it.unive.lisa.analysis.Lattice;
+import it.unive.lisa.analysis.ScopeToken;
 import it.unive.lisa.analysis.SemanticException;
 import it.unive.lisa.analysis.SemanticOracle;
-import it.unive.lisa.analysis.lattices.InverseSetLattice;
 import it.unive.lisa.analysis.lattices.Satisfiability;
-import it.unive.lisa.analysis.nonrelational.Environment;
-import it.unive.lisa.analysis.nonrelational.NonRelationalDomain;
 import it.unive.lisa.analysis.value.ValueDomain;
 import it.unive.lisa.program.cfg.ProgramPoint;
 import it.unive.lisa.symbolic.SymbolicExpression;
@@ -15,8 +15,14 @@ import it.unive.lisa.symbolic.value.Identifier;
 import it.unive.lisa.symbolic.value.ValueExpression;
 import it.unive.lisa.symbolic.value.operator.SubtractionOperator;
 import it.unive.lisa.symbolic.value.operator.binary.*;
+import it.unive.lisa.util.representation.MapRepresentation;
+import it.unive.lisa.util.representation.StringRepresentation;
+import it.unive.lisa.util.representation.StructuredRepresentation;
 
 import java.util.*;
+import java.util.Map.Entry;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
 
 /**
  * Relational implementation of the upper bounds analysis of https://doi.org/10.1016/j.scico.2009.04.004
@@ -25,38 +31,246 @@ public class StrictUpperBounds
 		// instances of this class are lattice elements such that:
 		// - their state (fields) hold the information for all variables
 		// - they provide logic for the evaluation of statements, traversing conditions, ...
-		extends
-		// we reuse the value environment to simplify our implementation, but to do this we
-		// have to make IdSet an NRVD even if we do not need it
-		Environment<StrictUpperBounds, ValueExpression, StrictUpperBounds.IdSet>
-		// we make explicit that this is a value domain
-		implements ValueDomain<StrictUpperBounds> {
+		implements ValueDomain<StrictUpperBounds>,
+		// we exploit BaseLattice to avoid writing common-sense logic
+		BaseLattice<StrictUpperBounds> {
+
+	private static final StrictUpperBounds TOP = new StrictUpperBounds(Collections.emptyMap(), Collections.emptyMap(), false);
+
+	private static final StrictUpperBounds BOTTOM = new StrictUpperBounds(Collections.emptyMap(), Collections.emptyMap(), true);
+
+	// the state is a bit matrix: row x holds the bitset of the strict upper bounds of x,
+	// over the indexes of the interned identifiers. Rows without bounds are not stored
+	private final Map<Identifier, IdSet> rows;
+
+	// reverse index of the matrix: column y holds the bitset of the variables bounded by y.
+	// It is kept in sync with the rows so that reassigning or forgetting a variable only
+	// touches the rows where it actually appears. Empty columns are not stored
+	private final Map<Identifier, IdSet> columns;
+
+	private final boolean bottom;
 
 	public StrictUpperBounds() {
-		super(new IdSet(Collections.emptySet()).top());
+		this(Collections.emptyMap(), Collections.emptyMap(), false);
 	}
 
-	public StrictUpperBounds(
-			IdSet lattice,
-			Map<Identifier, IdSet> function) {
-		super(lattice, function);
+	private StrictUpperBounds(
+			Map<Identifier, IdSet> rows,
+			Map<Identifier, IdSet> columns,
+			boolean bottom) {
+		this.rows = rows;
+		this.columns = columns;
+		this.bottom = bottom;
 	}
 
-	@Override
-	public StrictUpperBounds mk(
-			IdSet lattice,
-			Map<Identifier, IdSet> function) {
-		return new StrictUpperBounds(lattice, function);
+	// used by the operations that rebuild the whole matrix anyway: the columns are recomputed
+	private StrictUpperBounds(
+			Map<Identifier, IdSet> rows) {
+		this(rows, transpose(rows), false);
 	}
 
 	@Override
 	public StrictUpperBounds top() {
-		return new StrictUpperBounds(lattice.top(), null);
+		return TOP;
+	}
+
+	@Override
+	public boolean isTop() {
+		return !bottom && rows.isEmpty();
 	}
 
 	@Override
 	public StrictUpperBounds bottom() {
-		return new StrictUpperBounds(lattice.bottom(), null);
+		return BOTTOM;
+	}
+
+	@Override
+	public boolean isBottom() {
+		return bottom;
+	}
+
+	/**
+	 * Yields the variables that have at least one strict upper bound.
+	 *
+	 * @return the variables
+	 */
+	public Set<Identifier> getKeys() {
+		return Collections.unmodifiableSet(rows.keySet());
+	}
+
+	/**
+	 * Yields the variables that are a strict upper bound of at least one variable.
+	 *
+	 * @return the variables
+	 */
+	public Set<Identifier> getBoundKeys() {
+		return Collections.unmodifiableSet(columns.keySet());
+	}
+
+	/**
+	 * Yields the number of bounds in this state, that is, the number of pairs {@code x < y} it holds.
+	 *
+	 * @return the number of bounds
+	 */
+	int size() {
+		int size = 0;
+		for (IdSet row : rows.values())
+			size += row.size();
+		return size;
+	}
+
+	/**
+	 * Yields an estimate of the bytes of memory held by this state, assuming compressed references and not counting
+	 * the identifiers, that are shared among all the states.
+	 *
+	 * @return the estimated size in bytes
+	 */
+	long bytes() {
+		if (this == TOP || this == BOTTOM)
+			return 0;
+		// the object, and two hash maps whose entries cost about 40 bytes each (node and table slot)
+		long bytes = 24 + 2 * 48 + 40L * (rows.size() + columns.size());
+		for (IdSet row : rows.values())
+			bytes += row.bytes();
+		for (IdSet column : columns.values())
+			bytes += column.bytes();
+		return bytes;
+	}
+
+	/**
+	 * Yields the strict upper bounds of the given variable.
+	 *
+	 * @param id the variable
+	 *
+	 * @return the upper bounds of {@code id}
+	 */
+	public IdSet getState(
+			Identifier id) {
+		if (bottom)
+			return IdSet.BOTTOM;
+		return rows.getOrDefault(id, IdSet.TOP);
+	}
+
+	/**
+	 * Yields the variables that have the given variable among their strict upper bounds, that is, the column of
+	 * {@code id} in the matrix. This is a lookup on the reverse index.
+	 *
+	 * @param id the variable
+	 *
+	 * @return the variables bounded by {@code id}
+	 */
+	public IdSet getBounded(
+			Identifier id) {
+		if (bottom)
+			return IdSet.BOTTOM;
+		return columns.getOrDefault(id, IdSet.TOP);
+	}
+
+	/**
+	 * Yields a copy of this state where the strict upper bounds of the given variable are replaced.
+	 *
+	 * @param id     the variable
+	 * @param bounds the new upper bounds of {@code id}
+	 *
+	 * @return the updated state
+	 */
+	public StrictUpperBounds putState(
+			Identifier id,
+			IdSet bounds) {
+		if (bottom)
+			return this;
+		if (bounds.isBottom())
+			// a variable below every other one cannot exist
+			return bottom();
+
+		IdSet old = getState(id);
+		if (old.equals(bounds))
+			return this;
+
+		// keys are canonical identifiers, so that the index of id stays assigned while this state is alive
+		Identifier key = IdentifierIndex.canonical(id);
+		Map<Identifier, IdSet> newRows = new HashMap<>(rows);
+		if (bounds.isTop())
+			newRows.remove(key);
+		else
+			newRows.put(key, bounds);
+
+		// only the columns of the bounds that changed are updated
+		Map<Identifier, IdSet> newColumns = new HashMap<>(columns);
+		int index = IdentifierIndex.intern(key);
+		old.forEachIndex(bound -> {
+			if (!bounds.contains(bound))
+				unlink(newColumns, IdentifierIndex.get(bound), index);
+		});
+		bounds.forEachIndex(bound -> {
+			if (!old.contains(bound))
+				link(newColumns, IdentifierIndex.get(bound), key);
+		});
+		return new StrictUpperBounds(newRows, newColumns, false);
+	}
+
+	/**
+	 * Yields a builder initialized with the bounds of this state, that can be used to add many bounds at once without
+	 * copying the whole state at each step.
+	 *
+	 * @return the builder
+	 */
+	public Builder builder() {
+		return new Builder(this);
+	}
+
+	@Override
+	public boolean lessOrEqualAux(
+			StrictUpperBounds other)
+			throws SemanticException {
+		// every bound of other must be a bound here too
+		for (Entry<Identifier, IdSet> entry : other.rows.entrySet())
+			if (!getState(entry.getKey()).containsAll(entry.getValue()))
+				return false;
+		return true;
+	}
+
+	@Override
+	public StrictUpperBounds lubAux(
+			StrictUpperBounds other) {
+		// row-wise intersection: missing rows have no bounds, so only common rows survive
+		Map<Identifier, IdSet> result = new HashMap<>();
+		for (Entry<Identifier, IdSet> entry : rows.entrySet()) {
+			IdSet otherRow = other.rows.get(entry.getKey());
+			if (otherRow == null)
+				continue;
+			IdSet row = entry.getValue().and(otherRow);
+			if (!row.isTop())
+				result.put(entry.getKey(), row);
+		}
+		return new StrictUpperBounds(result);
+	}
+
+	@Override
+	public StrictUpperBounds glbAux(
+			StrictUpperBounds other)
+			throws SemanticException {
+		// row-wise union
+		Map<Identifier, IdSet> result = new HashMap<>(rows);
+		for (Entry<Identifier, IdSet> entry : other.rows.entrySet())
+			result.merge(entry.getKey(), entry.getValue(), IdSet::or);
+		return new StrictUpperBounds(result);
+	}
+
+	@Override
+	public StrictUpperBounds wideningAux(
+			StrictUpperBounds other)
+			throws SemanticException {
+		// widening as provided in the paper, applied row by row:
+		// rows that lost some bound are dropped, as well as rows that this state does not have
+		// (they have no bounds here, so keeping the bounds of other would not be an upper bound)
+		Map<Identifier, IdSet> result = new HashMap<>();
+		for (Entry<Identifier, IdSet> entry : other.rows.entrySet()) {
+			IdSet row = rows.get(entry.getKey());
+			if (row != null && entry.getValue().containsAll(row))
+				result.put(entry.getKey(), entry.getValue());
+		}
+		return new StrictUpperBounds(result);
 	}
 
 	@Override
@@ -65,18 +279,12 @@ public class StrictUpperBounds
 			ValueExpression expression,
 			ProgramPoint pp,
 			SemanticOracle oracle) throws SemanticException {
-		// cleanup: if a variable is reassigned, it can no longer be an upperbound of other variables
-		Map<Identifier, IdSet> cleanup = new HashMap<>();
-		for (Map.Entry<Identifier, IdSet> entry : this) {
-			if (entry.getKey().equals(id))
-				continue;
-			if (!entry.getValue().contains(id))
-				cleanup.put(entry.getKey(), entry.getValue());
+		if (bottom)
+			return this;
 
-			Set<Identifier> copy = new HashSet<>(entry.getValue().elements);
-			copy.remove(id);
-			cleanup.put(entry.getKey(), new IdSet(copy));
-		}
+		// cleanup: if a variable is reassigned, it can no longer be an upperbound of other variables,
+		// and its previous bounds are lost: both its column and its row are cleared
+		StrictUpperBounds cleanup = forget(id);
 
 		if (expression instanceof BinaryExpression) {
 			BinaryExpression be = (BinaryExpression) expression;
@@ -87,12 +295,13 @@ public class StrictUpperBounds
 					&& be.getRight() instanceof Constant
 					&& !be.getLeft().equals(id)) {
 				// id = y - c (where 2 is the constant)
+				// the bounds of y are taken after the cleanup, as they might contain id
 				Identifier y = (Identifier) be.getLeft();
-				cleanup.put(id, getState(y).add(y));
+				return cleanup.putState(id, cleanup.getState(y).add(y));
 			}
 		}
 
-		return new StrictUpperBounds(lattice, cleanup);
+		return cleanup;
 	}
 
 	@Override
@@ -109,6 +318,8 @@ public class StrictUpperBounds
 			ValueExpression expression,
 			ProgramPoint pp,
 			SemanticOracle oracle) throws SemanticException {
+		if (isBottom())
+			return Satisfiability.BOTTOM;
 		if (!(expression instanceof BinaryExpression))
 			return Satisfiability.UNKNOWN;
 
@@ -124,17 +335,20 @@ public class StrictUpperBounds
 		Identifier x = (Identifier) left;
 		Identifier y = (Identifier) right;
 
-		if (operator instanceof ComparisonLt) {
-			return Satisfiability.fromBoolean(getState(x).contains(y));
-		} else if (operator instanceof ComparisonLe) {
+		// each check is a single bit test on the matrix
+		// the lack of a bound does not mean that the condition does not hold:
+		// we can only refute it if the opposite bound is known
+		if (operator instanceof ComparisonLt || operator instanceof ComparisonLe) {
 			if (getState(x).contains(y))
 				return Satisfiability.SATISFIED;
+			if (getState(y).contains(x))
+				return Satisfiability.NOT_SATISFIED;
 			return Satisfiability.UNKNOWN;
-		} else if (operator instanceof ComparisonGt) {
-			return Satisfiability.fromBoolean(getState(y).contains(x));
-		} else if (operator instanceof ComparisonGe) {
+		} else if (operator instanceof ComparisonGt || operator instanceof ComparisonGe) {
 			if (getState(y).contains(x))
 				return Satisfiability.SATISFIED;
+			if (getState(x).contains(y))
+				return Satisfiability.NOT_SATISFIED;
 			return Satisfiability.UNKNOWN;
 		}
 
@@ -162,25 +376,29 @@ public class StrictUpperBounds
 		Identifier x = (Identifier) left;
 		Identifier y = (Identifier) right;
 
+		// on top of the rules of the paper, the new bounds are propagated to every
+		// variable below the refined one, so that the matrix stays transitively closed
 		if (operator instanceof ComparisonLt) {
 			// [[x < y]](s) = s[x -> s(x) U s(y) U {y}]
-			IdSet s_x = getState(x);
 			IdSet s_y = getState(y);
-			IdSet y_singleton = new IdSet(Collections.singleton(y));
-			IdSet set = s_x.glb(s_y).glb(y_singleton);
-			return putState(x, set);
+			return strengthen(x, s_y.add(y));
 		} else if (operator instanceof ComparisonEq) {
 			// [[x == y]](s) = s[x,y -> s(x) U s(y)]
+			// moreover, whatever is below x is also below y, and vice versa
 			IdSet s_x = getState(x);
 			IdSet s_y = getState(y);
-			IdSet set = s_x.glb(s_y);
-			return putState(x, set).putState(y, set);
+			IdSet below_x = getBounded(x);
+			IdSet below_y = getBounded(y);
+			StrictUpperBounds result = strengthen(x, s_y).strengthen(y, s_x);
+			for (Identifier z : below_x)
+				result = result.strengthen(z, IdSet.of(y));
+			for (Identifier z : below_y)
+				result = result.strengthen(z, IdSet.of(x));
+			return result;
 		} else if (operator instanceof ComparisonLe) {
 			// [[x <= y]](s) = s[x -> s(x) U s(y)]
-			IdSet s_x = getState(x);
 			IdSet s_y = getState(y);
-			IdSet set = s_x.glb(s_y);
-			return putState(x, set);
+			return strengthen(x, s_y);
 		} else if (operator instanceof ComparisonGt) {
 			// x > y --> y < x
 			return assume(
@@ -210,117 +428,914 @@ public class StrictUpperBounds
 		return this;
 	}
 
-	public static class IdSet
+	@Override
+	public boolean knowsIdentifier(
+			Identifier id) {
+		return rows.containsKey(id) || columns.containsKey(id);
+	}
+
+	@Override
+	public StrictUpperBounds forgetIdentifier(
+			Identifier id)
+			throws SemanticException {
+		if (bottom)
+			return this;
+		// forgetting clears both the row and the column of the identifier
+		return forget(id);
+	}
+
+	@Override
+	public StrictUpperBounds forgetIdentifiersIf(
+			Predicate<Identifier> test)
+			throws SemanticException {
+		if (bottom)
+			return this;
+
+		// the test is evaluated once per distinct identifier
+		Map<Identifier, Boolean> tested = new HashMap<>();
+		Predicate<Identifier> cached = id -> tested.computeIfAbsent(id, test::test);
+
+		Map<Identifier, IdSet> result = new HashMap<>();
+		for (Entry<Identifier, IdSet> entry : rows.entrySet()) {
+			if (cached.test(entry.getKey()))
+				continue;
+			IdSet row = entry.getValue().removeIf(cached);
+			if (!row.isTop())
+				result.put(entry.getKey(), row);
+		}
+		return new StrictUpperBounds(result);
+	}
+
+	@Override
+	public StrictUpperBounds pushScope(
+			ScopeToken token)
+			throws SemanticException {
+		return lift(id -> (Identifier) id.pushScope(token));
+	}
+
+	@Override
+	public StrictUpperBounds popScope(
+			ScopeToken token)
+			throws SemanticException {
+		return lift(id -> (Identifier) id.popScope(token));
+	}
+
+	@Override
+	public StructuredRepresentation representation() {
+		if (isTop())
+			return Lattice.topRepresentation();
+		if (isBottom())
+			return Lattice.bottomRepresentation();
+		Map<StructuredRepresentation, StructuredRepresentation> mapping = new HashMap<>();
+		for (Entry<Identifier, IdSet> entry : rows.entrySet())
+			mapping.put(new StringRepresentation(entry.getKey()), entry.getValue().representation());
+		return new MapRepresentation(mapping);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(rows, bottom);
+	}
+
+	@Override
+	public boolean equals(
+			Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		StrictUpperBounds other = (StrictUpperBounds) obj;
+		return bottom == other.bottom && Objects.equals(rows, other.rows);
+	}
+
+	@Override
+	public String toString() {
+		return representation().toString();
+	}
+
+	// adds the given bounds to the row of x and to the rows of all the variables below x:
+	// if the matrix is closed and the added bounds are closed as well, the result is closed,
+	// and only the rows in the column of x are touched
+	private StrictUpperBounds strengthen(
+			Identifier x,
+			IdSet added) {
+		if (bottom)
+			return this;
+
+		IdSet row = getState(x).or(added);
+		if (row.contains(x))
+			// x < x cannot hold
+			return bottom();
+
+		Builder result = builder().addBounds(x, added);
+		for (Identifier z : getBounded(x)) {
+			if (row.contains(z))
+				// z < x and x < z cannot both hold
+				return bottom();
+			result.addBounds(z, row);
+		}
+		return result.build();
+	}
+
+	private StrictUpperBounds forget(
+			Identifier id) {
+		IdSet row = rows.get(id);
+		IdSet column = columns.get(id);
+		if (row == null && column == null)
+			return this;
+
+		// the reverse index tells exactly which rows mention id: all the others are shared
+		Map<Identifier, IdSet> newRows = new HashMap<>(rows);
+		Map<Identifier, IdSet> newColumns = new HashMap<>(columns);
+		newRows.remove(id);
+		newColumns.remove(id);
+		int index = IdentifierIndex.indexOf(id);
+		if (row != null)
+			row.forEachIndex(bound -> unlink(newColumns, IdentifierIndex.get(bound), index));
+		if (column != null)
+			column.forEachIndex(bounded -> unlink(newRows, IdentifierIndex.get(bounded), index));
+		return new StrictUpperBounds(newRows, newColumns, false);
+	}
+
+	// adds id to the set of key, creating it if needed
+	private static void link(
+			Map<Identifier, IdSet> sets,
+			Identifier key,
+			Identifier id) {
+		// a null key is an identifier that has been released, see IdentifierIndex
+		if (key != null)
+			sets.merge(key, IdSet.of(id), IdSet::or);
+	}
+
+	// removes the identifier with the given index from the set of key, dropping the set if it becomes empty
+	private static void unlink(
+			Map<Identifier, IdSet> sets,
+			Identifier key,
+			int index) {
+		IdSet set = key == null ? null : sets.get(key);
+		if (set == null)
+			return;
+		set = set.without(index);
+		if (set.isTop())
+			sets.remove(key);
+		else
+			sets.put(key, set);
+	}
+
+	private static Map<Identifier, IdSet> transpose(
+			Map<Identifier, IdSet> rows) {
+		Map<Identifier, List<Identifier>> bounded = new HashMap<>();
+		for (Entry<Identifier, IdSet> entry : rows.entrySet())
+			for (Identifier bound : entry.getValue())
+				bounded.computeIfAbsent(bound, k -> new ArrayList<>()).add(entry.getKey());
+
+		Map<Identifier, IdSet> columns = new HashMap<>(bounded.size());
+		for (Entry<Identifier, List<Identifier>> entry : bounded.entrySet())
+			columns.put(entry.getKey(), IdSet.of(entry.getValue()));
+		return columns;
+	}
+
+	private StrictUpperBounds lift(
+			Lifter lifter)
+			throws SemanticException {
+		if (bottom || rows.isEmpty())
+			return this;
+
+		Map<Identifier, Identifier> lifted = new HashMap<>();
+		for (Entry<Identifier, IdSet> entry : rows.entrySet()) {
+			lifted.put(entry.getKey(), lifter.lift(entry.getKey()));
+			for (Identifier bound : entry.getValue())
+				if (!lifted.containsKey(bound))
+					lifted.put(bound, lifter.lift(bound));
+		}
+
+		Map<Identifier, IdSet> result = new HashMap<>();
+		for (Entry<Identifier, IdSet> entry : rows.entrySet()) {
+			Identifier key = lifted.get(entry.getKey());
+			if (key == null)
+				continue;
+			key = IdentifierIndex.canonical(key);
+			List<Identifier> bounds = new ArrayList<>();
+			for (Identifier bound : entry.getValue())
+				if (lifted.get(bound) != null)
+					bounds.add(lifted.get(bound));
+			IdSet row = IdSet.of(bounds);
+			if (!row.isTop())
+				result.put(key, row);
+		}
+		return new StrictUpperBounds(result);
+	}
+
+	/**
+	 * A mutable view over a {@link StrictUpperBounds} instance, where bounds can only be added. Rows and columns
+	 * touched by the builder are kept as {@link IdSet.Builder}s and frozen only once, when {@link #build()} is
+	 * invoked, while all the others are shared with the original state.
+	 */
+	public static final class Builder {
+
+		private final StrictUpperBounds base;
+
+		private final Map<Identifier, IdSet.Builder> rows = new HashMap<>();
+
+		private final Map<Identifier, IdSet.Builder> columns = new HashMap<>();
+
+		private Builder(
+				StrictUpperBounds base) {
+			this.base = base;
+		}
+
+		/**
+		 * Yields whether or not {@code y} is currently a strict upper bound of {@code x}.
+		 *
+		 * @param x the bounded variable
+		 * @param y the bound
+		 *
+		 * @return {@code true} if {@code x < y} holds
+		 */
+		public boolean hasBound(
+				Identifier x,
+				Identifier y) {
+			IdSet.Builder row = rows.get(x);
+			return row != null ? row.contains(y) : base.getState(x).contains(y);
+		}
+
+		/**
+		 * Records that {@code y} is a strict upper bound of {@code x}.
+		 *
+		 * @param x the bounded variable
+		 * @param y the bound
+		 *
+		 * @return this builder
+		 */
+		public Builder addBound(
+				Identifier x,
+				Identifier y) {
+			if (base.bottom)
+				return this;
+			if (row(x).add(y))
+				column(y).add(x);
+			return this;
+		}
+
+		/**
+		 * Records that all the identifiers in {@code bounds} are strict upper bounds of {@code x}.
+		 *
+		 * @param x      the bounded variable
+		 * @param bounds the bounds
+		 *
+		 * @return this builder
+		 */
+		public Builder addBounds(
+				Identifier x,
+				IdSet bounds) {
+			for (Identifier y : bounds)
+				addBound(x, y);
+			return this;
+		}
+
+		/**
+		 * Records that {@code y} is a strict upper bound of {@code x}, together with the bounds it implies by
+		 * transitivity: {@code x} gets the bounds of {@code y}, and so do all the variables below {@code x}. If the
+		 * content of this builder is transitively closed, it still is afterwards.
+		 *
+		 * @param x the bounded variable
+		 * @param y the bound
+		 *
+		 * @return this builder
+		 */
+		public Builder addClosedBound(
+				Identifier x,
+				Identifier y) {
+			if (base.bottom || hasBound(x, y))
+				return this;
+			IdSet above = row(y).build();
+			IdSet below = column(x).build();
+			addBound(x, y).addBounds(x, above);
+			for (Identifier z : below)
+				addBound(z, y).addBounds(z, above);
+			return this;
+		}
+
+		/**
+		 * Freezes the current content of this builder into a new state. The builder can still be used afterwards.
+		 *
+		 * @return the state
+		 */
+		public StrictUpperBounds build() {
+			if (base.bottom || rows.isEmpty())
+				return base;
+
+			Map<Identifier, IdSet> newRows = new HashMap<>(base.rows);
+			for (Entry<Identifier, IdSet.Builder> entry : rows.entrySet())
+				newRows.put(entry.getKey(), entry.getValue().build());
+			Map<Identifier, IdSet> newColumns = new HashMap<>(base.columns);
+			for (Entry<Identifier, IdSet.Builder> entry : columns.entrySet())
+				newColumns.put(entry.getKey(), entry.getValue().build());
+			return new StrictUpperBounds(newRows, newColumns, false);
+		}
+
+		private IdSet.Builder row(
+				Identifier x) {
+			return rows.computeIfAbsent(IdentifierIndex.canonical(x), k -> base.getState(k).builder());
+		}
+
+		private IdSet.Builder column(
+				Identifier y) {
+			return columns.computeIfAbsent(IdentifierIndex.canonical(y), k -> base.getBounded(k).builder());
+		}
+	}
+
+	@FunctionalInterface
+	private interface Lifter {
+		Identifier lift(
+				Identifier id)
+				throws SemanticException;
+	}
+
+	public static final class IdSet
 			// instances of this class are lattice elements such that:
 			// - their state (fields) hold the information contained into a single
-			//   variable
-			extends
-			// the inverse set lattice is a lattice implementation provided by LiSA that uses:
-			// - sets of elements as the abstract information carried by each lattice instance
+			//   variable, that is, a row of the matrix
+			implements
+			// the lattice is the inverse set lattice:
+			// - sets of identifiers as the abstract information carried by each lattice instance
 			// - superset inclusion as partial order
 			// - set intersection as lub
 			// - set union as glb
 			// this makes it so the less information you have, the more you are close to the top element
-			InverseSetLattice<IdSet, Identifier>
-			// this is a hack: we do not need the NRVD structure here, but we use it to
-			// plug this class inside environments
-			implements NonRelationalDomain<IdSet, ValueExpression, StrictUpperBounds> {
+			BaseLattice<IdSet>,
+			Iterable<Identifier> {
+
+		private static final long[] NO_WORDS = new long[0];
+
+		/**
+		 * The top element, that is, the empty set of bounds.
+		 */
+		public static final IdSet TOP = new IdSet(0, NO_WORDS, null, true);
 
 		/**
-		 * Builds the lattice.
+		 * The bottom element, that is, the set of all identifiers.
+		 */
+		public static final IdSet BOTTOM = new IdSet(0, NO_WORDS, null, false);
+
+		// dense encoding: bit i of words[k] stands for the identifier with index (offset + k) * 64 + i,
+		// with offset being the first non-empty word (so that high indexes do not waste memory)
+		private final int offset;
+		private final long[] words;
+
+		// sparse fallback, used when there are only a few bounds spread over a wide range of indexes:
+		// the sorted indexes themselves. Exactly one of words and indexes is not null
+		private final int[] indexes;
+
+		// whether or not this is the top or bottom element of the lattice, valid only if the set is empty
+		private final boolean isTop;
+
+		private final int hash;
+
+		private IdSet(
+				int offset,
+				long[] words,
+				int[] indexes,
+				boolean isTop) {
+			this.offset = offset;
+			this.words = words;
+			this.indexes = indexes;
+			this.isTop = isTop;
+			this.hash = Objects.hash(offset, Arrays.hashCode(words), Arrays.hashCode(indexes), isTop);
+		}
+
+		/**
+		 * Builds the set containing the given identifiers.
 		 *
-		 * @param elements the elements that are contained in the lattice
+		 * @param ids the identifiers
+		 *
+		 * @return the set
 		 */
-		public IdSet(
-				Set<Identifier> elements) {
-			super(elements, elements.isEmpty());
+		public static IdSet of(
+				Identifier... ids) {
+			return of(Arrays.asList(ids));
 		}
 
 		/**
-		 * Builds the lattice.
+		 * Builds the set containing the given identifiers.
+		 *
+		 * @param ids the identifiers
 		 *
-		 * @param elements the elements that are contained in the lattice
-		 * @param isTop    whether or not this is the top or bottom element of the lattice, valid only if the set of
-		 *                 elements is empty
+		 * @return the set
 		 */
-		public IdSet(
-				Set<Identifier> elements,
-				boolean isTop) {
-			super(elements, isTop);
+		public static IdSet of(
+				Collection<Identifier> ids) {
+			int[] indexes = new int[ids.size()];
+			int n = 0;
+			for (Identifier id : ids)
+				indexes[n++] = IdentifierIndex.intern(id);
+			Arrays.sort(indexes);
+			return fromIndexes(indexes, n);
+		}
+
+		private static IdSet fromIndexes(
+				int[] sorted,
+				int length) {
+			// duplicates are removed in place
+			int n = 0;
+			for (int i = 0; i < length; i++)
+				if (n == 0 || sorted[n - 1] != sorted[i])
+					sorted[n++] = sorted[i];
+			if (n == 0)
+				return TOP;
+
+			int first = sorted[0] >>> 6;
+			int last = sorted[n - 1] >>> 6;
+			if (isSparse(n, last - first + 1))
+				return new IdSet(0, null, n == sorted.length ? sorted : Arrays.copyOf(sorted, n), false);
+
+			long[] words = new long[last - first + 1];
+			for (int i = 0; i < n; i++)
+				words[(sorted[i] >>> 6) - first] |= 1L << sorted[i];
+			return new IdSet(first, words, null, false);
+		}
+
+		private static IdSet fromWords(
+				long[] words,
+				int offset) {
+			int first = 0;
+			while (first < words.length && words[first] == 0)
+				first++;
+			if (first == words.length)
+				return TOP;
+			int last = words.length - 1;
+			while (words[last] == 0)
+				last--;
+
+			int cardinality = 0;
+			for (int k = first; k <= last; k++)
+				cardinality += Long.bitCount(words[k]);
+
+			if (!isSparse(cardinality, last - first + 1)) {
+				if (first == 0 && last == words.length - 1)
+					return new IdSet(offset, words, null, false);
+				return new IdSet(offset + first, Arrays.copyOfRange(words, first, last + 1), null, false);
+			}
+
+			int[] indexes = new int[cardinality];
+			int n = 0;
+			for (int k = first; k <= last; k++)
+				for (long bits = words[k]; bits != 0; bits &= bits - 1)
+					indexes[n++] = ((offset + k) << 6) + Long.numberOfTrailingZeros(bits);
+			return new IdSet(0, null, indexes, false);
+		}
+
+		private static boolean isSparse(
+				int cardinality,
+				int span) {
+			// a sparse set costs 4 bytes per element, a dense one 8 bytes per word
+			return cardinality < 2 * span;
+		}
+
+		private boolean isEmpty() {
+			return words != null ? words.length == 0 : indexes.length == 0;
+		}
+
+		// whether this set uses the sparse encoding
+		boolean usesIndexes() {
+			return indexes != null;
+		}
+
+		/**
+		 * Yields a builder initialized with the identifiers of this set.
+		 *
+		 * @return the builder
+		 */
+		public Builder builder() {
+			return new Builder(this);
+		}
+
+		/**
+		 * Yields the number of identifiers in this set.
+		 *
+		 * @return the number of identifiers
+		 */
+		public int size() {
+			if (indexes != null)
+				return indexes.length;
+			int cardinality = 0;
+			for (long word : words)
+				cardinality += Long.bitCount(word);
+			return cardinality;
+		}
+
+		/**
+		 * Yields an estimate of the bytes of memory held by this set, assuming compressed references.
+		 *
+		 * @return the estimated size in bytes
+		 */
+		long bytes() {
+			if (this == TOP || this == BOTTOM)
+				return 0;
+			// the object, and the header of its array followed by the words or the indexes
+			return 32 + 16 + (words != null ? 8L * words.length : 4L * indexes.length);
+		}
+
+		private int first() {
+			if (indexes != null)
+				return indexes[0];
+			return (offset << 6) + Long.numberOfTrailingZeros(words[0]);
+		}
+
+		private int last() {
+			if (indexes != null)
+				return indexes[indexes.length - 1];
+			return ((offset + words.length - 1) << 6) + 63 - Long.numberOfLeadingZeros(words[words.length - 1]);
+		}
+
+		private long wordAt(
+				int k) {
+			if (words != null)
+				return k >= offset && k < offset + words.length ? words[k - offset] : 0L;
+
+			long word = 0L;
+			int i = Arrays.binarySearch(indexes, k << 6);
+			for (i = i < 0 ? -i - 1 : i; i < indexes.length && indexes[i] >>> 6 == k; i++)
+				word |= 1L << indexes[i];
+			return word;
+		}
+
+		// yields the words from lo to hi (inclusive) of this set
+		private long[] window(
+				int lo,
+				int hi) {
+			long[] window = new long[hi - lo + 1];
+			if (words != null)
+				for (int k = Math.max(lo, offset); k <= Math.min(hi, offset + words.length - 1); k++)
+					window[k - lo] = words[k - offset];
+			else
+				for (int index : indexes)
+					if (index >>> 6 >= lo && index >>> 6 <= hi)
+						window[(index >>> 6) - lo] |= 1L << index;
+			return window;
+		}
+
+		private boolean contains(
+				int index) {
+			if (index < 0)
+				return false;
+			if (indexes != null)
+				return Arrays.binarySearch(indexes, index) >= 0;
+			return (wordAt(index >>> 6) & (1L << index)) != 0;
+		}
+
+		/**
+		 * Yields whether or not the given identifier belongs to this set.
+		 *
+		 * @param id the identifier
+		 *
+		 * @return {@code true} if {@code id} is in this set
+		 */
+		public boolean contains(
+				Identifier id) {
+			if (isBottom())
+				return true;
+			return contains(IdentifierIndex.indexOf(id));
+		}
+
+		/**
+		 * Yields whether or not all the identifiers of the given set belong to this set.
+		 *
+		 * @param other the other set
+		 *
+		 * @return {@code true} if {@code other} is a subset of this set
+		 */
+		public boolean containsAll(
+				IdSet other) {
+			if (isBottom())
+				return true;
+			if (other.isBottom())
+				return false;
+			if (other.indexes != null) {
+				for (int index : other.indexes)
+					if (!contains(index))
+						return false;
+				return true;
+			}
+			for (int k = 0; k < other.words.length; k++)
+				if ((wordAt(other.offset + k) & other.words[k]) != other.words[k])
+					return false;
+			return true;
+		}
+
+		/**
+		 * Yields the set containing the identifiers of this set plus the given one.
+		 *
+		 * @param id the identifier to add
+		 *
+		 * @return the new set
+		 */
+		public IdSet add(
+				Identifier id) {
+			if (isBottom())
+				return this;
+			int index = IdentifierIndex.intern(id);
+			if (contains(index))
+				return this;
+			return or(new IdSet(0, null, new int[] { index }, false));
+		}
+
+		private IdSet without(
+				int index) {
+			if (!contains(index))
+				return this;
+			if (indexes != null) {
+				int[] copy = new int[indexes.length];
+				int n = 0;
+				for (int i : indexes)
+					if (i != index)
+						copy[n++] = i;
+				return fromIndexes(copy, n);
+			}
+			long[] copy = words.clone();
+			copy[(index >>> 6) - offset] &= ~(1L << index);
+			return fromWords(copy, offset);
+		}
+
+		private IdSet removeIf(
+				Predicate<Identifier> test) {
+			int[] kept = new int[size()];
+			int[] n = { 0 };
+			boolean[] removed = { false };
+			forEachIndex(index -> {
+				Identifier id = IdentifierIndex.get(index);
+				if (id == null || test.test(id))
+					removed[0] = true;
+				else
+					kept[n[0]++] = index;
+			});
+			return removed[0] ? fromIndexes(kept, n[0]) : this;
+		}
+
+		/**
+		 * Yields the union of this set and the given one.
+		 *
+		 * @param other the other set
+		 *
+		 * @return the union
+		 */
+		public IdSet or(
+				IdSet other) {
+			if (isBottom() || other.isBottom())
+				return BOTTOM;
+			if (other.isEmpty())
+				return isEmpty() ? TOP : this;
+			if (isEmpty())
+				return other;
+
+			if (indexes != null && other.indexes != null) {
+				// merge of the two sorted arrays
+				int[] merged = new int[indexes.length + other.indexes.length];
+				int i = 0, j = 0, n = 0;
+				while (i < indexes.length || j < other.indexes.length)
+					if (j == other.indexes.length || (i < indexes.length && indexes[i] <= other.indexes[j]))
+						merged[n++] = indexes[i++];
+					else
+						merged[n++] = other.indexes[j++];
+				return fromIndexes(merged, n);
+			}
+
+			int lo = Math.min(first(), other.first()) >>> 6;
+			int hi = Math.max(last(), other.last()) >>> 6;
+			long[] result = window(lo, hi);
+			long[] others = other.window(lo, hi);
+			for (int k = 0; k < result.length; k++)
+				result[k] |= others[k];
+			return fromWords(result, lo);
+		}
+
+		/**
+		 * Yields the intersection of this set and the given one.
+		 *
+		 * @param other the other set
+		 *
+		 * @return the intersection
+		 */
+		public IdSet and(
+				IdSet other) {
+			if (isBottom())
+				return other;
+			if (other.isBottom())
+				return this;
+			if (isEmpty() || other.isEmpty())
+				return TOP;
+
+			if (indexes != null || other.indexes != null) {
+				// only the elements of the sparse set have to be tested
+				IdSet sparse = indexes != null ? this : other;
+				IdSet tested = sparse == this ? other : this;
+				int[] result = new int[sparse.indexes.length];
+				int n = 0;
+				for (int index : sparse.indexes)
+					if (tested.contains(index))
+						result[n++] = index;
+				return fromIndexes(result, n);
+			}
+
+			int lo = Math.max(offset, other.offset);
+			int hi = Math.min(offset + words.length, other.offset + other.words.length) - 1;
+			if (lo > hi)
+				return TOP;
+			long[] result = window(lo, hi);
+			for (int k = 0; k < result.length; k++)
+				result[k] &= other.words[lo + k - other.offset];
+			return fromWords(result, lo);
+		}
+
+		/**
+		 * Invokes the given action on the index of each identifier in this set, in increasing order.
+		 *
+		 * @param action the action
+		 */
+		void forEachIndex(
+				IntConsumer action) {
+			if (indexes != null)
+				for (int index : indexes)
+					action.accept(index);
+			else
+				for (int k = 0; k < words.length; k++)
+					for (long bits = words[k]; bits != 0; bits &= bits - 1)
+						action.accept(((offset + k) << 6) + Long.numberOfTrailingZeros(bits));
 		}
 
 		@Override
-		public IdSet wideningAux(IdSet other) throws SemanticException {
-			// widening as provided in the paper
-			return other.elements.containsAll(elements) ? other : top();
+		public Iterator<Identifier> iterator() {
+			List<Identifier> elements = new ArrayList<>(size());
+			forEachIndex(index -> {
+				Identifier id = IdentifierIndex.get(index);
+				// released identifiers are no longer part of any state, see IdentifierIndex
+				if (id != null)
+					elements.add(id);
+			});
+			return elements.iterator();
 		}
 
 		@Override
 		public IdSet top() {
-			// isTop() is already redefined in the superclass
-			return new IdSet(Collections.emptySet(), true);
+			return TOP;
+		}
+
+		@Override
+		public boolean isTop() {
+			return isTop && isEmpty();
 		}
 
 		@Override
 		public IdSet bottom() {
-			// isBottom() is already redefined in the superclass
-			return new IdSet(Collections.emptySet(), false);
+			return BOTTOM;
 		}
 
 		@Override
-		public IdSet mk(Set<Identifier> set) {
-			return new IdSet(set);
+		public boolean isBottom() {
+			return !isTop && isEmpty();
 		}
 
-		public IdSet add(
-				Identifier id) {
-			Set<Identifier> res = new HashSet<>(elements);
-			res.add(id);
-			return new IdSet(res);
+		@Override
+		public boolean lessOrEqualAux(
+				IdSet other)
+				throws SemanticException {
+			return containsAll(other);
 		}
 
 		@Override
-		public IdSet eval(
-				ValueExpression expression,
-				StrictUpperBounds environment,
-				ProgramPoint pp,
-				SemanticOracle oracle) throws SemanticException {
-			// since this won't be really used as a non relational domain,
-			// we don't care about the implementation of this method
-			return top();
+		public IdSet lubAux(
+				IdSet other)
+				throws SemanticException {
+			return and(other);
 		}
 
 		@Override
-		public Satisfiability satisfies(
-				ValueExpression expression,
-				StrictUpperBounds environment,
-				ProgramPoint pp,
-				SemanticOracle oracle) throws SemanticException {
-			// since this won't be really used as a non relational domain,
-			// we don't care about the implementation of this method
-			return Satisfiability.UNKNOWN;
+		public IdSet glbAux(
+				IdSet other)
+				throws SemanticException {
+			return or(other);
 		}
 
 		@Override
-		public StrictUpperBounds assume(
-				StrictUpperBounds environment,
-				ValueExpression expression,
-				ProgramPoint src,
-				ProgramPoint dest,
-				SemanticOracle oracle) throws SemanticException {
-			// since this won't be really used as a non relational domain,
-			// we don't care about the implementation of this method
-			return environment;
+		public IdSet wideningAux(
+				IdSet other)
+				throws SemanticException {
+			// widening as provided in the paper
+			return other.containsAll(this) ? other : top();
 		}
 
 		@Override
-		public boolean canProcess(
-				SymbolicExpression expression,
-				ProgramPoint pp,
-				SemanticOracle oracle) {
-			// since this won't be really used as a non relational domain,
-			// we don't care about the implementation of this method
-			return true;
+		public StructuredRepresentation representation() {
+			if (isTop())
+				return Lattice.topRepresentation();
+			if (isBottom())
+				return Lattice.bottomRepresentation();
+			SortedSet<String> names = new TreeSet<>();
+			for (Identifier id : this)
+				names.add(id.toString());
+			return new StringRepresentation("[" + String.join(", ", names) + "]");
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(
+				Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null || getClass() != obj.getClass())
+				return false;
+			// the encoding only depends on the content, so equal sets have equal fields
+			IdSet other = (IdSet) obj;
+			return hash == other.hash
+					&& offset == other.offset
+					&& isTop == other.isTop
+					&& Arrays.equals(words, other.words)
+					&& Arrays.equals(indexes, other.indexes);
+		}
+
+		@Override
+		public String toString() {
+			return representation().toString();
+		}
+
+		/**
+		 * A mutable set of identifiers, stored as a plain bitset over the identifier indexes, that can be grown in
+		 * place and then frozen into an {@link IdSet}.
+		 */
+		public static final class Builder {
+
+			// bit i of words[k] stands for the identifier with index (offset + k) * 64 + i, as in IdSet
+			private int offset;
+
+			private long[] words;
+
+			private Builder(
+					IdSet initial) {
+				if (initial.isEmpty())
+					this.words = NO_WORDS;
+				else {
+					this.offset = initial.first() >>> 6;
+					this.words = initial.window(offset, initial.last() >>> 6);
+				}
+			}
+
+			/**
+			 * Yields whether or not the given identifier belongs to this set.
+			 *
+			 * @param id the identifier
+			 *
+			 * @return {@code true} if {@code id} is in this set
+			 */
+			public boolean contains(
+					Identifier id) {
+				int index = IdentifierIndex.indexOf(id);
+				if (index < 0)
+					return false;
+				int k = (index >>> 6) - offset;
+				return k >= 0 && k < words.length && (words[k] & (1L << index)) != 0;
+			}
+
+			/**
+			 * Adds the given identifier to this set.
+			 *
+			 * @param id the identifier
+			 *
+			 * @return {@code true} if the set changed
+			 */
+			public boolean add(
+					Identifier id) {
+				int index = IdentifierIndex.intern(id);
+				if (words.length == 0)
+					offset = index >>> 6;
+				int k = (index >>> 6) - offset;
+				if (k < 0) {
+					// the window is extended downwards, up to the new index
+					long[] grown = new long[words.length - k];
+					System.arraycopy(words, 0, grown, -k, words.length);
+					words = grown;
+					offset += k;
+					k = 0;
+				} else if (k >= words.length)
+					words = Arrays.copyOf(words, Math.max(k + 1, 2 * words.length));
+				long before = words[k];
+				words[k] |= 1L << index;
+				return before != words[k];
+			}
+
+			/**
+			 * Freezes the current content of this builder. The builder can still be used afterwards.
+			 *
+			 * @return the set
+			 */
+			public IdSet build() {
+				return fromWords(words.clone(), offset);
+			}
 		}
 	}
 }
@@ -17,6 +17,7 @@ import it.unive.lisa.program.annotations.matcher.BasicAnnotationMatcher;
 import it.unive.lisa.program.cfg.CFG;
 import it.unive.lisa.program.cfg.CodeMember;
 import it.unive.lisa.program.cfg.Parameter;
+import it.unive.lisa.program.cfg.ProgramPoint;
 import it.unive.lisa.program.cfg.statement.Statement;
 import it.unive.lisa.program.cfg.statement.call.Call;
 import it.unive.lisa.program.cfg.statement.call.ResolvedCall;
@@ -76,7 +77,7 @@ public class TaintCheck
 					// we check if the call parameters are annotated as sinks
 					Parameter[] parameters = target.getDescriptor().getFormals();
 					for (int par = 0; par < parameters.length; par++)
-						if (parameters[par].getAnnotations().contains(SINK_MATCHER) && mightBeTainted(result, call, par))
+						if (parameters[par].getAnnotations().contains(SINK_MATCHER) && mightBeTainted(result, call, par)) {
 							// tainted data might flow into the sink: we report a warning
 							tool.warnOn(call, "The value passed for the "
 									+ StringUtilities.ordinal(par + 1)
@@ -84,6 +85,17 @@ public class TaintCheck
 									+ parameters[par].getName()
 									+ "' of "
 									+ res.getFullTargetName());
+
+							// the warning is also visible in flight recordings
+							AnalysisEvents.TaintWarning event = new AnalysisEvents.TaintWarning();
+							if (event.shouldCommit()) {
+								event.cfg = AnalysisEvents.name(graph);
+								event.location = String.valueOf(call.getLocation());
+								event.parameter = par;
+								event.target = res.getFullTargetName();
+								event.commit();
+							}
+						}
 				}
 			}
 		} catch (SemanticException e) {
@@ -112,12 +124,25 @@ public class TaintCheck
 		// the taint analysis is a value analysis: it can only deal with value expressions!
 		// we must rewrite each expression in param before inspecting it
 		for (SymbolicExpression e : state.getState().rewrite(param, call, state.getState())) {
-			ValueEnvironment<Taint> valueState = state.getState().getValueState();
 			// now we ask the taint analysis what is the taintedness level of our target parameter
-			Taint taintedness = valueState.eval((ValueExpression) e, call, state.getState());
+			Taint taintedness = eval(state.getState(), (ValueExpression) e, call);
 			if (taintedness.isPossiblyTainted())
 				return true;
 		}
 		return false;
 	}
+
+	// the value state is either a ValueEnvironment or a SparseEnvironment of taint: it is retrieved without the
+	// static type of the check, that only mentions the former, and evaluated through the matching environment
+	@SuppressWarnings("unchecked")
+	private static Taint eval(
+			SimpleAbstractState<PointBasedHeap, ValueEnvironment<Taint>, TypeEnvironment<InferredTypes>> state,
+			ValueExpression expression,
+			ProgramPoint pp)
+			throws SemanticException {
+		Object valueState = ((SimpleAbstractState<?, ?, ?>) state).getValueState();
+		if (valueState instanceof SparseEnvironment)
+			return ((SparseEnvironment<Taint>) valueState).eval(expression, pp, state);
+		return ((ValueEnvironment<Taint>) valueState).eval(expression, pp, state);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,288 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.analysis.ScopeToken;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.SemanticOracle;
+import it.unive.lisa.analysis.lattices.Satisfiability;
+import it.unive.lisa.analysis.value.ValueDomain;
+import it.unive.lisa.program.cfg.ProgramPoint;
+import it.unive.lisa.program.cfg.statement.Statement;
+import it.unive.lisa.symbolic.value.Identifier;
+import it.unive.lisa.symbolic.value.ValueExpression;
+import it.unive.lisa.util.representation.StructuredRepresentation;
+
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * A value domain that wraps another one, emitting an {@link AnalysisEvents.Widening} event for each application of
+ * the widening and an {@link AnalysisEvents.SlowOperation} event for each operation above the threshold of that
+ * event. Events refer to the node being processed by the fixpoint, that is known when the working set of the
+ * configuration is a {@link TracingWorkingSet}: for widenings performed at widening points, this is the loop head.<br>
+ * <br>
+ * Use it by wrapping the value domain of the configuration, e.g.
+ * {@code DefaultConfiguration.simpleState(heap, new TracingValueDomain<>(new Pentagons()), types)}.
+ *
+ * @param <D> the type of the wrapped domain
+ */
+public class TracingValueDomain<D extends ValueDomain<D>>
+		implements
+		ValueDomain<TracingValueDomain<D>> {
+
+	private final D domain;
+
+	/**
+	 * Builds the domain.
+	 *
+	 * @param domain the domain to trace
+	 */
+	public TracingValueDomain(
+			D domain) {
+		this.domain = domain;
+	}
+
+	/**
+	 * Yields the wrapped state.
+	 *
+	 * @return the state
+	 */
+	public D getDomain() {
+		return domain;
+	}
+
+	private TracingValueDomain<D> wrap(
+			D result) {
+		return result == domain ? this : new TracingValueDomain<>(result);
+	}
+
+	// ends the given event, committing it if it lasted longer than its threshold
+	private void end(
+			AnalysisEvents.SlowOperation event,
+			String operation,
+			ProgramPoint pp) {
+		event.end();
+		if (event.shouldCommit()) {
+			Statement node = AnalysisEvents.current();
+			ProgramPoint point = pp != null ? pp : node;
+			event.cfg = point == null ? null : AnalysisEvents.name(point.getCFG());
+			event.location = point == null ? null : String.valueOf(point.getLocation());
+			event.domain = domain.getClass().getSimpleName();
+			event.operation = operation;
+			event.commit();
+		}
+	}
+
+	@Override
+	public boolean lessOrEqual(
+			TracingValueDomain<D> other)
+			throws SemanticException {
+		AnalysisEvents.SlowOperation event = new AnalysisEvents.SlowOperation();
+		event.begin();
+		boolean result = domain.lessOrEqual(other.domain);
+		end(event, "lessOrEqual", null);
+		return result;
+	}
+
+	@Override
+	public TracingValueDomain<D> lub(
+			TracingValueDomain<D> other)
+			throws SemanticException {
+		AnalysisEvents.SlowOperation event = new AnalysisEvents.SlowOperation();
+		event.begin();
+		D result = domain.lub(other.domain);
+		end(event, "lub", null);
+		return wrap(result);
+	}
+
+	@Override
+	public TracingValueDomain<D> glb(
+			TracingValueDomain<D> other)
+			throws SemanticException {
+		AnalysisEvents.SlowOperation event = new AnalysisEvents.SlowOperation();
+		event.begin();
+		D result = domain.glb(other.domain);
+		end(event, "glb", null);
+		return wrap(result);
+	}
+
+	@Override
+	public TracingValueDomain<D> widening(
+			TracingValueDomain<D> other)
+			throws SemanticException {
+		AnalysisEvents.Widening event = new AnalysisEvents.Widening();
+		event.begin();
+		D result = domain.widening(other.domain);
+		event.end();
+		if (event.shouldCommit()) {
+			Statement head = AnalysisEvents.current();
+			event.cfg = head == null ? null : AnalysisEvents.name(head.getCFG());
+			event.location = head == null ? null : String.valueOf(head.getLocation());
+			event.domain = domain.getClass().getSimpleName();
+			event.commit();
+		}
+		return wrap(result);
+	}
+
+	@Override
+	public TracingValueDomain<D> narrowing(
+			TracingValueDomain<D> other)
+			throws SemanticException {
+		AnalysisEvents.SlowOperation event = new AnalysisEvents.SlowOperation();
+		event.begin();
+		D result = domain.narrowing(other.domain);
+		end(event, "narrowing", null);
+		return wrap(result);
+	}
+
+	@Override
+	public TracingValueDomain<D> top() {
+		return new TracingValueDomain<>(domain.top());
+	}
+
+	@Override
+	public boolean isTop() {
+		return domain.isTop();
+	}
+
+	@Override
+	public TracingValueDomain<D> bottom() {
+		return new TracingValueDomain<>(domain.bottom());
+	}
+
+	@Override
+	public boolean isBottom() {
+		return domain.isBottom();
+	}
+
+	@Override
+	public TracingValueDomain<D> assign(
+			Identifier id,
+			ValueExpression expression,
+			ProgramPoint pp,
+			SemanticOracle oracle)
+			throws SemanticException {
+		AnalysisEvents.SlowOperation event = new AnalysisEvents.SlowOperation();
+		event.begin();
+		D result = domain.assign(id, expression, pp, oracle);
+		end(event, "assign", pp);
+		return wrap(result);
+	}
+
+	@Override
+	public TracingValueDomain<D> smallStepSemantics(
+			ValueExpression expression,
+			ProgramPoint pp,
+			SemanticOracle oracle)
+			throws SemanticException {
+		AnalysisEvents.SlowOperation event = new AnalysisEvents.SlowOperation();
+		event.begin();
+		D result = domain.smallStepSemantics(expression, pp, oracle);
+		end(event, "smallStepSemantics", pp);
+		return wrap(result);
+	}
+
+	@Override
+	public TracingValueDomain<D> assume(
+			ValueExpression expression,
+			ProgramPoint src,
+			ProgramPoint dest,
+			SemanticOracle oracle)
+			throws SemanticException {
+		AnalysisEvents.SlowOperation event = new AnalysisEvents.SlowOperation();
+		event.begin();
+		D result = domain.assume(expression, src, dest, oracle);
+		end(event, "assume", src);
+		return wrap(result);
+	}
+
+	@Override
+	public Satisfiability satisfies(
+			ValueExpression expression,
+			ProgramPoint pp,
+			SemanticOracle oracle)
+			throws SemanticException {
+		AnalysisEvents.SlowOperation event = new AnalysisEvents.SlowOperation();
+		event.begin();
+		Satisfiability result = domain.satisfies(expression, pp, oracle);
+		end(event, "satisfies", pp);
+		return result;
+	}
+
+	@Override
+	public boolean knowsIdentifier(
+			Identifier id) {
+		return domain.knowsIdentifier(id);
+	}
+
+	@Override
+	public TracingValueDomain<D> forgetIdentifier(
+			Identifier id)
+			throws SemanticException {
+		AnalysisEvents.SlowOperation event = new AnalysisEvents.SlowOperation();
+		event.begin();
+		D result = domain.forgetIdentifier(id);
+		end(event, "forgetIdentifier", null);
+		return wrap(result);
+	}
+
+	@Override
+	public TracingValueDomain<D> forgetIdentifiersIf(
+			Predicate<Identifier> test)
+			throws SemanticException {
+		AnalysisEvents.SlowOperation event = new AnalysisEvents.SlowOperation();
+		event.begin();
+		D result = domain.forgetIdentifiersIf(test);
+		end(event, "forgetIdentifiersIf", null);
+		return wrap(result);
+	}
+
+	@Override
+	public TracingValueDomain<D> pushScope(
+			ScopeToken token)
+			throws SemanticException {
+		AnalysisEvents.SlowOperation event = new AnalysisEvents.SlowOperation();
+		event.begin();
+		D result = domain.pushScope(token);
+		end(event, "pushScope", null);
+		return wrap(result);
+	}
+
+	@Override
+	public TracingValueDomain<D> popScope(
+			ScopeToken token)
+			throws SemanticException {
+		AnalysisEvents.SlowOperation event = new AnalysisEvents.SlowOperation();
+		event.begin();
+		D result = domain.popScope(token);
+		end(event, "popScope", null);
+		return wrap(result);
+	}
+
+	@Override
+	public StructuredRepresentation representation() {
+		return domain.representation();
+	}
+
+	@Override
+	public int hashCode() {
+		return domain.hashCode();
+	}
+
+	@Override
+	public boolean equals(
+			Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		TracingValueDomain<?> other = (TracingValueDomain<?>) obj;
+		return Objects.equals(domain, other.domain);
+	}
+
+	@Override
+	public String toString() {
+		return domain.toString();
+	}
+}
@@ -0,0 +1,136 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.program.cfg.statement.Statement;
+import it.unive.lisa.util.collections.workset.WorkingSet;
+
+import java.util.Collection;
+
+/**
+ * A working set that delegates to another one, emitting an {@link AnalysisEvents.CfgAnalysis} event for each fixpoint
+ * and an {@link AnalysisEvents.FixpointIteration} event for each node popped from it. Since LiSA creates a working set
+ * through {@link #mk()} at the beginning of each fixpoint, an instance created this way traces a single CFG: its
+ * analysis starts with the first push and ends when the working set is found empty.<br>
+ * <br>
+ * Use it by setting {@code conf.fixpointWorkingSet = new TracingWorkingSet(conf.fixpointWorkingSet)}, possibly
+ * wrapping a {@link WtoWorkingSet}.
+ */
+public class TracingWorkingSet
+		implements
+		WorkingSet<Statement> {
+
+	private final WorkingSet<Statement> delegate;
+
+	// whether a fixpoint is running, and its events when they are enabled
+	private boolean running;
+
+	private AnalysisEvents.CfgAnalysis analysis;
+
+	private AnalysisEvents.FixpointIteration iteration;
+
+	// the first node pushed in the running fixpoint, and the last one popped
+	private Statement first;
+
+	private Statement node;
+
+	private long iterations;
+
+	/**
+	 * Builds the working set.
+	 *
+	 * @param delegate the working set actually holding the nodes
+	 */
+	public TracingWorkingSet(
+			WorkingSet<Statement> delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public WorkingSet<Statement> mk() {
+		return new TracingWorkingSet(delegate.mk());
+	}
+
+	@Override
+	public void push(
+			Statement e) {
+		if (!running) {
+			running = true;
+			first = e;
+			AnalysisEvents.CfgAnalysis event = new AnalysisEvents.CfgAnalysis();
+			if (event.isEnabled()) {
+				event.begin();
+				analysis = event;
+			}
+		}
+		delegate.push(e);
+	}
+
+	@Override
+	public Statement pop() {
+		endIteration();
+		node = delegate.pop();
+		iterations++;
+		AnalysisEvents.enter(node);
+		// events that are not stored do not escape, and their allocation is removed
+		AnalysisEvents.FixpointIteration event = new AnalysisEvents.FixpointIteration();
+		if (event.isEnabled()) {
+			event.begin();
+			iteration = event;
+		}
+		return node;
+	}
+
+	@Override
+	public Statement peek() {
+		return delegate.peek();
+	}
+
+	@Override
+	public int size() {
+		return delegate.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		boolean empty = delegate.isEmpty();
+		if (empty && running) {
+			// the fixpoint is over
+			endIteration();
+			AnalysisEvents.clear();
+			if (analysis != null) {
+				analysis.end();
+				if (analysis.shouldCommit()) {
+					analysis.cfg = AnalysisEvents.name(first.getCFG());
+					analysis.iterations = iterations;
+					analysis.commit();
+				}
+				analysis = null;
+			}
+			running = false;
+			iterations = 0;
+		}
+		return empty;
+	}
+
+	@Override
+	public Collection<Statement> getContents() {
+		return delegate.getContents();
+	}
+
+	@Override
+	public String toString() {
+		return delegate.toString();
+	}
+
+	private void endIteration() {
+		if (iteration == null)
+			return;
+		iteration.end();
+		if (iteration.shouldCommit()) {
+			iteration.cfg = AnalysisEvents.name(node.getCFG());
+			iteration.node = node.toString();
+			iteration.location = String.valueOf(node.getLocation());
+			iteration.commit();
+		}
+		iteration = null;
+	}
+}
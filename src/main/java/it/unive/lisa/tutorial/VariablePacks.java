@@ -0,0 +1,232 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.program.Program;
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.edge.Edge;
+import it.unive.lisa.program.cfg.statement.Assignment;
+import it.unive.lisa.program.cfg.statement.Expression;
+import it.unive.lisa.program.cfg.statement.NaryExpression;
+import it.unive.lisa.program.cfg.statement.Statement;
+import it.unive.lisa.program.cfg.statement.VariableRef;
+import it.unive.lisa.symbolic.value.Identifier;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A syntactic pre-analysis that groups the variables of each CFG into packs: two variables are in the same pack if
+ * they appear together in an assignment or in a guard, unless that would make the pack larger than the maximum size.
+ * Relational domains only need to relate the variables of the same pack, so that {@link PackedDomain} can run one
+ * instance of them per pack, bounding their cost by the size of the packs instead of the number of variables.
+ * Variables that never appear together with another one are not in any pack.
+ */
+public final class VariablePacks {
+
+	/**
+	 * The default maximum number of variables in a pack.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 8;
+
+	// the pack of each variable of each cfg, by name
+	private final Map<CFG, Map<String, Integer>> packs;
+
+	private final List<Set<String>> members;
+
+	private VariablePacks(
+			Map<CFG, Map<String, Integer>> packs,
+			List<Set<String>> members) {
+		this.packs = packs;
+		this.members = members;
+	}
+
+	/**
+	 * Computes the packs of the variables of the given program, with at most {@link #DEFAULT_MAX_SIZE} variables each.
+	 *
+	 * @param program the program
+	 *
+	 * @return the packs
+	 */
+	public static VariablePacks of(
+			Program program) {
+		return of(program, DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Computes the packs of the variables of the given program.
+	 *
+	 * @param program the program
+	 * @param maxSize the maximum number of variables in a pack
+	 *
+	 * @return the packs
+	 */
+	public static VariablePacks of(
+			Program program,
+			int maxSize) {
+		Map<CFG, Map<String, Integer>> packs = new HashMap<>();
+		List<Set<String>> members = new ArrayList<>();
+		for (CFG cfg : program.getAllCFGs()) {
+			Map<String, String> parents = new LinkedHashMap<>();
+			Map<String, Integer> sizes = new HashMap<>();
+			for (Statement node : cfg.getNodes())
+				if (node instanceof Assignment || isGuard(cfg, node)) {
+					Set<String> names = new LinkedHashSet<>();
+					collect(node, names);
+					String first = null;
+					for (String name : names) {
+						parents.putIfAbsent(name, name);
+						sizes.putIfAbsent(name, 1);
+						if (first == null)
+							first = name;
+						else
+							union(parents, sizes, first, name, maxSize);
+					}
+				}
+
+			Map<String, Integer> indexes = new HashMap<>();
+			Map<String, Integer> roots = new HashMap<>();
+			for (String name : parents.keySet()) {
+				String root = find(parents, name);
+				if (sizes.get(root) < 2)
+					// a single variable has no relations to track
+					continue;
+				Integer index = roots.get(root);
+				if (index == null) {
+					index = members.size();
+					roots.put(root, index);
+					members.add(new TreeSet<>());
+				}
+				indexes.put(name, index);
+				members.get(index).add(name);
+			}
+			packs.put(cfg, indexes);
+		}
+		return new VariablePacks(packs, members);
+	}
+
+	// a guard is a node whose outgoing edges depend on its value
+	private static boolean isGuard(
+			CFG cfg,
+			Statement node) {
+		for (Edge edge : cfg.getOutgoingEdges(node))
+			if (!edge.isUnconditional())
+				return true;
+		return false;
+	}
+
+	private static void collect(
+			Statement statement,
+			Set<String> names) {
+		if (statement instanceof VariableRef)
+			names.add(((VariableRef) statement).getName());
+		else if (statement instanceof NaryExpression)
+			for (Expression sub : ((NaryExpression) statement).getSubExpressions())
+				collect(sub, names);
+	}
+
+	private static String find(
+			Map<String, String> parents,
+			String name) {
+		String root = name;
+		while (!parents.get(root).equals(root))
+			root = parents.get(root);
+		// path compression
+		while (!name.equals(root)) {
+			String next = parents.get(name);
+			parents.put(name, root);
+			name = next;
+		}
+		return root;
+	}
+
+	private static void union(
+			Map<String, String> parents,
+			Map<String, Integer> sizes,
+			String first,
+			String second,
+			int maxSize) {
+		String a = find(parents, first);
+		String b = find(parents, second);
+		if (a.equals(b) || sizes.get(a) + sizes.get(b) > maxSize)
+			return;
+		if (sizes.get(a) < sizes.get(b)) {
+			String tmp = a;
+			a = b;
+			b = tmp;
+		}
+		parents.put(b, a);
+		sizes.put(a, sizes.get(a) + sizes.get(b));
+	}
+
+	/**
+	 * Yields the pack of the given variable.
+	 *
+	 * @param cfg the cfg where the variable is used
+	 * @param id  the variable
+	 *
+	 * @return the index of the pack, or {@code -1} if the variable is not in any pack
+	 */
+	public int packOf(
+			CFG cfg,
+			Identifier id) {
+		Map<String, Integer> indexes = packs.get(cfg);
+		Integer index = indexes == null ? null : indexes.get(id.getName());
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Yields the pack containing all the given variables.
+	 *
+	 * @param cfg the cfg where the variables are used
+	 * @param ids the variables
+	 *
+	 * @return the index of the pack, or {@code -1} if the variables are not all in the same pack
+	 */
+	public int packOf(
+			CFG cfg,
+			Collection<Identifier> ids) {
+		int pack = -1;
+		for (Identifier id : ids) {
+			int current = packOf(cfg, id);
+			if (current < 0 || pack >= 0 && current != pack)
+				return -1;
+			pack = current;
+		}
+		return pack;
+	}
+
+	/**
+	 * Yields the number of packs.
+	 *
+	 * @return the number of packs
+	 */
+	public int getPackCount() {
+		return members.size();
+	}
+
+	/**
+	 * Yields the names of the variables in the given pack.
+	 *
+	 * @param pack the index of the pack
+	 *
+	 * @return the names of its variables
+	 */
+	public Set<String> getMembers(
+			int pack) {
+		return members.get(pack);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < members.size(); i++)
+			builder.append("pack ").append(i).append(": ").append(members.get(i)).append("\n");
+		return builder.toString();
+	}
+}
@@ -0,0 +1,250 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.statement.Statement;
+import it.unive.lisa.util.collections.workset.WorkingSet;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A working set for the fixpoint iterations that schedules the nodes of a CFG following a weak topological ordering
+ * of its nodes, computed with Bourdoncle's algorithm (https://doi.org/10.1007/BFb0039704). The node that comes first
+ * in the ordering is always processed first: since the head of a loop precedes the nodes of its body, and the body
+ * precedes whatever follows the loop, inner components are stabilized before the outer ones are resumed. This
+ * approximates Bourdoncle's recursive iteration strategy on top of LiSA's worklist-based fixpoint.<br>
+ * <br>
+ * Use it by setting {@code conf.fixpointWorkingSet = new WtoWorkingSet()}, together with
+ * {@code conf.useWideningPoints = true} so that widening is only applied at loop heads. The number of nodes processed
+ * for each CFG is available through {@link #getIterations()} on the instance put in the configuration.
+ */
+public class WtoWorkingSet
+		implements
+		WorkingSet<Statement> {
+
+	// the orderings are computed once per cfg, and shared among all the working sets created by mk(),
+	// that might be used by parallel fixpoints
+	private final Map<CFG, Map<Statement, Integer>> orderings;
+
+	// the number of pops performed on the nodes of each cfg, shared as well
+	private final Map<CFG, Integer> iterations;
+
+	// the nodes to process, sorted by their position in the ordering
+	private final TreeMap<Integer, Statement> contents = new TreeMap<>();
+
+	public WtoWorkingSet() {
+		this(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+	}
+
+	private WtoWorkingSet(
+			Map<CFG, Map<Statement, Integer>> orderings,
+			Map<CFG, Integer> iterations) {
+		this.orderings = orderings;
+		this.iterations = iterations;
+	}
+
+	/**
+	 * Yields the number of nodes processed by the fixpoint iterations on each CFG, accumulated over all the working
+	 * sets created from this one.
+	 *
+	 * @return the number of iterations per CFG
+	 */
+	public Map<CFG, Integer> getIterations() {
+		return Collections.unmodifiableMap(iterations);
+	}
+
+	@Override
+	public WorkingSet<Statement> mk() {
+		return new WtoWorkingSet(orderings, iterations);
+	}
+
+	@Override
+	public void push(
+			Statement e) {
+		Map<Statement, Integer> ordering = orderings.computeIfAbsent(e.getCFG(), WtoWorkingSet::order);
+		Integer position = ordering.get(e);
+		if (position == null)
+			// nodes that are not reachable from the entrypoints are processed last, in order of arrival
+			synchronized (ordering) {
+				position = ordering.computeIfAbsent(e, k -> ordering.size());
+			}
+		// nodes already waiting to be processed are not added twice
+		contents.putIfAbsent(position, e);
+	}
+
+	@Override
+	public Statement pop() {
+		Statement next = contents.pollFirstEntry().getValue();
+		iterations.merge(next.getCFG(), 1, Integer::sum);
+		return next;
+	}
+
+	@Override
+	public Statement peek() {
+		return contents.firstEntry().getValue();
+	}
+
+	@Override
+	public int size() {
+		return contents.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return contents.isEmpty();
+	}
+
+	@Override
+	public Collection<Statement> getContents() {
+		return contents.values();
+	}
+
+	@Override
+	public String toString() {
+		return contents.values().toString();
+	}
+
+	// yields the position of each node of the cfg in its weak topological ordering
+	private static Map<Statement, Integer> order(
+			CFG cfg) {
+		Bourdoncle visit = new Bourdoncle(cfg);
+		Deque<Statement> partition = new ArrayDeque<>();
+		for (Statement entry : cfg.getEntrypoints())
+			if (!visit.dfn.containsKey(entry))
+				visit.visit(entry, partition);
+
+		Map<Statement, Integer> positions = new ConcurrentHashMap<>();
+		for (Statement node : partition)
+			positions.put(node, positions.size());
+		return positions;
+	}
+
+	// Bourdoncle's recursive algorithm computing the ordering, run with an explicit stack of frames so that long cfgs
+	// do not overflow the call stack: components are flattened as they are built, with their head first and then
+	// their body
+	private static class Bourdoncle {
+
+		private final CFG cfg;
+
+		// depth-first numbering of the nodes: 0 means that the node must be visited again,
+		// MAX_VALUE that it has already been placed in the ordering
+		private final Map<Statement, Integer> dfn = new HashMap<>();
+
+		private final Deque<Statement> stack = new ArrayDeque<>();
+
+		private int num = 0;
+
+		private Bourdoncle(
+				CFG cfg) {
+			this.cfg = cfg;
+		}
+
+		private void visit(
+				Statement root,
+				Deque<Statement> partition) {
+			Deque<Frame> frames = new ArrayDeque<>();
+			frames.push(enter(root, partition));
+			while (!frames.isEmpty()) {
+				Frame frame = frames.peek();
+				if (frame.successors.hasNext()) {
+					Statement succ = frame.successors.next();
+					if (dfn.getOrDefault(succ, 0) == 0)
+						// the visit of a component places its nodes in the body of the component
+						frames.push(enter(succ, frame.body != null ? frame.body : frame.partition));
+					else if (frame.body == null)
+						frame.update(dfn.get(succ));
+					continue;
+				}
+
+				frames.pop();
+				if (frame.body != null) {
+					// the component is placed in front of the partition: head first, then its body
+					for (var it = frame.body.descendingIterator(); it.hasNext();)
+						frame.partition.addFirst(it.next());
+					frame.partition.addFirst(frame.vertex);
+					continue;
+				}
+
+				// the head of the visited node is returned to the visit of its predecessor, if any
+				Frame caller = frames.peek();
+				if (caller != null && caller.body == null)
+					caller.update(frame.head);
+
+				if (frame.head == dfn.get(frame.vertex)) {
+					dfn.put(frame.vertex, Integer.MAX_VALUE);
+					Statement element = stack.pop();
+					if (frame.loop) {
+						// the nodes of the component will be visited again, starting from its head
+						while (element != frame.vertex) {
+							dfn.put(element, 0);
+							element = stack.pop();
+						}
+						frames.push(new Frame(frame.vertex, frame.partition, new ArrayDeque<>()));
+					} else
+						frame.partition.addFirst(frame.vertex);
+				}
+			}
+		}
+
+		private Frame enter(
+				Statement vertex,
+				Deque<Statement> partition) {
+			stack.push(vertex);
+			dfn.put(vertex, ++num);
+			return new Frame(vertex, partition, num);
+		}
+
+		// a pending call of the recursive algorithm: either the visit of a node, or the visit of the body of the
+		// component headed by a node, whose nodes are collected in body
+		private class Frame {
+
+			private final Statement vertex;
+
+			private final Iterator<Statement> successors;
+
+			private final Deque<Statement> partition;
+
+			private final Deque<Statement> body;
+
+			private int head;
+
+			private boolean loop;
+
+			private Frame(
+					Statement vertex,
+					Deque<Statement> partition,
+					int head) {
+				this.vertex = vertex;
+				this.successors = cfg.followersOf(vertex).iterator();
+				this.partition = partition;
+				this.body = null;
+				this.head = head;
+			}
+
+			private Frame(
+					Statement vertex,
+					Deque<Statement> partition,
+					Deque<Statement> body) {
+				this.vertex = vertex;
+				this.successors = cfg.followersOf(vertex).iterator();
+				this.partition = partition;
+				this.body = body;
+			}
+
+			private void update(
+					int min) {
+				if (min <= head) {
+					head = min;
+					loop = true;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package it.unive.lisa.tutorial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class AnalysisDaemonTest {
+
+	@Test
+	public void testAnalysisDaemon() throws IOException {
+		AnalysisDaemon daemon = new AnalysisDaemon(Paths.get("outputs/daemon"), 2);
+		daemon.warmUp();
+
+		// the requests that a client would send, one per line
+		String requests = "signs SIGNS NONE inputs/signs.imp\n"
+				+ "taint taint html inputs/taint.imp\n"
+				+ "missing INTERVAL NONE inputs/missing.imp\n"
+				+ "wrong NOT_A_PRESET NONE inputs/signs.imp\n"
+				+ ".. SIGNS NONE inputs/signs.imp\n"
+				+ "quit\n"
+				+ "ignored SIGNS NONE inputs/signs.imp\n";
+		StringWriter responses = new StringWriter();
+		daemon.serve(new BufferedReader(new StringReader(requests)), responses);
+
+		// responses come in order of completion, so we index them by id
+		List<String> lines = Arrays.asList(responses.toString().split("\n"));
+		Map<String, String> byId = new HashMap<>();
+		for (String line : lines)
+			// each line starts with {"id": "<id>"
+			byId.put(line.split("\"")[3], line);
+
+		// nothing is processed after quit
+		assertEquals(5, lines.size());
+		assertTrue(byId.get("signs").contains("\"status\": \"ANALYZED\""));
+		assertTrue(byId.get("taint").contains("\"status\": \"ANALYZED\""));
+		assertTrue(byId.get("missing").contains("\"status\": \"PARSING_FAILED\""));
+		assertTrue(byId.get("wrong").contains("\"status\": \"INVALID_REQUEST\""));
+
+		// the files of a job never end up outside of the working directory
+		String dots = byId.get("..");
+		assertTrue(dots.contains("\"status\": \"ANALYZED\""));
+		Path directory = Paths.get(dots.split("\"workdir\": \"")[1].split("\"")[0]);
+		assertTrue(directory.normalize().startsWith(Paths.get("outputs/daemon")));
+		assertNotEquals(Paths.get("outputs/daemon"), directory.normalize());
+	}
+}
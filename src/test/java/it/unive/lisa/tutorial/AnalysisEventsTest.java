@@ -0,0 +1,74 @@
+package it.unive.lisa.tutorial;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import it.unive.lisa.AnalysisException;
+import it.unive.lisa.DefaultConfiguration;
+import it.unive.lisa.LiSA;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
+import it.unive.lisa.conf.LiSAConfiguration;
+import it.unive.lisa.imp.IMPFrontend;
+import it.unive.lisa.imp.ParsingException;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class AnalysisEventsTest {
+
+	@Test
+	public void testEvents() throws IOException, ParsingException, AnalysisException {
+		Path file = Paths.get("outputs/events/analysis.jfr");
+		Files.createDirectories(file.getParent());
+
+		try (Recording recording = new Recording()) {
+			recording.enable(AnalysisEvents.CfgAnalysis.class);
+			recording.enable(AnalysisEvents.FixpointIteration.class);
+			recording.enable(AnalysisEvents.Widening.class);
+			recording.enable(AnalysisEvents.TaintWarning.class);
+			// we want to see all the operations, not only the slow ones
+			recording.enable(AnalysisEvents.SlowOperation.class).withThreshold(Duration.ZERO);
+			recording.start();
+
+			// the taint analysis raises warnings
+			LiSAConfiguration taint = Preset.TAINT.configuration("outputs/events/taint");
+			taint.fixpointWorkingSet = new TracingWorkingSet(taint.fixpointWorkingSet);
+			new LiSA(taint).run(IMPFrontend.processFile("inputs/taint.imp"));
+
+			// the intervals need widening to converge on the loop of this program
+			LiSAConfiguration intervals = new DefaultConfiguration();
+			intervals.workdir = "outputs/events/intervals";
+			intervals.abstractState = DefaultConfiguration.simpleState(
+					DefaultConfiguration.defaultHeapDomain(),
+					new TracingValueDomain<>(new ValueEnvironment<>(new Interval())),
+					DefaultConfiguration.defaultTypeDomain());
+			intervals.fixpointWorkingSet = new TracingWorkingSet(intervals.fixpointWorkingSet);
+			intervals.useWideningPoints = true;
+			new LiSA(intervals).run(IMPFrontend.processFile("inputs/congruence.imp"));
+
+			recording.stop();
+			recording.dump(file);
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+		for (String name : List.of("CfgAnalysis", "FixpointIteration", "Widening", "SlowOperation", "TaintWarning"))
+			assertTrue("No " + name + " events", events.stream()
+					.anyMatch(event -> event.getEventType().getName().equals("it.unive.lisa.tutorial." + name)));
+
+		// widenings are applied at the loop head
+		List<RecordedEvent> widenings = events.stream()
+				.filter(event -> event.getEventType().getName().equals("it.unive.lisa.tutorial.Widening"))
+				.collect(Collectors.toList());
+		for (RecordedEvent widening : widenings)
+			assertNotNull(widening.getString("location"));
+	}
+}
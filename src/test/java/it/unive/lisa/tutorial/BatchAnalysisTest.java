@@ -0,0 +1,32 @@
+package it.unive.lisa.tutorial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class BatchAnalysisTest {
+
+	@Test
+	public void testBatchAnalysis() throws IOException {
+		// we analyze all the programs in the inputs folder with the intervals,
+		// using as many parallel analyses as there are processors
+		Path workdir = Paths.get("outputs/batch");
+		BatchAnalysis batch = new BatchAnalysis(Preset.INTERVAL::configuration, Runtime.getRuntime().availableProcessors());
+		BatchAnalysis.Report report = batch.run(Paths.get("inputs"), workdir);
+
+		System.out.println(report);
+		for (BatchAnalysis.Outcome outcome : report.getOutcomes())
+			System.out.println(outcome.getFile() + ": " + outcome.getStatus() + " (parsing: " + outcome.getParsingMillis()
+					+ " ms, analysis: " + outcome.getAnalysisMillis() + " ms)");
+
+		// all the programs of the tutorial can be parsed and analyzed
+		assertEquals(report.getOutcomes().size(), report.count(BatchAnalysis.Status.ANALYZED));
+		assertTrue(Files.exists(workdir.resolve(BatchAnalysis.REPORT_FILE)));
+	}
+}
@@ -0,0 +1,152 @@
+package it.unive.lisa.tutorial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import it.unive.lisa.AnalysisException;
+import it.unive.lisa.DefaultConfiguration;
+import it.unive.lisa.LiSA;
+import it.unive.lisa.analysis.AbstractState;
+import it.unive.lisa.analysis.AnalyzedCFG;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
+import it.unive.lisa.checks.semantic.CheckToolWithAnalysisResults;
+import it.unive.lisa.checks.semantic.SemanticCheck;
+import it.unive.lisa.conf.LiSAConfiguration;
+import it.unive.lisa.conf.LiSAConfiguration.GraphType;
+import it.unive.lisa.imp.IMPFrontend;
+import it.unive.lisa.imp.ParsingException;
+import it.unive.lisa.outputs.serializableGraph.SerializableArray;
+import it.unive.lisa.outputs.serializableGraph.SerializableObject;
+import it.unive.lisa.outputs.serializableGraph.SerializableString;
+import it.unive.lisa.outputs.serializableGraph.SerializableValue;
+import it.unive.lisa.program.Program;
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.statement.Statement;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BinaryResultsTest {
+
+	@Test
+	public void testBinaryResults() throws ParsingException, AnalysisException, IOException {
+		// we parse the program to get the CFG representation of the code in it
+		Program program = IMPFrontend.processFile("inputs/signs.imp");
+
+		// we build a new configuration for the analysis
+		LiSAConfiguration conf = new DefaultConfiguration();
+
+		// we specify where we want files to be generated
+		conf.workdir = "outputs/binary";
+
+		// no graphs are dumped: the results are written in binary form by the check below
+		conf.analysisGraphs = GraphType.NONE;
+
+		// we specify the analysis that we want to execute
+		conf.abstractState = DefaultConfiguration.simpleState(
+				DefaultConfiguration.defaultHeapDomain(),
+				new ValueEnvironment<>(new Signs()),
+				DefaultConfiguration.defaultTypeDomain());
+
+		conf.semanticChecks.add(new BinaryResultsDump<>(BinaryResults.Compression.GZIP));
+
+		// we instantiate LiSA with our configuration
+		LiSA lisa = new LiSA(conf);
+
+		// finally, we tell LiSA to analyze the program
+		lisa.run(program);
+
+		// we read back the results, rendering the html page of each cfg
+		Path file = Paths.get(conf.workdir, BinaryResultsDump.RESULTS_FILE);
+		try (BinaryResults results = BinaryResults.open(file)) {
+			assertEquals(program.getAllCFGs().size(), results.getCFGs().size());
+			for (String cfg : results.getCFGs()) {
+				assertFalse(results.read(cfg).isEmpty());
+				Path page = Paths.get(conf.workdir, "html", cfg.replaceAll("[^A-Za-z0-9_.-]", "_") + ".html");
+				Files.createDirectories(page.getParent());
+				try (Writer writer = Files.newBufferedWriter(page)) {
+					results.toHtml(cfg, writer);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testLookup() throws ParsingException, AnalysisException, IOException {
+		Program program = IMPFrontend.processFile("inputs/signs.imp");
+
+		LiSAConfiguration conf = new DefaultConfiguration();
+		conf.workdir = "outputs/binary-lookup";
+		conf.analysisGraphs = GraphType.NONE;
+		conf.abstractState = DefaultConfiguration.simpleState(
+				DefaultConfiguration.defaultHeapDomain(),
+				new ValueEnvironment<>(new Interval()),
+				DefaultConfiguration.defaultTypeDomain());
+
+		// without compression, the states of single statements can be read directly from the mapped file
+		conf.semanticChecks.add(new BinaryResultsDump<>(BinaryResults.Compression.NONE));
+		States<?> expected = new States<>();
+		conf.semanticChecks.add(expected);
+		new LiSA(conf).run(program);
+
+		// each decoded state must be the one computed by the analysis
+		try (BinaryResults results = BinaryResults.open(Paths.get(conf.workdir, BinaryResultsDump.RESULTS_FILE))) {
+			for (CFG cfg : program.getAllCFGs())
+				for (Statement node : cfg.getNodes()) {
+					List<Object> states = results.lookup(node);
+					assertEquals(1, states.size());
+					assertEquals(node.toString(), expected.states.get(node), states.get(0));
+				}
+		}
+	}
+
+	// decodes a serialized representation the same way BinaryResults does, as strings, lists and maps
+	private static Object plain(
+			SerializableValue value) {
+		if (value instanceof SerializableArray) {
+			List<Object> elements = new ArrayList<>();
+			for (SerializableValue element : ((SerializableArray) value).getElements())
+				elements.add(plain(element));
+			return elements;
+		}
+		if (value instanceof SerializableObject) {
+			Map<String, Object> fields = new HashMap<>();
+			for (Map.Entry<String, SerializableValue> field : ((SerializableObject) value).getFields().entrySet())
+				fields.put(field.getKey(), plain(field.getValue()));
+			return fields;
+		}
+		return value instanceof SerializableString ? ((SerializableString) value).getValue() : String.valueOf(value);
+	}
+
+	// collects the in-memory post-state of each statement
+	private static class States<A extends AbstractState<A>>
+			implements
+			SemanticCheck<A> {
+
+		private final Map<Statement, Object> states = new HashMap<>();
+
+		@Override
+		public boolean visit(
+				CheckToolWithAnalysisResults<A> tool,
+				CFG graph,
+				Statement node) {
+			try {
+				for (AnalyzedCFG<A> result : tool.getResultOf(graph))
+					states.put(node, plain(result.getAnalysisStateAfter(node).getState().representation()
+							.toSerializableValue()));
+			} catch (SemanticException e) {
+				throw new IllegalStateException(e);
+			}
+			return true;
+		}
+	}
+}
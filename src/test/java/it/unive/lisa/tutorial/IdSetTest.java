@@ -0,0 +1,148 @@
+package it.unive.lisa.tutorial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import it.unive.lisa.program.SyntheticLocation;
+import it.unive.lisa.program.type.Int32Type;
+import it.unive.lisa.symbolic.value.Identifier;
+import it.unive.lisa.symbolic.value.Variable;
+import it.unive.lisa.tutorial.StrictUpperBounds.IdSet;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class IdSetTest {
+
+	// four words of consecutive indexes: the variables are interned here, in order, and stay reachable
+	private static final List<Identifier> VARS = new ArrayList<>();
+
+	static {
+		for (int i = 0; i < 256; i++) {
+			Variable var = new Variable(Int32Type.INSTANCE, "idset" + i, SyntheticLocation.INSTANCE);
+			IdentifierIndex.intern(var);
+			VARS.add(var);
+		}
+	}
+
+	private static List<Identifier> range(
+			int from,
+			int to) {
+		return VARS.subList(from, to);
+	}
+
+	@Test
+	public void testDenseWindowOffset() {
+		IdSet set = IdSet.of(range(192, 256));
+
+		assertFalse(set.usesIndexes());
+		assertEquals(64, set.size());
+		for (int i = 0; i < VARS.size(); i++)
+			assertEquals(i >= 192, set.contains(VARS.get(i)));
+		// only the words holding the last 64 indexes are stored, wherever they lie
+		assertTrue(set.bytes() <= 48 + 2 * 8);
+	}
+
+	@Test
+	public void testSparseFallback() {
+		IdSet set = IdSet.of(VARS.get(0), VARS.get(255), VARS.get(0));
+
+		assertTrue(set.usesIndexes());
+		assertEquals(2, set.size());
+		assertTrue(set.contains(VARS.get(0)));
+		assertTrue(set.contains(VARS.get(255)));
+		assertFalse(set.contains(VARS.get(128)));
+		assertEquals(48 + 2 * 4, set.bytes());
+
+		List<Identifier> elements = new ArrayList<>();
+		set.forEach(elements::add);
+		assertEquals(List.of(VARS.get(0), VARS.get(255)), elements);
+	}
+
+	@Test
+	public void testBuilderGrowth() {
+		IdSet.Builder builder = IdSet.of(VARS.get(128)).builder();
+
+		// the window grows downwards and then upwards
+		assertTrue(builder.add(VARS.get(0)));
+		assertTrue(builder.add(VARS.get(255)));
+		assertFalse(builder.add(VARS.get(128)));
+		assertTrue(builder.contains(VARS.get(0)));
+		assertTrue(builder.contains(VARS.get(255)));
+		assertFalse(builder.contains(VARS.get(64)));
+
+		IdSet sparse = builder.build();
+		assertTrue(sparse.usesIndexes());
+		assertEquals(IdSet.of(VARS.get(0), VARS.get(128), VARS.get(255)), sparse);
+
+		// the builder is still usable after build, and filling the window makes the set dense
+		for (Identifier id : VARS)
+			builder.add(id);
+		IdSet dense = builder.build();
+		assertFalse(dense.usesIndexes());
+		assertEquals(IdSet.of(VARS), dense);
+		assertEquals(3, sparse.size());
+	}
+
+	@Test
+	public void testOperatorsAcrossEncodings() {
+		IdSet dense = IdSet.of(range(0, 64));
+		IdSet sparse = IdSet.of(VARS.get(5), VARS.get(255));
+		assertFalse(dense.usesIndexes());
+		assertTrue(sparse.usesIndexes());
+
+		List<Identifier> union = new ArrayList<>(range(0, 64));
+		union.add(VARS.get(255));
+		assertEquals(IdSet.of(union), dense.or(sparse));
+		assertEquals(IdSet.of(union), sparse.or(dense));
+		assertEquals(IdSet.of(VARS.get(5)), dense.and(sparse));
+		assertEquals(IdSet.of(VARS.get(5)), sparse.and(dense));
+
+		assertTrue(dense.or(sparse).containsAll(dense));
+		assertTrue(dense.or(sparse).containsAll(sparse));
+		assertFalse(dense.containsAll(sparse));
+		assertTrue(dense.containsAll(IdSet.of(VARS.get(5))));
+		assertEquals(sparse.add(VARS.get(5)), sparse);
+		assertEquals(IdSet.of(VARS.get(5), VARS.get(200), VARS.get(255)), sparse.add(VARS.get(200)));
+	}
+
+	@Test
+	public void testSwitchingEncodings() {
+		IdSet ends = IdSet.of(VARS.get(0), VARS.get(255));
+		assertTrue(ends.usesIndexes());
+
+		// filling the gap makes the set dense...
+		IdSet all = ends.or(IdSet.of(range(1, 255)));
+		assertFalse(all.usesIndexes());
+		assertEquals(256, all.size());
+		assertEquals(IdSet.of(VARS), all);
+
+		// ...and intersecting it with the ends makes it sparse again
+		IdSet back = all.and(ends);
+		assertTrue(back.usesIndexes());
+		assertEquals(ends, back);
+		assertEquals(ends.hashCode(), back.hashCode());
+
+		// adding elements one at a time switches encoding as well
+		IdSet grown = ends;
+		for (Identifier id : range(1, 255))
+			grown = grown.add(id);
+		assertFalse(grown.usesIndexes());
+		assertEquals(all, grown);
+
+		// sets built from the same identifiers through different paths agree
+		assertEquals(all, all.builder().build());
+		assertEquals(ends, ends.builder().build());
+	}
+
+	@Test
+	public void testTopAndBottom() {
+		assertTrue(IdSet.TOP.isTop());
+		assertTrue(IdSet.BOTTOM.isBottom());
+		assertEquals(IdSet.TOP, IdSet.of(range(0, 0)));
+		assertEquals(IdSet.TOP, IdSet.of(range(0, 64)).and(IdSet.of(range(192, 256))));
+		assertTrue(IdSet.BOTTOM.contains(VARS.get(0)));
+		assertFalse(IdSet.TOP.contains(VARS.get(0)));
+	}
+}
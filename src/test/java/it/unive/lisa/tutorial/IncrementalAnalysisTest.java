@@ -0,0 +1,69 @@
+package it.unive.lisa.tutorial;
+
+import static org.junit.Assert.assertEquals;
+
+import it.unive.lisa.AnalysisException;
+import it.unive.lisa.imp.IMPFrontend;
+import it.unive.lisa.imp.ParsingException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+public class IncrementalAnalysisTest {
+
+	@Test
+	public void testIncrementalSigns() throws ParsingException, AnalysisException, IOException {
+		Path cache = Paths.get("outputs/incremental/signs-cache");
+		Path workdir = Paths.get("outputs/incremental/signs");
+		clear(cache);
+		IncrementalAnalysis analysis = new IncrementalAnalysis(Preset.SIGNS.name(), Preset.SIGNS::configuration, cache);
+
+		String code = Files.readString(Paths.get("inputs/signs.imp"));
+		IncrementalAnalysis.Result first = analysis.run(IMPFrontend.processText(code), workdir);
+		IncrementalAnalysis.Result second = analysis.run(IMPFrontend.processText(code), workdir);
+
+		// with the modular analysis each cfg is a unit: the first run analyzes all of them,
+		// while the second one restores all of them from the cache
+		assertEquals(first.getUnits().size(), first.getAnalyzed());
+		assertEquals(0, second.getAnalyzed());
+		assertEquals(first.getWarnings(), second.getWarnings());
+
+		// changing a constant (without moving anything) only affects the method containing it
+		IncrementalAnalysis.Result third = analysis
+				.run(IMPFrontend.processText(code.replace("def j = -10;", "def j = -11;")), workdir);
+		assertEquals(1, third.getAnalyzed());
+	}
+
+	@Test
+	public void testIncrementalTaint() throws ParsingException, AnalysisException, IOException {
+		Path cache = Paths.get("outputs/incremental/taint-cache");
+		Path workdir = Paths.get("outputs/incremental/taint");
+		clear(cache);
+		IncrementalAnalysis analysis = new IncrementalAnalysis(Preset.TAINT.name(), Preset.TAINT::configuration, cache);
+
+		IncrementalAnalysis.Result first = analysis.run(IMPFrontend.processFile("inputs/taint.imp"), workdir);
+		IncrementalAnalysis.Result second = analysis.run(IMPFrontend.processFile("inputs/taint.imp"), workdir);
+
+		// the warnings of the taint check are restored from the cache
+		System.out.println("The following warnings were generated:");
+		for (String warning : second.getWarnings())
+			System.out.println(warning);
+		assertEquals(0, second.getAnalyzed());
+		assertEquals(first.getWarnings(), second.getWarnings());
+	}
+
+	private static void clear(
+			Path directory) throws IOException {
+		if (!Files.exists(directory))
+			return;
+		try (Stream<Path> files = Files.walk(directory)) {
+			for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+				Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package it.unive.lisa.tutorial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import it.unive.lisa.AnalysisException;
+import it.unive.lisa.DefaultConfiguration;
+import it.unive.lisa.LiSA;
+import it.unive.lisa.LiSAReport;
+import it.unive.lisa.analysis.heap.pointbased.FieldSensitivePointBasedHeap;
+import it.unive.lisa.conf.LiSAConfiguration;
+import it.unive.lisa.conf.LiSAConfiguration.GraphType;
+import it.unive.lisa.imp.IMPFrontend;
+import it.unive.lisa.imp.ParsingException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class InterningValueDomainTest {
+
+	@Test
+	public void testInternedPentagons() throws ParsingException, AnalysisException {
+		// the same analysis of PentagonsTest, with the states of the value domain interned
+		InterningValueDomain<Pentagons> domain = new InterningValueDomain<>(new Pentagons());
+		LiSAConfiguration conf = new DefaultConfiguration();
+		conf.workdir = "outputs/interning";
+		conf.analysisGraphs = GraphType.NONE;
+		conf.abstractState = DefaultConfiguration.simpleState(
+				new FieldSensitivePointBasedHeap(),
+				domain,
+				DefaultConfiguration.defaultTypeDomain());
+		conf.semanticChecks.add(new ArrayBoundsCheck());
+		conf.fixpointWorkingSet = new WtoWorkingSet();
+		conf.useWideningPoints = true;
+
+		List<Object> states = new ArrayList<>();
+		conf.semanticChecks.add(new ValueStates<>((node, state) -> states.add(state)));
+		LiSAReport report = new LiSA(conf).run(IMPFrontend.processFile("inputs/pentagons.imp"));
+
+		// equal post-states are the same instance
+		Set<Object> identities = Collections.newSetFromMap(new IdentityHashMap<>());
+		identities.addAll(states);
+		assertEquals(new HashSet<>(states).size(), identities.size());
+		// and some program points share their post-state
+		assertTrue(identities.size() < states.size());
+		assertTrue(domain.getInterner().size() > 0);
+
+		// interning does not change the results of the analysis
+		LiSAConfiguration plain = Preset.PENTAGONS.configuration("outputs/interning-plain");
+		LiSAReport expected = new LiSA(plain).run(IMPFrontend.processFile("inputs/pentagons.imp"));
+		assertEquals(new TreeSet<>(expected.getWarnings()), new TreeSet<>(report.getWarnings()));
+	}
+}
@@ -0,0 +1,106 @@
+package it.unive.lisa.tutorial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import it.unive.lisa.AnalysisException;
+import it.unive.lisa.DefaultConfiguration;
+import it.unive.lisa.LiSA;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
+import it.unive.lisa.conf.LiSAConfiguration;
+import it.unive.lisa.conf.LiSAConfiguration.GraphType;
+import it.unive.lisa.imp.IMPFrontend;
+import it.unive.lisa.imp.ParsingException;
+import it.unive.lisa.program.Program;
+import it.unive.lisa.program.cfg.CFG;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class LazyHtmlDumpTest {
+
+	private static final int SHARD_SIZE = 4;
+
+	@Test
+	public void testLazyHtmlDump() throws ParsingException, AnalysisException, IOException {
+		// we parse the program to get the CFG representation of the code in it
+		Program program = IMPFrontend.processFile("inputs/signs.imp");
+
+		// we build a new configuration for the analysis
+		LiSAConfiguration conf = new DefaultConfiguration();
+
+		// we specify where we want files to be generated
+		conf.workdir = "outputs/lazy-html";
+
+		// instead of LiSA's html graphs, we dump lightweight pages that load the states on demand,
+		// with small shards so that each cfg needs more than one
+		conf.analysisGraphs = GraphType.NONE;
+		conf.semanticChecks.add(new LazyHtmlDump<>(SHARD_SIZE));
+
+		// we specify the analysis that we want to execute
+		conf.abstractState = DefaultConfiguration.simpleState(
+				DefaultConfiguration.defaultHeapDomain(),
+				new ValueEnvironment<>(new Interval()),
+				DefaultConfiguration.defaultTypeDomain());
+
+		// we instantiate LiSA with our configuration
+		LiSA lisa = new LiSA(conf);
+
+		// finally, we tell LiSA to analyze the program
+		lisa.run(program);
+
+		Path pages = Paths.get(conf.workdir, LazyHtmlDump.DIRECTORY);
+		assertTrue(Files.exists(pages.resolve("index.html")));
+		assertTrue(Files.isDirectory(pages.resolve("states")));
+
+		// the index links the page of each cfg, titled with its signature
+		Map<String, String> names = new HashMap<>();
+		Matcher link = Pattern.compile("<li><a href=\"(.*)\\.html\">(.*)</a></li>")
+				.matcher(read(pages.resolve("index.html")));
+		while (link.find())
+			names.put(link.group(2), link.group(1));
+		assertEquals(program.getAllCFGs().size(), names.size());
+
+		for (CFG cfg : program.getAllCFGs()) {
+			String name = names.get(BinaryResults.html(cfg.getDescriptor().getFullSignature()));
+			assertNotNull(cfg.getDescriptor().getFullSignature(), name);
+			int statements = cfg.getNodes().size();
+
+			// one row for each statement
+			String page = read(pages.resolve(name + ".html"));
+			assertEquals(statements, page.split("<tr class=\"node\"", -1).length - 1);
+
+			// and one entry for each statement in the shards, each one holding the statements of its range
+			Path shards = pages.resolve("states").resolve(name);
+			int count = (statements + SHARD_SIZE - 1) / SHARD_SIZE;
+			try (var files = Files.list(shards)) {
+				assertEquals(count, files.count());
+			}
+			for (int shard = 0; shard < count; shard++) {
+				List<String> lines = Files.readAllLines(shards.resolve(shard + ".js"), StandardCharsets.UTF_8);
+				assertEquals("lisaShard(" + shard + ", [", lines.get(0));
+				assertEquals("]);", lines.get(lines.size() - 1));
+				// the states of a statement are serialized on a single line
+				assertEquals(Math.min(SHARD_SIZE, statements - shard * SHARD_SIZE), lines.size() - 2);
+				for (String entry : lines.subList(1, lines.size() - 1))
+					assertTrue(entry, entry.startsWith("["));
+			}
+		}
+	}
+
+	private static String read(
+			Path file)
+			throws IOException {
+		return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,140 @@
+package it.unive.lisa.tutorial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.SemanticOracle;
+import it.unive.lisa.analysis.lattices.Satisfiability;
+import it.unive.lisa.program.SyntheticLocation;
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.CodeLocation;
+import it.unive.lisa.program.cfg.ProgramPoint;
+import it.unive.lisa.program.type.BoolType;
+import it.unive.lisa.program.type.Int32Type;
+import it.unive.lisa.symbolic.value.BinaryExpression;
+import it.unive.lisa.symbolic.value.Constant;
+import it.unive.lisa.symbolic.value.Variable;
+import it.unive.lisa.symbolic.value.operator.binary.ComparisonEq;
+import it.unive.lisa.symbolic.value.operator.binary.ComparisonGt;
+import it.unive.lisa.symbolic.value.operator.binary.ComparisonLt;
+import it.unive.lisa.tutorial.ProfilingValueDomain.Operation;
+import org.junit.Test;
+
+import it.unive.lisa.AnalysisException;
+import it.unive.lisa.DefaultConfiguration;
+import it.unive.lisa.LiSA;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
+import it.unive.lisa.conf.LiSAConfiguration;
+import it.unive.lisa.conf.LiSAConfiguration.GraphType;
+import it.unive.lisa.imp.IMPFrontend;
+import it.unive.lisa.imp.ParsingException;
+import it.unive.lisa.program.Program;
+
+public class LazyProductTest {
+
+    // none of the domains inspects the program point
+    private static final ProgramPoint POINT = new ProgramPoint() {
+
+        @Override
+        public CFG getCFG() {
+            return null;
+        }
+
+        @Override
+        public CodeLocation getLocation() {
+            return SyntheticLocation.INSTANCE;
+        }
+    };
+
+    private static final SemanticOracle ORACLE = DefaultConfiguration.simpleState(
+        DefaultConfiguration.defaultHeapDomain(),
+        new ValueEnvironment<>(new Interval()),
+        DefaultConfiguration.defaultTypeDomain());
+
+    private static final Variable X = new Variable(Int32Type.INSTANCE, "x", SyntheticLocation.INSTANCE);
+
+    private static final Variable Y = new Variable(Int32Type.INSTANCE, "y", SyntheticLocation.INSTANCE);
+
+    private static Constant constant(int value) {
+        return new Constant(Int32Type.INSTANCE, value, SyntheticLocation.INSTANCE);
+    }
+
+    private static BinaryExpression gt(int left, int right) {
+        return new BinaryExpression(BoolType.INSTANCE, constant(left), constant(right), ComparisonGt.INSTANCE, SyntheticLocation.INSTANCE);
+    }
+
+    @Test
+    public void testLazyProduct() throws ParsingException, AnalysisException, SemanticException {
+        // we parse the program to get the CFG representation of the code in it
+        Program program = IMPFrontend.processFile("inputs/congruence_equality.imp");
+
+        // we build a new configuration for the analysis
+        LiSAConfiguration conf = new DefaultConfiguration();
+
+        // we specify where we want files to be generated
+        conf.workdir = "outputs/lazy_product";
+
+        // we specify the visual format of the analysis results
+        conf.analysisGraphs = GraphType.HTML;
+
+        // we specify the analysis that we want to execute
+        conf.abstractState = DefaultConfiguration.simpleState(
+            DefaultConfiguration.defaultHeapDomain(),
+            new LazyProduct(new EqualityDomain(), new ValueEnvironment<>(new CongruenceDomain())),
+            DefaultConfiguration.defaultTypeDomain());
+
+        // we instantiate LiSA with our configuration
+        LiSA lisa = new LiSA(conf);
+
+        // finally, we tell LiSA to analyze the program
+        lisa.run(program);
+    }
+
+    @Test
+    public void testConstantFalseGuardIsBottom() throws SemanticException {
+        LazyProduct product = new LazyProduct(new EqualityDomain(), new ValueEnvironment<>(new CongruenceDomain()));
+
+        // the guard has no identifiers, but the congruences still refute it
+        assertTrue(product.assume(gt(1, 2), POINT, POINT, ORACLE).isBottom());
+        assertFalse(product.assume(gt(2, 1), POINT, POINT, ORACLE).isBottom());
+    }
+
+    @Test
+    public void testBottomStopsEvaluation() throws SemanticException {
+        ProfilingValueDomain<EqualityDomain> equalities = new ProfilingValueDomain<>(new EqualityDomain());
+        LazyProduct product = new LazyProduct(new ValueEnvironment<>(new CongruenceDomain()), equalities);
+
+        // the congruences go to bottom first, so the equalities never see the guard
+        LazyProduct bottom = product.assume(gt(1, 2), POINT, POINT, ORACLE);
+        assertTrue(bottom.isBottom());
+        assertEquals(0, equalities.getProfile().getCalls(Operation.ASSUME));
+
+        // and nothing is evaluated on a bottom product
+        assertTrue(bottom.assign(X, constant(1), POINT, ORACLE).isBottom());
+        assertEquals(Satisfiability.BOTTOM, bottom.satisfies(gt(2, 1), POINT, ORACLE));
+        assertEquals(0, equalities.getProfile().getCalls(Operation.ASSIGN));
+        assertEquals(0, equalities.getProfile().getCalls(Operation.SATISFIES));
+    }
+
+    @Test
+    public void testSatisfiesStopsAtFirstDecision() throws SemanticException {
+        ProfilingValueDomain<EqualityDomain> equalities = new ProfilingValueDomain<>(new EqualityDomain());
+        ProfilingValueDomain<ValueEnvironment<CongruenceDomain>> congruences = new ProfilingValueDomain<>(new ValueEnvironment<>(new CongruenceDomain()));
+        LazyProduct product = new LazyProduct(equalities, congruences).assign(Y, X, POINT, ORACLE);
+        assertEquals(1, congruences.getProfile().getCalls(Operation.ASSIGN));
+
+        // after y = x the equalities decide x == y, so the congruences are not asked
+        BinaryExpression eq = new BinaryExpression(BoolType.INSTANCE, X, Y, ComparisonEq.INSTANCE, SyntheticLocation.INSTANCE);
+        assertEquals(Satisfiability.SATISFIED, product.satisfies(eq, POINT, ORACLE));
+        assertEquals(1, equalities.getProfile().getCalls(Operation.SATISFIES));
+        assertEquals(0, congruences.getProfile().getCalls(Operation.SATISFIES));
+
+        // the equalities cannot decide 1 < 2, so the query goes on to the congruences
+        BinaryExpression lt = new BinaryExpression(BoolType.INSTANCE, constant(1), constant(2), ComparisonLt.INSTANCE, SyntheticLocation.INSTANCE);
+        assertEquals(Satisfiability.SATISFIED, product.satisfies(lt, POINT, ORACLE));
+        assertEquals(2, equalities.getProfile().getCalls(Operation.SATISFIES));
+        assertEquals(1, congruences.getProfile().getCalls(Operation.SATISFIES));
+    }
+}
@@ -0,0 +1,47 @@
+package it.unive.lisa.tutorial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import it.unive.lisa.AnalysisException;
+import it.unive.lisa.LiSA;
+import it.unive.lisa.LiSAReport;
+import it.unive.lisa.conf.LiSAConfiguration;
+import it.unive.lisa.imp.IMPFrontend;
+import it.unive.lisa.imp.ParsingException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.TreeSet;
+
+public class LeanResultsTest {
+
+	@Test
+	public void testLeanTaint() throws ParsingException, AnalysisException {
+		LiSAReport lean = run(LeanResults.configure(Preset.TAINT.configuration("outputs/lean/taint")),
+				"inputs/taint.imp");
+		LiSAReport full = run(Preset.TAINT.configuration("outputs/lean/taint-full"), "inputs/taint.imp");
+		assertFalse(full.getWarnings().isEmpty());
+		assertEquals(new TreeSet<>(full.getWarnings()), new TreeSet<>(lean.getWarnings()));
+	}
+
+	@Test
+	public void testLeanPentagons() throws IOException, ParsingException, AnalysisException {
+		LiSAReport lean = run(LeanResults.configure(Preset.PENTAGONS.configuration("outputs/lean/pentagons")),
+				"inputs/pentagons.imp");
+		LiSAReport full = run(Preset.PENTAGONS.configuration("outputs/lean/pentagons-full"), "inputs/pentagons.imp");
+		assertEquals(new TreeSet<>(full.getWarnings()), new TreeSet<>(lean.getWarnings()));
+		// the accesses proven safe are the same
+		assertEquals(Files.readAllLines(Paths.get("outputs/lean/pentagons-full", ArrayBoundsCheck.REPORT_FILE)),
+				Files.readAllLines(Paths.get("outputs/lean/pentagons", ArrayBoundsCheck.REPORT_FILE)));
+	}
+
+	private static LiSAReport run(
+			LiSAConfiguration conf,
+			String program)
+			throws ParsingException, AnalysisException {
+		return new LiSA(conf).run(IMPFrontend.processFile(program));
+	}
+}
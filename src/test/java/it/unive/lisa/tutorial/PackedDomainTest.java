@@ -0,0 +1,134 @@
+package it.unive.lisa.tutorial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import it.unive.lisa.AnalysisException;
+import it.unive.lisa.DefaultConfiguration;
+import it.unive.lisa.LiSA;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.value.ValueDomain;
+import it.unive.lisa.conf.LiSAConfiguration;
+import it.unive.lisa.conf.LiSAConfiguration.GraphType;
+import it.unive.lisa.imp.IMPFrontend;
+import it.unive.lisa.imp.ParsingException;
+import it.unive.lisa.program.Program;
+import it.unive.lisa.symbolic.value.Identifier;
+import org.apache.commons.collections4.CollectionUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class PackedDomainTest {
+
+	private static final String PROGRAM = "inputs/upperbounds.imp";
+
+	@Test
+	public void testPacks() throws ParsingException {
+		Program program = IMPFrontend.processFile(PROGRAM);
+
+		// in chain, x, y and z appear together in the guards and in r = z - x
+		VariablePacks packs = VariablePacks.of(program);
+		assertTrue(packs.getPackCount() > 0);
+		boolean found = false;
+		for (int i = 0; i < packs.getPackCount(); i++)
+			found |= packs.getMembers(i).containsAll(Set.of("r", "x", "y", "z"));
+		assertTrue(packs.toString(), found);
+
+		// packs never exceed their maximum size
+		VariablePacks small = VariablePacks.of(program, 2);
+		for (int i = 0; i < small.getPackCount(); i++)
+			assertEquals(2, small.getMembers(i).size());
+	}
+
+	@Test
+	public void testPackedPentagons() throws ParsingException, AnalysisException {
+		Program program = IMPFrontend.processFile(PROGRAM);
+		assertTrue(run(program, new PackedDomain<>(VariablePacks.of(program), new Pentagons()), "pentagons"));
+	}
+
+	@Test
+	public void testPackedUpperBounds() throws ParsingException, AnalysisException {
+		Program program = IMPFrontend.processFile(PROGRAM);
+		assertTrue(run(program, new PackedDomain<>(VariablePacks.of(program), new StrictUpperBounds()), "upperbounds"));
+	}
+
+	@Test
+	public void testMixedPacks() throws ParsingException, AnalysisException {
+		Program program = IMPFrontend.processFile(PROGRAM);
+
+		// with two variables per pack, r = z - x reads a variable outside of the pack of r, that then forgets it
+		VariablePacks packs = VariablePacks.of(program, 2);
+		boolean mixed = false;
+		for (int i = 0; i < packs.getPackCount(); i++)
+			mixed |= packs.getMembers(i).contains("r") && !packs.getMembers(i).containsAll(Set.of("x", "z"));
+		assertTrue(packs.toString(), mixed);
+
+		run(program, new PackedDomain<>(packs, new Pentagons()), "mixed");
+	}
+
+	// yields whether some pack holds a relation after some statement, checking that the intervals of the packed
+	// analysis are never more precise than the ones of the analysis with pentagons over all the variables
+	private static <D extends ValueDomain<D>> boolean run(
+			Program program,
+			PackedDomain<D> domain,
+			String name)
+			throws ParsingException,
+			AnalysisException {
+		Map<String, List<Object>> packed = analyze(program, domain, name);
+		Map<String, List<Object>> unpacked = analyze(IMPFrontend.processFile(PROGRAM), new Pentagons(),
+				name + "-unpacked");
+		assertEquals(unpacked.keySet(), packed.keySet());
+
+		boolean found = false;
+		for (Map.Entry<String, List<Object>> entry : packed.entrySet()) {
+			List<Object> expected = unpacked.get(entry.getKey());
+			assertEquals(expected.size(), entry.getValue().size());
+			for (int i = 0; i < expected.size(); i++) {
+				PackedDomain<?> state = (PackedDomain<?>) entry.getValue().get(i);
+				Pentagons pentagons = (Pentagons) expected.get(i);
+				found |= !state.isBottom() && !state.relational().isEmpty();
+				for (Identifier id : CollectionUtils.union(state.intervals().getKeys(), pentagons.intervals().getKeys()))
+					assertTrue(entry.getKey() + ": " + id,
+							lessOrEqual(pentagons.intervals().getState(id), state.intervals().getState(id)));
+			}
+		}
+		return found;
+	}
+
+	private static boolean lessOrEqual(
+			Interval precise,
+			Interval approximation) {
+		try {
+			return precise.lessOrEqual(approximation);
+		} catch (SemanticException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// yields the value states after each statement
+	private static <V extends ValueDomain<V>> Map<String, List<Object>> analyze(
+			Program program,
+			V domain,
+			String name)
+			throws AnalysisException {
+		LiSAConfiguration conf = new DefaultConfiguration();
+		conf.workdir = "outputs/packed/" + name;
+		conf.analysisGraphs = GraphType.NONE;
+		conf.abstractState = DefaultConfiguration.simpleState(
+				DefaultConfiguration.defaultHeapDomain(),
+				domain,
+				DefaultConfiguration.defaultTypeDomain());
+		conf.fixpointWorkingSet = new WtoWorkingSet();
+		conf.useWideningPoints = true;
+		Map<String, List<Object>> states = new HashMap<>();
+		conf.semanticChecks.add(new ValueStates<>((node, state) -> states
+				.computeIfAbsent(node.getLocation() + " " + node, k -> new ArrayList<>()).add(state)));
+		new LiSA(conf).run(program);
+		return states;
+	}
+}
@@ -0,0 +1,91 @@
+package it.unive.lisa.tutorial;
+
+import static org.junit.Assert.assertEquals;
+
+import it.unive.lisa.AnalysisException;
+import it.unive.lisa.DefaultConfiguration;
+import it.unive.lisa.analysis.heap.pointbased.FieldSensitivePointBasedHeap;
+import it.unive.lisa.checks.warnings.Warning;
+import it.unive.lisa.conf.LiSAConfiguration;
+import it.unive.lisa.conf.LiSAConfiguration.GraphType;
+import it.unive.lisa.imp.IMPFrontend;
+import it.unive.lisa.imp.ParsingException;
+import it.unive.lisa.program.Program;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+public class ParallelAnalysisTest {
+
+	@Test
+	public void testParallelAnalysis() throws ParsingException, AnalysisException, IOException {
+		// the same analysis is executed with different degrees of parallelism:
+		// the warnings and the files generated must always be the same
+		Map<String, String> expectedFiles = null;
+		List<String> expectedWarnings = null;
+		for (int threads : new int[] { 1, 2, 4, 8 }) {
+			// we parse the program to get the CFG representation of the code in it
+			Program program = IMPFrontend.processFile("inputs/pentagons.imp");
+
+			String workdir = "outputs/parallel/threads" + threads;
+			ParallelAnalysis analysis = new ParallelAnalysis(() -> configuration(workdir), threads);
+			ParallelAnalysis.Result result = analysis.run(program);
+
+			List<String> warnings = new ArrayList<>();
+			for (Warning warning : result.getWarnings())
+				warnings.add(warning.toString());
+			Map<String, String> files = contents(Paths.get(workdir));
+
+			if (expectedFiles == null) {
+				expectedFiles = files;
+				expectedWarnings = warnings;
+			} else {
+				assertEquals("Different warnings with " + threads + " threads", expectedWarnings, warnings);
+				assertEquals("Different results with " + threads + " threads", expectedFiles, files);
+			}
+		}
+	}
+
+	private static LiSAConfiguration configuration(
+			String workdir) {
+		// we build a new configuration for the analysis
+		LiSAConfiguration conf = new DefaultConfiguration();
+
+		// we specify where we want files to be generated
+		conf.workdir = workdir;
+
+		// instead of graphs, we dump the results in json files that can be compared
+		conf.analysisGraphs = GraphType.NONE;
+		conf.serializeResults = true;
+
+		// we specify the analysis that we want to execute
+		conf.abstractState = DefaultConfiguration.simpleState(
+				new FieldSensitivePointBasedHeap(),
+				new Pentagons(),
+				DefaultConfiguration.defaultTypeDomain());
+
+		// checks hold state, so each configuration gets its own instance
+		conf.semanticChecks.add(new ArrayBoundsCheck());
+
+		return conf;
+	}
+
+	private static Map<String, String> contents(
+			Path workdir) throws IOException {
+		// the content of each generated file, indexed by its path relative to the working directory
+		Map<String, String> contents = new TreeMap<>();
+		try (Stream<Path> files = Files.walk(workdir)) {
+			for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator)
+				contents.put(workdir.relativize(file).toString(), Files.readString(file));
+		}
+		return contents;
+	}
+}
@@ -0,0 +1,58 @@
+package it.unive.lisa.tutorial;
+
+import static org.junit.Assert.assertTrue;
+
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
+import it.unive.lisa.program.SyntheticLocation;
+import it.unive.lisa.program.type.Int32Type;
+import it.unive.lisa.symbolic.value.Variable;
+import it.unive.lisa.util.numeric.MathNumber;
+import org.junit.Test;
+
+public class PentagonsJoinTest {
+
+	private static final Variable X = new Variable(Int32Type.INSTANCE, "x", SyntheticLocation.INSTANCE);
+
+	private static final Variable Y = new Variable(Int32Type.INSTANCE, "y", SyntheticLocation.INSTANCE);
+
+	private static final Variable Z = new Variable(Int32Type.INSTANCE, "z", SyntheticLocation.INSTANCE);
+
+	@Test
+	public void testJoinIsClosed() throws SemanticException {
+		// x < y < z on the left, as in the inner branch of chain in inputs/upperbounds.imp
+		Pentagons left = new Pentagons(
+				new StrictUpperBounds().top().builder().addBound(X, Y).addBound(Y, Z).addBound(X, Z).build(),
+				intervals(0, 0, 1, 1, 2, 2));
+		// only y < z on the right, where the intervals prove x < y but not x < z
+		Pentagons right = new Pentagons(
+				new StrictUpperBounds().top().builder().addBound(Y, Z).build(),
+				intervals(0, 10, 11, 11, 5, 20));
+
+		// y < z is common, x < y is recovered from the left, and x < z follows from them
+		StrictUpperBounds joined = left.lub(right).bounds();
+		assertTrue(joined.getState(Y).contains(Z));
+		assertTrue(joined.getState(X).contains(Y));
+		assertTrue(joined.toString(), joined.getState(X).contains(Z));
+	}
+
+	private static ValueEnvironment<Interval> intervals(
+			int xLow,
+			int xHigh,
+			int yLow,
+			int yHigh,
+			int zLow,
+			int zHigh)
+			throws SemanticException {
+		return new ValueEnvironment<>(new Interval()).top()
+				.putState(X, interval(xLow, xHigh))
+				.putState(Y, interval(yLow, yHigh))
+				.putState(Z, interval(zLow, zHigh));
+	}
+
+	private static Interval interval(
+			int low,
+			int high) {
+		return new Interval(new MathNumber(low), new MathNumber(high));
+	}
+}
@@ -0,0 +1,53 @@
+package it.unive.lisa.tutorial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import it.unive.lisa.AnalysisException;
+import it.unive.lisa.DefaultConfiguration;
+import it.unive.lisa.LiSA;
+import it.unive.lisa.LiSAReport;
+import it.unive.lisa.analysis.heap.pointbased.FieldSensitivePointBasedHeap;
+import it.unive.lisa.conf.LiSAConfiguration;
+import it.unive.lisa.conf.LiSAConfiguration.GraphType;
+import it.unive.lisa.imp.IMPFrontend;
+import it.unive.lisa.imp.ParsingException;
+import it.unive.lisa.program.Program;
+import org.junit.Test;
+
+import java.util.TreeSet;
+
+public class ProfilingValueDomainTest {
+
+    @Test
+    public void testProfiledPentagons() throws ParsingException, AnalysisException {
+        Program program = IMPFrontend.processFile("inputs/pentagons.imp");
+
+        // the same analysis of PentagonsTest, with the value domain wrapped in a profiler
+        ProfilingValueDomain<Pentagons> domain = new ProfilingValueDomain<>(new Pentagons());
+        LiSAConfiguration conf = new DefaultConfiguration();
+        conf.workdir = "outputs/profiling";
+        conf.analysisGraphs = GraphType.NONE;
+        conf.abstractState = DefaultConfiguration.simpleState(
+                new FieldSensitivePointBasedHeap(),
+                domain,
+                DefaultConfiguration.defaultTypeDomain());
+        conf.semanticChecks.add(new ArrayBoundsCheck());
+        conf.fixpointWorkingSet = new WtoWorkingSet();
+        conf.useWideningPoints = true;
+
+        // the profile is printed at the end of the analysis
+        conf.semanticChecks.add(domain.getProfile().reporter());
+        LiSAReport report = new LiSA(conf).run(program);
+
+        ProfilingValueDomain.Profile profile = domain.getProfile();
+        assertTrue(profile.getCalls(ProfilingValueDomain.Operation.ASSIGN) > 0);
+        assertTrue(profile.getCalls(ProfilingValueDomain.Operation.LUB) > 0);
+        assertTrue(profile.getNanos(ProfilingValueDomain.Operation.ASSIGN) > 0);
+
+        // profiling does not change the results of the analysis
+        LiSAConfiguration plain = Preset.PENTAGONS.configuration("outputs/profiling-plain");
+        LiSAReport expected = new LiSA(plain).run(IMPFrontend.processFile("inputs/pentagons.imp"));
+        assertEquals(new TreeSet<>(expected.getWarnings()), new TreeSet<>(report.getWarnings()));
+    }
+}
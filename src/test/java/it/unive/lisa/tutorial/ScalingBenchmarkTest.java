@@ -0,0 +1,40 @@
+package it.unive.lisa.tutorial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import it.unive.lisa.imp.IMPFrontend;
+import it.unive.lisa.imp.ParsingException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+public class ScalingBenchmarkTest {
+
+	@Test
+	public void testGeneratedProgramsParse() throws ParsingException {
+		// every shape of program must be valid IMP code
+		ProgramGenerator generator = new ProgramGenerator().methods(6).variables(5).loopDepth(3).callDepth(2)
+				.branchDensity(0.5).sourceDensity(0.2);
+		String code = generator.generate();
+		assertEquals(code, generator.generate());
+		IMPFrontend.processText(code);
+	}
+
+	@Test
+	public void testScalingBenchmark() throws IOException {
+		// we run all the domains on two small programs, once each
+		Path results = new ScalingBenchmark(ScalingBenchmark.PRESETS, ScalingBenchmark.doubling(2), 1)
+				.run(Paths.get("outputs/scaling"));
+
+		List<String> rows = Files.readAllLines(results, StandardCharsets.UTF_8);
+		assertEquals(1 + 2 * ScalingBenchmark.PRESETS.size(), rows.size());
+		for (String row : rows.subList(1, rows.size()))
+			assertTrue(row, row.contains("," + BatchAnalysis.Status.ANALYZED + ","));
+	}
+}
@@ -0,0 +1,113 @@
+package it.unive.lisa.tutorial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import it.unive.lisa.AnalysisException;
+import it.unive.lisa.DefaultConfiguration;
+import it.unive.lisa.LiSA;
+import it.unive.lisa.LiSAReport;
+import it.unive.lisa.analysis.nonrelational.value.NonRelationalValueDomain;
+import it.unive.lisa.conf.LiSAConfiguration;
+import it.unive.lisa.imp.IMPFrontend;
+import it.unive.lisa.imp.ParsingException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class SparseEnvironmentTest {
+
+	@Test
+	public void testSparseInterval() throws ParsingException, AnalysisException {
+		compare(Preset.INTERVAL, new Interval(), "inputs/signs.imp", "outputs/sparse/interval");
+	}
+
+	@Test
+	public void testSparseSigns() throws ParsingException, AnalysisException {
+		compare(Preset.SIGNS, new Signs(), "inputs/signs.imp", "outputs/sparse/signs");
+	}
+
+	@Test
+	public void testSparseCongruence() throws ParsingException, AnalysisException {
+		compare(Preset.CONGRUENCE, CongruenceDomain.TOP, "inputs/congruence.imp", "outputs/sparse/congruence");
+	}
+
+	@Test
+	public void testSparseTaint() throws ParsingException, AnalysisException {
+		// the preset runs the TaintCheck, on the sparse states too
+		compare(Preset.TAINT, new Taint(), "inputs/taint.imp", "outputs/sparse/taint");
+	}
+
+	@Test
+	public void testSparseLongChains() throws IOException, ParsingException, AnalysisException {
+		Path program = Paths.get("outputs/sparse/definitions.imp");
+		Files.createDirectories(program.getParent());
+		Files.write(program, generate(2 * SparseEnvironment.CHAIN_LIMIT + 1).getBytes(StandardCharsets.UTF_8));
+		compare(Preset.INTERVAL, new Interval(), program.toString(), "outputs/sparse/definitions");
+	}
+
+	// the sparse analysis computes the same states of the dense one, with the same fixpoint, and the checks of the
+	// preset report the same warnings on them
+	private static <T extends NonRelationalValueDomain<T>> void compare(
+			Preset dense,
+			T domain,
+			String program,
+			String workdir)
+			throws ParsingException, AnalysisException {
+		LiSAConfiguration conf = dense.configuration(workdir + "-dense");
+		Map<String, Set<Object>> expected = new HashMap<>();
+		conf.semanticChecks.add(collect(expected));
+		LiSAReport expectedReport = new LiSA(conf).run(IMPFrontend.processFile(program));
+
+		conf = dense.configuration(workdir);
+		conf.abstractState = DefaultConfiguration.simpleState(
+				DefaultConfiguration.defaultHeapDomain(),
+				new SparseEnvironment<>(domain),
+				DefaultConfiguration.defaultTypeDomain());
+		Map<String, Set<Object>> actual = new HashMap<>();
+		conf.semanticChecks.add(collect(actual));
+		LiSAReport actualReport = new LiSA(conf).run(IMPFrontend.processFile(program));
+
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, actual);
+		assertEquals(new TreeSet<>(expectedReport.getWarnings()), new TreeSet<>(actualReport.getWarnings()));
+	}
+
+	// collects the value states after each statement, in their dense form
+	private static ValueStates<?> collect(
+			Map<String, Set<Object>> states) {
+		return new ValueStates<>((node, value) -> states
+				.computeIfAbsent(node.getLocation() + " " + node, k -> new HashSet<>())
+				.add(value instanceof SparseEnvironment ? ((SparseEnvironment<?>) value).toEnvironment() : value));
+	}
+
+	// a program whose branches and loop define more variables than the length of a chain, so that the states flatten
+	// into new bases along them and reach the joins with unrelated bases
+	private static String generate(
+			int variables) {
+		StringBuilder code = new StringBuilder("class sparse {\n\tdefinitions(a, b) {\n");
+		for (int i = 0; i < variables; i++)
+			code.append("\t\tdef v").append(i).append(" = ").append(i).append(";\n");
+		code.append("\t\tif (a > b) {\n");
+		for (int i = 0; i < variables; i++)
+			code.append("\t\t\tv").append(i).append(" = v").append((i + 1) % variables).append(" + 1;\n");
+		code.append("\t\t} else {\n");
+		for (int i = 0; i < variables; i++)
+			code.append("\t\t\tv").append(i).append(" = v").append((i + 2) % variables).append(" - 1;\n");
+		code.append("\t\t}\n\t\tdef i = 0;\n\t\twhile (i < 10) {\n");
+		for (int i = 0; i < variables; i++)
+			code.append("\t\t\tv").append(i).append(" = v").append(i).append(" + v").append((i + 3) % variables)
+					.append(";\n");
+		code.append("\t\t\ti = i + 1;\n\t\t}\n\t\treturn v0;\n\t}\n}\n");
+		return code.toString();
+	}
+}
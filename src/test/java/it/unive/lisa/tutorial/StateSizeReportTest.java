@@ -0,0 +1,49 @@
+package it.unive.lisa.tutorial;
+
+import static org.junit.Assert.assertTrue;
+
+import it.unive.lisa.AnalysisException;
+import it.unive.lisa.LiSA;
+import it.unive.lisa.conf.LiSAConfiguration;
+import it.unive.lisa.imp.IMPFrontend;
+import it.unive.lisa.imp.ParsingException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class StateSizeReportTest {
+
+	@Test
+	public void testPentagonsSizes() throws IOException, ParsingException, AnalysisException {
+		String report = run(Preset.PENTAGONS, "inputs/pentagons.imp", "outputs/sizes/pentagons");
+		// pentagons hold both intervals and bounds
+		assertTrue(report.contains("\"bounds\": "));
+		assertTrue(report.matches("(?s).*\"identifiers\": [1-9].*"));
+	}
+
+	@Test
+	public void testEqualitySizes() throws IOException, ParsingException, AnalysisException {
+		String report = run(Preset.EQUALITY, "inputs/equality.imp", "outputs/sizes/equality");
+		// x and y are equal after the first statements
+		assertTrue(report.matches("(?s).*\"largestClass\": [2-9].*"));
+	}
+
+	private static String run(
+			Preset preset,
+			String program,
+			String workdir)
+			throws IOException, ParsingException, AnalysisException {
+		LiSAConfiguration conf = preset.configuration(workdir);
+		StateSizeReport<?> sizes = new StateSizeReport<>(5);
+		conf.semanticChecks.add(sizes);
+		new LiSA(conf).run(IMPFrontend.processFile(program));
+
+		Path file = Paths.get(workdir, StateSizeReport.REPORT_FILE);
+		assertTrue(Files.exists(file));
+		return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+	}
+}
@@ -1,8 +1,14 @@
 package it.unive.lisa.tutorial;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 import it.unive.lisa.AnalysisException;
 import it.unive.lisa.DefaultConfiguration;
 import it.unive.lisa.LiSA;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.lattices.Satisfiability;
 import it.unive.lisa.analysis.heap.pointbased.FieldSensitivePointBasedHeap;
 import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
 import it.unive.lisa.conf.LiSAConfiguration;
@@ -10,6 +16,12 @@ import it.unive.lisa.conf.LiSAConfiguration.GraphType;
 import it.unive.lisa.imp.IMPFrontend;
 import it.unive.lisa.imp.ParsingException;
 import it.unive.lisa.program.Program;
+import it.unive.lisa.program.SyntheticLocation;
+import it.unive.lisa.program.type.BoolType;
+import it.unive.lisa.program.type.Int32Type;
+import it.unive.lisa.symbolic.value.BinaryExpression;
+import it.unive.lisa.symbolic.value.Variable;
+import it.unive.lisa.symbolic.value.operator.binary.ComparisonLt;
 import org.junit.Test;
 
 public class StrictUpperBoundsTest {
@@ -41,4 +53,31 @@ public class StrictUpperBoundsTest {
         // finally, we tell LiSA to analyze the program
         lisa.run(program);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testWideningDropsNewRows() throws SemanticException {
+        Variable x = new Variable(Int32Type.INSTANCE, "x", SyntheticLocation.INSTANCE);
+        Variable y = new Variable(Int32Type.INSTANCE, "y", SyntheticLocation.INSTANCE);
+        Variable z = new Variable(Int32Type.INSTANCE, "z", SyntheticLocation.INSTANCE);
+
+        // x has no bounds before the iteration, and gains one after it
+        StrictUpperBounds before = new StrictUpperBounds().builder().addBound(z, y).build();
+        StrictUpperBounds after = before.builder().addBound(x, y).build();
+
+        StrictUpperBounds widened = before.widening(after);
+        assertTrue(before.lessOrEqual(widened));
+        assertTrue(after.lessOrEqual(widened));
+        assertFalse(widened.getState(x).contains(y));
+        assertTrue(widened.getState(z).contains(y));
+    }
+
+    @Test
+    public void testBottomSatisfiesNothing() throws SemanticException {
+        Variable x = new Variable(Int32Type.INSTANCE, "x", SyntheticLocation.INSTANCE);
+        Variable y = new Variable(Int32Type.INSTANCE, "y", SyntheticLocation.INSTANCE);
+        BinaryExpression lt = new BinaryExpression(BoolType.INSTANCE, x, y, ComparisonLt.INSTANCE, SyntheticLocation.INSTANCE);
+
+        // no concrete state reaches a bottom element, so no condition can hold
+        assertEquals(Satisfiability.BOTTOM, new StrictUpperBounds().bottom().satisfies(lt, null, null));
+    }
+}
@@ -0,0 +1,42 @@
+package it.unive.lisa.tutorial;
+
+import it.unive.lisa.analysis.AbstractState;
+import it.unive.lisa.analysis.AnalyzedCFG;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.SimpleAbstractState;
+import it.unive.lisa.checks.semantic.CheckToolWithAnalysisResults;
+import it.unive.lisa.checks.semantic.SemanticCheck;
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.statement.Statement;
+
+import java.util.function.BiConsumer;
+
+// collects the value state after each statement, once for each result of its cfg, passing it to the given consumer
+// together with the statement. Shared by the tests comparing the states of two analyses
+class ValueStates<A extends AbstractState<A>>
+		implements
+		SemanticCheck<A> {
+
+	private final BiConsumer<Statement, Object> consumer;
+
+	ValueStates(
+			BiConsumer<Statement, Object> consumer) {
+		this.consumer = consumer;
+	}
+
+	@Override
+	public boolean visit(
+			CheckToolWithAnalysisResults<A> tool,
+			CFG graph,
+			Statement node) {
+		try {
+			for (AnalyzedCFG<A> result : tool.getResultOf(graph)) {
+				A state = result.getAnalysisStateAfter(node).getState();
+				consumer.accept(node, ((SimpleAbstractState<?, ?, ?>) state).getValueState());
+			}
+		} catch (SemanticException e) {
+			throw new IllegalStateException(e);
+		}
+		return true;
+	}
+}
@@ -0,0 +1,141 @@
+package it.unive.lisa.tutorial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import it.unive.lisa.AnalysisException;
+import it.unive.lisa.LiSA;
+import it.unive.lisa.conf.LiSAConfiguration;
+import it.unive.lisa.imp.IMPFrontend;
+import it.unive.lisa.imp.ParsingException;
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.statement.Statement;
+import it.unive.lisa.util.collections.workset.WorkingSet;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class WtoWorkingSetTest {
+
+	@Test
+	public void testPentagons() throws IOException, ParsingException, AnalysisException {
+		compare(Preset.PENTAGONS, read("inputs/pentagons.imp"), "pentagons");
+	}
+
+	@Test
+	public void testCongruenceEquality() throws IOException, ParsingException, AnalysisException {
+		compare(Preset.CONGRUENCE_EQUALITY, read("inputs/congruence_equality.imp"), "congruence_equality");
+	}
+
+	@Test
+	public void testScaledLoops() throws ParsingException, AnalysisException {
+		// nested loops, with branches in their bodies
+		String code = new ProgramGenerator().methods(8).variables(6).loopDepth(3).branchDensity(0.5).generate();
+		compare(Preset.PENTAGONS, code, "scaled_pentagons");
+		compare(Preset.CONGRUENCE_EQUALITY, code, "scaled_congruence_equality");
+	}
+
+	private static String read(
+			String file)
+			throws IOException {
+		return new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+	}
+
+	// runs the preset with its weak topological ordering and with the default working set, each on a fresh parse of
+	// the code, checking that the former never processes more nodes than the latter on any cfg
+	private static void compare(
+			Preset preset,
+			String code,
+			String name)
+			throws ParsingException, AnalysisException {
+		LiSAConfiguration wto = preset.configuration("outputs/wto/" + name);
+		WtoWorkingSet workingSet = (WtoWorkingSet) wto.fixpointWorkingSet;
+		new LiSA(wto).run(IMPFrontend.processText(code));
+		Map<String, Integer> wtoIterations = new HashMap<>();
+		workingSet.getIterations().forEach((cfg, iterations) -> wtoIterations.put(signature(cfg), iterations));
+
+		LiSAConfiguration fifo = preset.configuration("outputs/wto/" + name + "_fifo");
+		fifo.fixpointWorkingSet = new CfgCounter(new LiSAConfiguration().fixpointWorkingSet);
+		new LiSA(fifo).run(IMPFrontend.processText(code));
+		Map<String, Integer> fifoIterations = ((CfgCounter) fifo.fixpointWorkingSet).pops;
+
+		assertFalse(wtoIterations.isEmpty());
+		assertEquals(fifoIterations.keySet(), wtoIterations.keySet());
+		for (Map.Entry<String, Integer> entry : wtoIterations.entrySet())
+			assertTrue(entry.getKey() + ": " + entry.getValue() + " > " + fifoIterations.get(entry.getKey()),
+					entry.getValue() <= fifoIterations.get(entry.getKey()));
+	}
+
+	private static String signature(
+			CFG cfg) {
+		return cfg.getDescriptor().getFullSignature();
+	}
+
+	// counts the nodes popped for each cfg, as WtoWorkingSet does
+	private static class CfgCounter
+			implements
+			WorkingSet<Statement> {
+
+		private final WorkingSet<Statement> delegate;
+
+		private final Map<String, Integer> pops;
+
+		private CfgCounter(
+				WorkingSet<Statement> delegate) {
+			this(delegate, new ConcurrentHashMap<>());
+		}
+
+		private CfgCounter(
+				WorkingSet<Statement> delegate,
+				Map<String, Integer> pops) {
+			this.delegate = delegate;
+			this.pops = pops;
+		}
+
+		@Override
+		public WorkingSet<Statement> mk() {
+			return new CfgCounter(delegate.mk(), pops);
+		}
+
+		@Override
+		public void push(
+				Statement e) {
+			delegate.push(e);
+		}
+
+		@Override
+		public Statement pop() {
+			Statement next = delegate.pop();
+			pops.merge(signature(next.getCFG()), 1, Integer::sum);
+			return next;
+		}
+
+		@Override
+		public Statement peek() {
+			return delegate.peek();
+		}
+
+		@Override
+		public int size() {
+			return delegate.size();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return delegate.isEmpty();
+		}
+
+		@Override
+		public Collection<Statement> getContents() {
+			return delegate.getContents();
+		}
+	}
+}